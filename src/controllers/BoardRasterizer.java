@@ -0,0 +1,210 @@
+package controllers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Singleton pool of worker threads which rasterize tiles of a map into ARGB pixel buffers.
+ *
+ * <p>
+ * The tiles to draw are captured on the JavaFX Application Thread into a {@link Job}, which only refers to the images
+ * of the tiles by their {@link models.CellImage#getIndex() index} and to the decoded pixels of the
+ * {@link SpriteAtlas}. Workers therefore never access the map, which may be modified while they run. A job is split
+ * into bands of tile rows which are rasterized in parallel, so the time of a full redraw scales with the number of
+ * cores.
+ * </p>
+ */
+public class BoardRasterizer {
+
+    /**
+     * Number of bands which a job is split into for every worker thread, so that uneven bands are balanced out.
+     */
+    private static final int BANDS_PER_THREAD = 4;
+
+    /**
+     * Number of worker threads, unless changed with {@link BoardRasterizer#setDefaultThreads(int)}.
+     */
+    private static int defaultThreads = Runtime.getRuntime().availableProcessors();
+
+    @Nullable
+    private static BoardRasterizer instance;
+
+    private final int threads;
+    @NotNull
+    private final ExecutorService workers;
+
+    /**
+     * Tiles visible in a viewport, captured for rasterization.
+     */
+    static final class Job {
+        /**
+         * Width of the buffer in pixels.
+         */
+        final int width;
+        /**
+         * Height of the buffer in pixels.
+         */
+        final int height;
+        /**
+         * {@link models.CellImage#getIndex()} of each tile in row-major order, or {@code -1} for transparent tiles.
+         */
+        @NotNull
+        final int[] images;
+        /**
+         * Left edge of each column of tiles relative to the buffer, followed by the right edge of the last column.
+         */
+        @NotNull
+        final int[] tileX;
+        /**
+         * Top edge of each row of tiles relative to the buffer, followed by the bottom edge of the last row.
+         */
+        @NotNull
+        final int[] tileY;
+        /**
+         * Mipmap level to sample the tiles from.
+         */
+        final int level;
+        /**
+         * Decoded pixels of the {@link SpriteAtlas}, indexed by mipmap level.
+         */
+        @NotNull
+        final int[][] sprites;
+
+        Job(int width, int height, @NotNull int[] images, @NotNull int[] tileX, @NotNull int[] tileY, int level,
+            @NotNull int[][] sprites) {
+            this.width = width;
+            this.height = height;
+            this.images = images;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.level = level;
+            this.sprites = sprites;
+        }
+
+        int getRowCount() {
+            return tileY.length - 1;
+        }
+
+        int getColCount() {
+            return tileX.length - 1;
+        }
+    }
+
+    private BoardRasterizer(int threads) {
+        this.threads = threads;
+        final var counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "board-raster-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the number of worker threads. Only has an effect before the first call to
+     * {@link BoardRasterizer#getInstance()}.
+     *
+     * @param threads New number of worker threads.
+     */
+    public static void setDefaultThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        defaultThreads = threads;
+    }
+
+    public static int getDefaultThreads() {
+        return defaultThreads;
+    }
+
+    /**
+     * @return Singleton instance of this class, which is created with {@link BoardRasterizer#getDefaultThreads()}
+     * workers on the first call.
+     */
+    @NotNull
+    public static synchronized BoardRasterizer getInstance() {
+        if (instance == null) {
+            instance = new BoardRasterizer(defaultThreads);
+        }
+        return instance;
+    }
+
+    /**
+     * Rasterizes a job on the worker threads.
+     *
+     * @param job       Tiles to rasterize.
+     * @param cancelled Checked before each band is rasterized. Once it returns {@code true}, the remaining bands are
+     *                  skipped, and the result is incomplete.
+     * @return Future which completes with the non-premultiplied ARGB pixels of the job in row-major order.
+     */
+    @NotNull
+    CompletableFuture<int[]> rasterize(@NotNull Job job, @NotNull BooleanSupplier cancelled) {
+        final var buffer = new int[job.width * job.height];
+        final int rowCount = job.getRowCount();
+        final int bands = Math.max(1, Math.min(rowCount, threads * BANDS_PER_THREAD));
+
+        final var futures = new CompletableFuture<?>[bands];
+        for (int band = 0; band < bands; ++band) {
+            final int firstRow = (int) ((long) rowCount * band / bands);
+            final int endRow = (int) ((long) rowCount * (band + 1) / bands);
+            futures[band] = CompletableFuture.runAsync(() -> {
+                if (!cancelled.getAsBoolean()) {
+                    rasterizeRows(job, buffer, firstRow, endRow);
+                }
+            }, workers);
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> buffer);
+    }
+
+    /**
+     * Rasterizes a band of tile rows, using nearest-neighbour sampling of the mipmap level of the job.
+     *
+     * @param job      Tiles to rasterize.
+     * @param buffer   Buffer of the job to write the pixels into.
+     * @param firstRow First row of tiles in the band.
+     * @param endRow   Row of tiles after the last row in the band.
+     */
+    static void rasterizeRows(@NotNull Job job, @NotNull int[] buffer, int firstRow, int endRow) {
+        final int colCount = job.getColCount();
+        final int tileSize = SpriteAtlas.getTileSize(job.level);
+        final int atlasWidth = SpriteAtlas.getAtlasWidth(job.level);
+        final int[] sprites = job.sprites[job.level];
+
+        for (int r = firstRow; r < endRow; ++r) {
+            final int top = job.tileY[r];
+            final int tileHeight = job.tileY[r + 1] - top;
+            final int y0 = Math.max(0, top);
+            final int y1 = Math.min(job.height, job.tileY[r + 1]);
+
+            for (int c = 0; c < colCount; ++c) {
+                final int index = job.images[r * colCount + c];
+                if (index < 0) {
+                    continue;
+                }
+
+                final int left = job.tileX[c];
+                final int tileWidth = job.tileX[c + 1] - left;
+                final int x0 = Math.max(0, left);
+                final int x1 = Math.min(job.width, job.tileX[c + 1]);
+                final int srcX = SpriteAtlas.getSourceX(index, job.level);
+                final int srcY = SpriteAtlas.getSourceY(index, job.level);
+
+                for (int y = y0; y < y1; ++y) {
+                    final int v = Math.min(tileSize - 1, (y - top) * tileSize / tileHeight);
+                    final int srcRow = (srcY + v) * atlasWidth + srcX;
+                    final int dstRow = y * job.width;
+                    for (int x = x0; x < x1; ++x) {
+                        final int u = Math.min(tileSize - 1, (x - left) * tileSize / tileWidth);
+                        buffer[dstRow + x] = sprites[srcRow + u];
+                    }
+                }
+            }
+        }
+    }
+}
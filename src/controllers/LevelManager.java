@@ -1,27 +1,69 @@
 package controllers;
 
+import io.Deserializer;
+import io.GameProperties;
+import io.LevelCache;
+import io.LevelCatalog;
+import io.LevelFormat;
+import io.LevelPack;
+import io.LevelTemplate;
+import io.MappedLevel;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.Alert;
+import models.FXGame;
+import models.GameCore;
+import models.exceptions.InvalidMapException;
+import models.map.CellGrid;
+import models.map.ObjectCellGrid;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.nio.file.FileVisitOption;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Singleton class responsible for loading and managing levels from the filesystem.
+ *
+ * <p>
+ * Levels are loaded from one of:
+ * <ul>
+ * <li>A directory of level files.</li>
+ * <li>A zip or jar archive of level files, which is read through a zip {@link FileSystem}.</li>
+ * <li>A {@link LevelPack}, where levels are read from the pack without extracting them.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Level files in the {@link LevelFormat#MAPPED} format are opened as a {@link MappedLevel} instead of being parsed, so
+ * that their cells are only read when they are accessed. They bypass the {@link LevelCache}.
+ * </p>
  */
 public class LevelManager {
 
+    /**
+     * Thread which catalogs are scanned on.
+     */
+    @NotNull
+    private static final Executor CATALOG_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "level-catalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Singleton instance.
      */
@@ -46,6 +88,32 @@ public class LevelManager {
      */
     @NotNull
     private Path mapDirectory = Paths.get("resources/maps/");
+    /**
+     * The level pack which levels are loaded from, or {@code null} if levels are loaded from a directory.
+     */
+    @Nullable
+    private LevelPack levelPack;
+    /**
+     * File system of the archive which {@link LevelManager#mapDirectory} is in, or {@code null} if the directory is not
+     * in an archive.
+     */
+    @Nullable
+    private FileSystem archiveFileSystem;
+    /**
+     * Catalog of the levels which are currently loaded, or {@code null} if no levels are loaded.
+     */
+    @Nullable
+    private volatile LevelCatalog catalog;
+    /**
+     * Executor which changes to {@link LevelManager#levelNames} are run on.
+     */
+    @NotNull
+    private Executor dispatcher = Platform::runLater;
+    /**
+     * Prefetcher of the current level and the levels after it.
+     */
+    @NotNull
+    private final LevelPrefetcher prefetcher = new LevelPrefetcher();
 
     private LevelManager() {
         setMapDirectory(mapDirectory);
@@ -62,46 +130,180 @@ public class LevelManager {
     /**
      * Sets the current map directory, and loads all maps from the newly set directory.
      *
-     * @param mapDirectory New map directory to load maps from.
+     * @param mapDirectory New map directory to load maps from. This may also be a zip or jar archive of maps, or a
+     *                     {@link LevelPack}.
      */
     public void setMapDirectory(@NotNull Path mapDirectory) {
         // TODO done
+        closeLevelSource();
         this.mapDirectory = mapDirectory;
+
+        try {
+            if (LevelPack.isLevelPack(mapDirectory)) {
+                levelPack = LevelPack.open(mapDirectory);
+                catalog = LevelCatalog.forPack(levelPack);
+                loadLevelNamesFromPack();
+                return;
+            }
+            if (isArchive(mapDirectory)) {
+                archiveFileSystem = FileSystems.newFileSystem(mapDirectory, (ClassLoader) null);
+                this.mapDirectory = archiveFileSystem.getRootDirectories().iterator().next();
+            }
+        } catch (IOException | InvalidMapException e) {
+            e.printStackTrace();
+            levelNames.clear();
+            return;
+        }
+
         loadLevelNamesFromDisk();
     }
 
+    /**
+     * @param path Path to check.
+     * @return Whether the path is a zip or jar archive.
+     */
+    private static boolean isArchive(@NotNull Path path) {
+        final var name = path.getFileName() != null ? path.getFileName().toString().toLowerCase() : "";
+        return Files.isRegularFile(path) && (name.endsWith(".zip") || name.endsWith(".jar"));
+    }
+
+    /**
+     * Closes the catalog, level pack and archive which levels are currently loaded from, if any.
+     */
+    private void closeLevelSource() {
+        prefetcher.cancel();
+        try {
+            if (catalog != null) {
+                catalog.close();
+            }
+            if (levelPack != null) {
+                LevelCache.getInstance().invalidate(levelPack);
+                levelPack.close();
+            }
+            if (archiveFileSystem != null) {
+                LevelCache.getInstance().invalidate(archiveFileSystem);
+                archiveFileSystem.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            catalog = null;
+            levelPack = null;
+            archiveFileSystem = null;
+        }
+    }
+
+    /**
+     * Loads all level names from the currently open {@link LevelManager#levelPack}, in the order of the pack.
+     */
+    private void loadLevelNamesFromPack() {
+        levelNames.setAll(levelPack.getEntries().stream()
+                .map(LevelPack.Entry::getName)
+                .distinct()
+                .collect(Collectors.toList()));
+    }
+
     /**
      * Loads all level names from the currently set {@link LevelManager#mapDirectory}.
      *
      * <p>
-     * Hint:
-     * <ul>
-     * <li>Use try-with-resources to automatically manage the lifetime of {@link Stream}.</li>
-     * <li>Use {@link Files#walk(Path, int, FileVisitOption...)} to retrieve all files inside a given directory. Check
-     * the documentation to see what to put for the second parameter!</li>
-     * <li>Use {@link Stream} to filter, map and sort the loaded filenames.</li>
-     * </ul>
+     * Names are loaded on a background thread, first from the saved index of the directory if there is one, so that
+     * large directories are shown without waiting for a full scan. The directory is then scanned, and watched for
+     * changes afterwards. All updates to {@link LevelManager#levelNames} are run through
+     * {@link LevelManager#dispatcher}.
      * </p>
      */
     private void loadLevelNamesFromDisk() {
         // TODO done?
+        final var catalog = LevelCatalog.forDirectory(mapDirectory);
+        this.catalog = catalog;
         levelNames.clear();
-        try(Stream<Path> walk = Files.walk(this.mapDirectory, 1, FileVisitOption.FOLLOW_LINKS)){
-            //filter
-            //map
-            //sort
-            List<String> list = walk.filter(Files::isRegularFile)
-                    .map(path -> path.toString())
-                    .map(path -> path.replace(this.mapDirectory.toString()+"\\",""))
-                    .filter(path -> path.endsWith(".map"))
-                    .distinct()
-                    .sorted()
-                    .collect(Collectors.toList());
-            levelNames.addAll(list);
-        }catch (IOException e){
-            e.printStackTrace();
+
+        CATALOG_EXECUTOR.execute(() -> {
+            if (catalog.loadIndex()) {
+                dispatcher.execute(() -> applyCatalogChanges(catalog, List.of(), List.of(), true));
+            }
+
+            // watch before scanning, so that no change is missed
+            catalog.startWatching((updated, removed, reset) ->
+                    dispatcher.execute(() -> applyCatalogChanges(catalog, updated, removed, reset)));
+            try {
+                catalog.scan();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            dispatcher.execute(() -> applyCatalogChanges(catalog, List.of(), List.of(), true));
+        });
+    }
+
+    /**
+     * Applies changes of a catalog to {@link LevelManager#levelNames}, which is kept sorted.
+     *
+     * @param catalog Catalog which has changed. Changes are ignored if it is no longer the current catalog.
+     * @param updated Entries of levels which have been added or modified.
+     * @param removed Names of levels which have been removed.
+     * @param reset   Whether to reload all names from the catalog.
+     */
+    private void applyCatalogChanges(@NotNull LevelCatalog catalog, @NotNull Collection<LevelCatalog.Entry> updated,
+                                     @NotNull Collection<String> removed, boolean reset) {
+        if (catalog != this.catalog) {
             return;
         }
+        if (reset) {
+            levelNames.setAll(catalog.getNames());
+            return;
+        }
+
+        for (var name : removed) {
+            final int index = Collections.binarySearch(levelNames, name);
+            if (index >= 0) {
+                levelNames.remove(index);
+            }
+        }
+        for (var entry : updated) {
+            final int index = Collections.binarySearch(levelNames, entry.getName());
+            if (index < 0) {
+                levelNames.add(-index - 1, entry.getName());
+            }
+        }
+    }
+
+    /**
+     * @return Catalog of the current map directory or level pack, or {@code null} if it cannot be loaded.
+     */
+    @Nullable
+    public LevelCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Creates a filter over level names from a query.
+     *
+     * @param query Query in the syntax of {@link LevelCatalog#parseQuery(String)}.
+     * @return Predicate which matches the names of the levels selected by the query.
+     */
+    @NotNull
+    public Predicate<String> createLevelFilter(@NotNull String query) {
+        final var catalog = this.catalog;
+        if (catalog == null || query.isBlank()) {
+            return name -> true;
+        }
+
+        final var filter = LevelCatalog.parseQuery(query);
+        return name -> {
+            final var entry = catalog.get(name);
+            return entry != null && filter.test(entry);
+        };
+    }
+
+    /**
+     * Sets the executor which changes to {@link LevelManager#getLevelNames()} are run on. Defaults to the JavaFX
+     * application thread.
+     *
+     * @param dispatcher Executor to run changes on.
+     */
+    public void setDispatcher(@NotNull Executor dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
     @NotNull
@@ -111,14 +313,164 @@ public class LevelManager {
 
     /**
      * @return Full path to the currently selected level.
+     * @throws IllegalStateException if levels are loaded from a {@link LevelPack}, where levels do not have a path.
      */
     @NotNull
     public Path getCurrentLevelPath() {
         // TODO done
-        Path path = Path.of(mapDirectory+"\\"+curLevelNameProperty.get()).toAbsolutePath();
+        if (levelPack != null) {
+            throw new IllegalStateException("Levels in a level pack do not have a path");
+        }
+        Path path = mapDirectory.resolve(curLevelNameProperty.get()).toAbsolutePath();
         return path;
     }
 
+    /**
+     * Loads the currently selected level, from either the map directory or the level pack.
+     *
+     * <p>
+     * This builds all cells of the level. Use {@link LevelManager#loadCurrentGrid()} or
+     * {@link LevelManager#loadCurrentGame()} for levels which may be too large for that.
+     * </p>
+     *
+     * @return The properties of the current level.
+     * @throws IOException         if the level cannot be read.
+     * @throws InvalidMapException if the level cannot be parsed.
+     */
+    @NotNull
+    public GameProperties loadCurrentLevel() throws IOException {
+        return loadTemplate(levelPack, mapDirectory, catalog, curLevelNameProperty.get()).toProperties();
+    }
+
+    /**
+     * Loads the cells of the currently selected level, e.g. for a preview.
+     *
+     * @return Grid of the current level. Levels in the {@link LevelFormat#MAPPED} format are read on demand.
+     * @throws IOException         if the level cannot be read.
+     * @throws InvalidMapException if the level cannot be parsed.
+     */
+    @NotNull
+    public CellGrid loadCurrentGrid() throws IOException {
+        final var name = curLevelNameProperty.get();
+        final var mapped = openMapped(levelPack, mapDirectory, name);
+        if (mapped != null) {
+            return mapped.createMap().getGrid();
+        }
+
+        final var prop = loadTemplate(levelPack, mapDirectory, catalog, name).toProperties();
+        return new ObjectCellGrid(prop.rows, prop.cols, prop.cells);
+    }
+
+    /**
+     * Opens a level file in the {@link LevelFormat#MAPPED} format.
+     *
+     * <p>
+     * Only files on the default file system can be mapped. Levels in a pack or an archive are read as templates.
+     * </p>
+     *
+     * @param pack      Level pack to read from, or {@code null} to read from {@code directory}.
+     * @param directory Map directory to read from.
+     * @param name      Name of the level.
+     * @return The opened level, or {@code null} if the level is not a mapped level file.
+     * @throws IOException         if the level cannot be read.
+     * @throws InvalidMapException if the level cannot be parsed.
+     */
+    @Nullable
+    private static MappedLevel openMapped(@Nullable LevelPack pack, @NotNull Path directory, @NotNull String name)
+            throws IOException {
+        if (pack != null || directory.getFileSystem() != FileSystems.getDefault()) {
+            return null;
+        }
+
+        final var path = directory.resolve(name);
+        if (new Deserializer(path).detectFormat() != LevelFormat.MAPPED) {
+            return null;
+        }
+        return MappedLevel.open(path);
+    }
+
+    /**
+     * Reads a level through the {@link LevelCache}.
+     *
+     * @param pack      Level pack to read from, or {@code null} to read from {@code directory}.
+     * @param directory Map directory to read from.
+     * @param catalog   Catalog of {@code directory}, which provides the file attributes of cached levels.
+     * @param name      Name of the level.
+     * @return Template of the level.
+     * @throws IOException         if the level cannot be read.
+     * @throws InvalidMapException if the level cannot be parsed.
+     */
+    @NotNull
+    private static LevelTemplate loadTemplate(@Nullable LevelPack pack, @NotNull Path directory,
+                                              @Nullable LevelCatalog catalog, @NotNull String name) throws IOException {
+        final var cache = LevelCache.getInstance();
+        if (pack != null) {
+            return cache.get(pack, name);
+        }
+
+        final var path = directory.resolve(name);
+        final var entry = catalog != null ? catalog.get(name) : null;
+        if (entry != null) {
+            return cache.get(path, entry.getFileSize(), entry.getLastModified());
+        }
+        return cache.get(path);
+    }
+
+    /**
+     * Creates a game of the currently selected level, using the prefetched level if it is ready.
+     *
+     * @return A new game of the current level.
+     * @throws IOException         if the level cannot be read.
+     * @throws InvalidMapException if the level cannot be parsed.
+     */
+    @NotNull
+    public FXGame loadCurrentGame() throws IOException {
+        final var name = curLevelNameProperty.get();
+        final var level = prefetcher.take(name);
+        if (level != null) {
+            return new FXGame(level.getCore(), level.getDelay());
+        }
+
+        final var mapped = openMapped(levelPack, mapDirectory, name);
+        if (mapped != null) {
+            return new FXGame(new GameCore(mapped.createMap(), mapped.getPipes()), mapped.getDelay());
+        }
+
+        final var template = loadTemplate(levelPack, mapDirectory, catalog, name);
+        return new FXGame(template.createGame(), template.getDelay());
+    }
+
+    /**
+     * Prefetches the current level and the {@link LevelPrefetcher#getDefaultDepth()} levels after it, and cancels
+     * prefetches of other levels.
+     */
+    private void prefetchFromCurrentLevel() {
+        final int index = levelNames.indexOf(curLevelNameProperty.get());
+        if (index < 0) {
+            prefetcher.cancel();
+            return;
+        }
+
+        final var names = List.copyOf(levelNames.subList(index,
+                Math.min(levelNames.size(), index + 1 + LevelPrefetcher.getDefaultDepth())));
+        final var pack = levelPack;
+        final var directory = mapDirectory;
+        final var catalog = this.catalog;
+        prefetcher.prefetch(names, new LevelPrefetcher.Loader() {
+            @NotNull
+            @Override
+            public GameProperties load(@NotNull String name) throws IOException {
+                return loadTemplate(pack, directory, catalog, name).toProperties();
+            }
+
+            @Nullable
+            @Override
+            public MappedLevel openMapped(@NotNull String name) throws IOException {
+                return LevelManager.openMapped(pack, directory, name);
+            }
+        });
+    }
+
     /**
      * Sets the currently selected level.
      *
@@ -129,12 +481,14 @@ public class LevelManager {
         // TODO done
         if(levelName==null){
             curLevelNameProperty.set(null);
+            prefetcher.cancel();
             return;
         }
         if (levelName.isBlank()){
             throw new IllegalStateException();
         }else {
             curLevelNameProperty.set(levelName);
+            prefetchFromCurrentLevel();
         }
     }
 
@@ -155,13 +509,10 @@ public class LevelManager {
     @Nullable
     public String getAndSetNextLevel() {
         // TODO done
-        if(getCurrentLevelProperty().toString()==null){
+        if(getCurrentLevelProperty().get()==null){
             setLevel(null);
             return null; //no map has been set, so there is no next map!
         }
-        levelNames.forEach(System.out::println);
-        System.out.println(getCurrentLevelProperty().toString());
-
         if(levelNames.contains(getCurrentLevelProperty().get())){
             //if last element, and index too big
             int currIndex = INSTANCE.levelNames.indexOf(getCurrentLevelProperty().get());
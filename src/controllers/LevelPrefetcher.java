@@ -0,0 +1,334 @@
+package controllers;
+
+import io.GameProperties;
+import io.MappedLevel;
+import models.GameCore;
+import models.map.Map;
+import models.validation.LevelValidator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads upcoming levels on a background thread, so that a game can be started without waiting for the level to be
+ * read, validated and built.
+ *
+ * <p>
+ * Levels are prepared one at a time in the order they were requested. Prepared levels are kept until they are
+ * {@link LevelPrefetcher#take(String) taken} or no longer requested, and a level is dropped instead of kept if it
+ * would exceed the memory budget. Levels which fail validation are also dropped, so that loading them normally reports
+ * the error to the player.
+ * </p>
+ */
+public class LevelPrefetcher {
+
+    /**
+     * Reads a level by name.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @param name Name of the level.
+         * @return Properties of the level.
+         * @throws IOException if the level cannot be read.
+         */
+        @NotNull
+        GameProperties load(@NotNull String name) throws IOException;
+
+        /**
+         * Opens a level whose cells are read on demand instead of being loaded with
+         * {@link Loader#load(String)}.
+         *
+         * @param name Name of the level.
+         * @return The opened level, or {@code null} if the level must be loaded.
+         * @throws IOException if the level cannot be read.
+         */
+        @Nullable
+        default MappedLevel openMapped(@NotNull String name) throws IOException {
+            return null;
+        }
+    }
+
+    /**
+     * A level which is ready to be played.
+     */
+    public static final class Level {
+        @NotNull
+        private final GameCore core;
+        private final int delay;
+
+        private Level(@NotNull GameCore core, int delay) {
+            this.core = core;
+            this.delay = delay;
+        }
+
+        @NotNull
+        public GameCore getCore() {
+            return core;
+        }
+
+        public int getDelay() {
+            return delay;
+        }
+    }
+
+    /**
+     * A requested level.
+     */
+    private static final class Slot {
+        @NotNull
+        private final String name;
+        private Future<Level> future;
+        /**
+         * Bytes of the memory budget reserved by this level.
+         */
+        private long size;
+        private boolean started;
+        private boolean taken;
+        private boolean cancelled;
+
+        private Slot(@NotNull String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Estimated bytes per cell of a map stored as {@link Map.StorageMode#PACKED}.
+     */
+    private static final int PACKED_BYTES_PER_CELL = 2;
+    /**
+     * Estimated bytes per cell of a map stored as {@link Map.StorageMode#OBJECTS}.
+     */
+    private static final int OBJECT_BYTES_PER_CELL = 48;
+
+    /**
+     * Default number of levels to prefetch after the current level.
+     */
+    private static int defaultDepth = 2;
+    /**
+     * Default number of bytes which prefetched levels may use.
+     */
+    private static long defaultMemoryBudget = 64L * 1024 * 1024;
+
+    @NotNull
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "level-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    @NotNull
+    private final LevelValidator validator = new LevelValidator();
+    /**
+     * Requested levels by name. Guarded by {@code this}.
+     */
+    @NotNull
+    private final java.util.Map<String, Slot> slots = new HashMap<>();
+    private final long memoryBudget;
+    /**
+     * Bytes reserved by all levels in {@link LevelPrefetcher#slots}. Guarded by {@code this}.
+     */
+    private long usedBytes = 0;
+
+    /**
+     * Creates a prefetcher with {@link LevelPrefetcher#getDefaultMemoryBudget()}.
+     */
+    public LevelPrefetcher() {
+        this(defaultMemoryBudget);
+    }
+
+    /**
+     * @param memoryBudget Number of bytes which prefetched levels may use.
+     */
+    public LevelPrefetcher(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets the default number of levels to prefetch after the current level.
+     *
+     * @param depth New default depth.
+     */
+    public static void setDefaultDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative");
+        }
+        defaultDepth = depth;
+    }
+
+    /**
+     * @return Current default number of levels to prefetch after the current level.
+     */
+    public static int getDefaultDepth() {
+        return defaultDepth;
+    }
+
+    /**
+     * Sets the default memory budget of newly created prefetchers.
+     *
+     * @param bytes New default memory budget in bytes.
+     */
+    public static void setDefaultMemoryBudget(long bytes) {
+        defaultMemoryBudget = bytes;
+    }
+
+    /**
+     * @return Current default memory budget in bytes.
+     */
+    public static long getDefaultMemoryBudget() {
+        return defaultMemoryBudget;
+    }
+
+    /**
+     * Requests levels to be prepared. Levels which were requested before but are not in {@code names} are cancelled.
+     *
+     * @param names  Names of the levels, in the order they should be prepared.
+     * @param loader Loader to read new levels with.
+     */
+    public synchronized void prefetch(@NotNull List<String> names, @NotNull Loader loader) {
+        final var requested = new HashSet<>(names);
+        slots.values().removeIf(slot -> {
+            if (requested.contains(slot.name)) {
+                return false;
+            }
+            release(slot);
+            return true;
+        });
+
+        for (var name : names) {
+            if (slots.containsKey(name)) {
+                continue;
+            }
+
+            final var slot = new Slot(name);
+            slots.put(name, slot);
+            slot.future = executor.submit(() -> prepare(slot, loader));
+        }
+    }
+
+    /**
+     * Cancels all requested levels.
+     */
+    public synchronized void cancel() {
+        slots.values().forEach(this::release);
+        slots.clear();
+    }
+
+    /**
+     * Takes a prepared level.
+     *
+     * <p>
+     * If the level is being prepared, this waits for it to be ready. If it has not been started, it is cancelled, since
+     * loading it directly is faster than waiting for the levels queued before it.
+     * </p>
+     *
+     * @param name Name of the level.
+     * @return The level, or {@code null} if it was not requested, has not been started, or cannot be prepared.
+     */
+    @Nullable
+    public Level take(@NotNull String name) {
+        final Slot slot;
+        synchronized (this) {
+            slot = slots.remove(name);
+            if (slot == null) {
+                return null;
+            }
+            if (!slot.started) {
+                release(slot);
+                return null;
+            }
+            // the caller owns the level from now on
+            usedBytes -= slot.size;
+            slot.size = 0;
+            slot.taken = true;
+        }
+
+        try {
+            return slot.future.get();
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @return Number of bytes reserved by levels which have been requested but not taken.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Reads, validates and builds a level on the prefetch thread.
+     *
+     * @return The level, or {@code null} if it has been cancelled, is invalid or does not fit in the memory budget.
+     */
+    @Nullable
+    private Level prepare(@NotNull Slot slot, @NotNull Loader loader) throws IOException {
+        synchronized (this) {
+            if (slot.cancelled) {
+                return null;
+            }
+            slot.started = true;
+        }
+
+        // mapped levels are neither validated nor counted against the budget, since their cells stay in the file
+        final var mapped = loader.openMapped(slot.name);
+        if (mapped != null) {
+            return new Level(new GameCore(mapped.createMap(), mapped.getPipes()), mapped.getDelay());
+        }
+
+        final var prop = loader.load(slot.name);
+        if (!LevelValidator.isValid(validator.validate(prop))) {
+            return null;
+        }
+
+        final long size = estimateSize(prop);
+        synchronized (this) {
+            if (slot.cancelled) {
+                return null;
+            }
+            if (!slot.taken) {
+                if (usedBytes + size > memoryBudget) {
+                    return null;
+                }
+                usedBytes += size;
+                slot.size = size;
+            }
+        }
+
+        return new Level(new GameCore(prop), prop.delay);
+    }
+
+    /**
+     * Cancels a slot and releases its memory. Must be called while holding the lock.
+     */
+    private void release(@NotNull Slot slot) {
+        slot.cancelled = true;
+        usedBytes -= slot.size;
+        slot.size = 0;
+        // not interrupted, since interrupting a read closes the channel, which may be shared with other readers
+        slot.future.cancel(false);
+    }
+
+    /**
+     * @return Estimated number of bytes used by a game built from the properties.
+     */
+    private static long estimateSize(@NotNull GameProperties prop) {
+        final int bytesPerCell = Map.getStorageMode(prop.rows, prop.cols) == Map.StorageMode.PACKED
+                ? PACKED_BYTES_PER_CELL
+                : OBJECT_BYTES_PER_CELL;
+        return (long) prop.rows * prop.cols * bytesPerCell;
+    }
+}
@@ -0,0 +1,122 @@
+package controllers;
+
+import javafx.animation.AnimationTimer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Coalesces render requests, so that each render task runs at most once per JavaFX pulse.
+ *
+ * <p>
+ * Requesting a task only marks it as pending. Pending tasks are run by an {@link AnimationTimer} on the next pulse, in
+ * the order they were first requested. Requesting a task which is already pending has no effect, so the number of
+ * pending renders is bounded by the number of distinct tasks, no matter how fast input or ticks arrive. The timer is
+ * stopped while no task is pending.
+ * </p>
+ * <p>
+ * Tasks are identified by object identity, so callers should keep one instance per render target. This class must
+ * only be used on the JavaFX Application Thread.
+ * </p>
+ * <p>
+ * The request, coalesced and render counters are not shown anywhere in the game. They are meant to be read from a
+ * debugger or a profiling harness which owns the scheduler.
+ * </p>
+ */
+public class RenderScheduler {
+
+    /**
+     * Tasks to run on the next pulse.
+     */
+    @NotNull
+    private final LinkedHashSet<Runnable> pending = new LinkedHashSet<>();
+    /**
+     * Buffer which pending tasks are moved into while they run, so that tasks can request renders for the next pulse.
+     */
+    @NotNull
+    private final ArrayList<Runnable> running = new ArrayList<>();
+    @NotNull
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+    private boolean timerRunning = false;
+
+    private long requestCount = 0;
+    private long coalescedCount = 0;
+    private long renderCount = 0;
+
+    /**
+     * Requests a task to run on the next pulse.
+     *
+     * @param task Render task. Has no effect if the same task is already pending.
+     */
+    public void request(@NotNull Runnable task) {
+        ++requestCount;
+        if (!pending.add(task)) {
+            ++coalescedCount;
+            return;
+        }
+
+        if (!timerRunning) {
+            timerRunning = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Runs all pending tasks immediately, instead of waiting for the next pulse.
+     */
+    public void flush() {
+        running.addAll(pending);
+        pending.clear();
+        try {
+            for (var task : running) {
+                ++renderCount;
+                task.run();
+            }
+        } finally {
+            running.clear();
+        }
+
+        if (pending.isEmpty() && timerRunning) {
+            timerRunning = false;
+            timer.stop();
+        }
+    }
+
+    /**
+     * Discards all pending tasks, e.g. when the view which they render is discarded.
+     */
+    public void cancel() {
+        pending.clear();
+        if (timerRunning) {
+            timerRunning = false;
+            timer.stop();
+        }
+    }
+
+    /**
+     * @return Total number of requests.
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return Number of requests which were merged into an already pending request.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return Number of times a task has been run.
+     */
+    public long getRenderCount() {
+        return renderCount;
+    }
+}
@@ -1,12 +1,26 @@
 package controllers;
 
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.image.Image;
-import javafx.scene.transform.Rotate;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import models.CellImage;
+import models.Config;
+import models.map.CellGrid;
+import models.map.Map;
+import models.map.ObjectCellGrid;
 import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Direction;
+import util.DirtyCells;
+import util.PackedCoordinate;
+import util.Viewport;
 
 import java.util.List;
 
@@ -23,58 +37,161 @@ public class Renderer {
     private static final int QUEUE_TILE_PADDING = 8;
 
     /**
-     * An image of a cell, with support for rotated images.
+     * Smallest number of tiles which are rasterized by the {@link BoardRasterizer} in {@link RenderMode#RASTER}.
+     * Smaller redraws are drawn directly, since handing them to the workers costs more than drawing them.
      */
-    public static class CellImage {
+    private static final int RASTER_THRESHOLD = 256;
 
+    /**
+     * Key of the {@link RasterState} of a canvas in {@link Canvas#getProperties()}.
+     */
+    private static final String RASTER_STATE_KEY = Renderer.class.getName() + ".rasterState";
+
+    /**
+     * Strategy for redrawing the visible region of a map.
+     */
+    public enum RenderMode {
         /**
-         * Image of the cell.
+         * Draws each tile onto the {@link GraphicsContext} of the canvas on the JavaFX Application Thread.
+         */
+        CANVAS,
+        /**
+         * Rasterizes large redraws into a pixel buffer on the worker threads of the {@link BoardRasterizer}. The
+         * JavaFX Application Thread only captures the visible tiles and uploads the finished buffer, so the canvas
+         * shows its previous content until the buffer is ready. Small redraws are drawn as in {@link #CANVAS}. If a
+         * rasterization fails, the default render mode is switched back to {@link #CANVAS}.
+         */
+        RASTER
+    }
+
+    /**
+     * Redraw strategy used by all render operations on maps.
+     */
+    @NotNull
+    private static RenderMode defaultRenderMode = RenderMode.CANVAS;
+
+    /**
+     * State of the rasterization of a canvas in {@link RenderMode#RASTER}.
+     */
+    private static final class RasterState {
+        /**
+         * Incremented whenever the whole canvas is redrawn, so that buffers of older rasterizations are discarded.
+         * Read by the workers to skip bands of rasterizations which have already been superseded.
+         */
+        volatile long generation = 0;
+        /**
+         * Whether a rasterization of the current generation has not been uploaded yet.
+         */
+        boolean pending = false;
+        /**
+         * Cells which have been redrawn while a rasterization was pending. The buffer shows these cells as they were
+         * when the rasterization started, so they are redrawn after the buffer is uploaded.
          */
         @NotNull
-        final Image image;
+        final DirtyCells redraw = new DirtyCells();
         /**
-         * Rotation of the image.
+         * Image which the buffer is uploaded into, reused while the size of the canvas does not change.
          */
-        final float rotation;
+        @Nullable
+        WritableImage image;
+
+        @Nullable
+        CellGrid grid;
+        @Nullable
+        TileImageSelector selector;
+        @Nullable
+        Viewport viewport;
+    }
 
+    /**
+     * Layer of a map which can be rendered into its own {@link Canvas}.
+     *
+     * <p>
+     * Layers are drawn on top of each other in the order of their declaration. Each layer only draws the part of a
+     * cell which it is responsible for, and leaves the rest of the tile transparent.
+     * </p>
+     */
+    public enum Layer {
         /**
-         * @param image    Image of the cell.
-         * @param rotation Rotation of the image.
+         * Walls, empty cells and unfilled termination cells, which do not change during a game.
          */
-        public CellImage(@NotNull Image image, float rotation) {
-            this.image = image;
-            this.rotation = rotation;
-        }
+        TERRAIN {
+            @Nullable
+            @Override
+            CellImage getImageRep(@NotNull CellGrid grid, int row, int col) {
+                switch (grid.getKind(row, col)) {
+                    case CellGrid.KIND_WALL:
+                        return Wall.IMAGE_REP;
+                    case CellGrid.KIND_SOURCE:
+                        return TerminationCell.getImageRep(TerminationCell.Type.SOURCE,
+                                grid.getTerminationDirection(row, col), false);
+                    case CellGrid.KIND_SINK:
+                        return TerminationCell.getImageRep(TerminationCell.Type.SINK,
+                                grid.getTerminationDirection(row, col), false);
+                    default:
+                        return FillableCell.EMPTY_IMAGE_REP;
+                }
+            }
+        },
+        /**
+         * Unfilled pipes.
+         */
+        PIPES {
+            @Nullable
+            @Override
+            CellImage getImageRep(@NotNull CellGrid grid, int row, int col) {
+                final var shape = grid.getShape(row, col);
+                return shape != null ? shape.getCellImage(false) : null;
+            }
+        },
+        /**
+         * Filled pipes and termination cells.
+         */
+        WATER {
+            @Nullable
+            @Override
+            CellImage getImageRep(@NotNull CellGrid grid, int row, int col) {
+                return grid.isFilled(row, col) ? grid.getImageRep(row, col) : null;
+            }
+        };
+
+        /**
+         * @param grid Grid of the map.
+         * @param row  Row of the cell.
+         * @param col  Column of the cell.
+         * @return Image of the cell on this layer, or {@code null} if the cell is transparent on this layer.
+         */
+        @Nullable
+        abstract CellImage getImageRep(@NotNull CellGrid grid, int row, int col);
     }
 
     /**
-     * Sets the current rotation of a {@link GraphicsContext}.
+     * Sets the strategy for redrawing the visible region of a map.
      *
-     * @param gc     Target Graphics Context.
-     * @param angle  Angle to rotate the context by.
-     * @param pivotX X-coordinate of the pivot point.
-     * @param pivotY Y-coordinate of the pivot point.
+     * @param mode New default render mode.
+     */
+    public static void setDefaultRenderMode(@NotNull RenderMode mode) {
+        defaultRenderMode = mode;
+    }
+
+    /**
+     * @return Current strategy for redrawing the visible region of a map.
      */
-    private static void rotate(@NotNull GraphicsContext gc, double angle, double pivotX, double pivotY) {
-        final var r = new Rotate(angle, pivotX, pivotY);
-        gc.setTransform(r.getMxx(), r.getMyx(), r.getMxy(), r.getMyy(), r.getTx(), r.getTy());
+    @NotNull
+    public static RenderMode getDefaultRenderMode() {
+        return defaultRenderMode;
     }
 
     /**
-     * Draws a rotated image onto a {@link GraphicsContext}.
+     * Draws a {@link CellImage} onto a {@link GraphicsContext}.
      *
-     * @param gc    Target Graphics Context.
-     * @param image Image to draw.
-     * @param angle Angle to rotate the image by.
-     * @param x     X-coordinate relative to the graphics context to draw the top-left of the image.
-     * @param y     Y-coordinate relative to the graphics context to draw the top-left of the image.
+     * @param gc        Target Graphics Context.
+     * @param cellImage Image to draw.
+     * @param x         X-coordinate relative to the graphics context to draw the top-left of the image.
+     * @param y         Y-coordinate relative to the graphics context to draw the top-left of the image.
      */
-    private static void drawRotatedImage(@NotNull GraphicsContext gc, @NotNull Image image, double angle, double x, double y) {
-        // TODO done?
-        gc.save(); // saves the current state on stack, including the current transform
-        rotate(gc, angle, x + image.getWidth() / 2, y + image.getHeight() / 2); //rotates around the center
-        gc.drawImage(image, x, y);
-        gc.restore(); // back to original state (before rotation)
+    private static void drawCellImage(@NotNull GraphicsContext gc, @NotNull CellImage cellImage, double x, double y) {
+        SpriteAtlas.getInstance().draw(gc, cellImage, x, y);
     }
 
     /**
@@ -84,16 +201,407 @@ public class Renderer {
      * @param map    Map to render.
      */
     public static void renderMap(@NotNull Canvas canvas, @NotNull Cell[][] map) {
-        // TODO done
-        canvas.setHeight(map.length*TILE_SIZE);
-        canvas.setWidth(map[0].length*TILE_SIZE);
-        for(int i = 0; i<map.length; i++){
-            for(int j = 0; j<map[0].length;j++){
-                drawRotatedImage(canvas.getGraphicsContext2D(),
-                        map[i][j].getImageRep().image,
-                        map[i][j].getImageRep().rotation,
-                        j*TILE_SIZE, i*TILE_SIZE);
+        renderMap(canvas, new ObjectCellGrid(map.length, map[0].length, map));
+    }
+
+    /**
+     * Renders a map into a {@link Canvas}, zoomed out so that it fits into
+     * {@link Config#MAX_VIEWPORT_WIDTH} by {@link Config#MAX_VIEWPORT_HEIGHT} pixels where possible.
+     *
+     * @param canvas Canvas to render to.
+     * @param grid   Grid of the map to render.
+     */
+    public static void renderMap(@NotNull Canvas canvas, @NotNull CellGrid grid) {
+        final var viewport = new Viewport(TILE_SIZE, Config.MAX_VIEWPORT_WIDTH, Config.MAX_VIEWPORT_HEIGHT);
+        viewport.setMapSize(grid.getRows(), grid.getCols());
+        viewport.zoomToFit();
+
+        final var dirty = new DirtyCells();
+        dirty.markAll();
+        renderMap(canvas, grid, dirty, viewport);
+    }
+
+    /**
+     * Renders the changed cells of a map which are visible through a {@link Viewport} into a {@link Canvas}, and then
+     * clears the set of changed cells.
+     *
+     * <p>
+     * The canvas is resized to the size of the viewport. Only tiles within the viewport are drawn, so the cost of a
+     * render does not depend on the size of the map. The whole viewport is redrawn if all cells are marked as changed,
+     * e.g. after a map is loaded or the camera has moved, or if the canvas does not have the size of the viewport.
+     * Otherwise only the tiles of the changed cells are redrawn, so the cost of a render is proportional to the number
+     * of changes.
+     * </p>
+     * <p>
+     * In {@link RenderMode#RASTER}, redraws of many tiles are rasterized by the {@link BoardRasterizer} and appear on
+     * the canvas once the workers have finished.
+     * </p>
+     *
+     * @param canvas   Canvas to render to.
+     * @param grid     Grid of the map to render.
+     * @param dirty    Cells which have changed since the map was last rendered to {@code canvas}.
+     * @param viewport Camera to render the map through.
+     */
+    public static void renderMap(@NotNull Canvas canvas, @NotNull CellGrid grid, @NotNull DirtyCells dirty,
+                                 @NotNull Viewport viewport) {
+        renderTiles(canvas, grid, CellGrid::getImageRep, dirty, viewport);
+    }
+
+    /**
+     * Renders the changed cells of one {@link Layer} of a map which are visible through a {@link Viewport} into a
+     * {@link Canvas}, and then clears the set of changed cells.
+     *
+     * <p>
+     * Tiles are redrawn as in {@link Renderer#renderMap(Canvas, CellGrid, DirtyCells, Viewport)}. Tiles which are
+     * transparent on the layer are cleared.
+     * </p>
+     *
+     * @param canvas   Canvas to render to.
+     * @param grid     Grid of the map to render.
+     * @param layer    Layer of the map to render.
+     * @param dirty    Cells which have changed on this layer since it was last rendered to {@code canvas}.
+     * @param viewport Camera to render the map through.
+     */
+    public static void renderLayer(@NotNull Canvas canvas, @NotNull CellGrid grid, @NotNull Layer layer,
+                                   @NotNull DirtyCells dirty, @NotNull Viewport viewport) {
+        renderTiles(canvas, grid, layer::getImageRep, dirty, viewport);
+    }
+
+    /**
+     * Selects the image of a tile to draw.
+     */
+    @FunctionalInterface
+    private interface TileImageSelector {
+        /**
+         * @return Image of the tile, or {@code null} if the tile is transparent.
+         */
+        @Nullable
+        CellImage select(@NotNull CellGrid grid, int row, int col);
+    }
+
+    private static void renderTiles(@NotNull Canvas canvas, @NotNull CellGrid grid,
+                                    @NotNull TileImageSelector selector, @NotNull DirtyCells dirty,
+                                    @NotNull Viewport viewport) {
+        viewport.setMapSize(grid.getRows(), grid.getCols());
+        final var gc = canvas.getGraphicsContext2D();
+        final var rasterState = (RasterState) canvas.getProperties().get(RASTER_STATE_KEY);
+
+        final double width = viewport.getWidth();
+        final double height = viewport.getHeight();
+        final boolean full = dirty.isAllDirty() || canvas.getWidth() != width || canvas.getHeight() != height;
+        if (defaultRenderMode == RenderMode.RASTER && (full || dirty.size() >= RASTER_THRESHOLD)
+                && getVisibleTileCount(viewport) >= RASTER_THRESHOLD) {
+            rasterizeTiles(canvas, grid, selector, viewport);
+            dirty.clear();
+            return;
+        }
+
+        if (full) {
+            if (rasterState != null) {
+                // discard pending rasterizations, which would overwrite this redraw
+                ++rasterState.generation;
+                rasterState.pending = false;
+            }
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            gc.clearRect(0, 0, width, height);
+            drawVisibleTiles(gc, grid, selector, viewport);
+            dirty.clear();
+            return;
+        }
+
+        final boolean rasterPending = rasterState != null && rasterState.pending;
+        dirty.forEach(packed -> {
+            final int row = PackedCoordinate.row(packed);
+            final int col = PackedCoordinate.col(packed);
+            if (!viewport.isVisible(row, col)) {
+                return;
             }
+
+            redrawTile(gc, selector.select(grid, row, col), viewport, row, col);
+            if (rasterPending) {
+                rasterState.redraw.mark(row, col);
+            }
+        });
+        dirty.clear();
+    }
+
+    /**
+     * @return Number of tiles which are at least partially visible through a viewport.
+     */
+    private static long getVisibleTileCount(@NotNull Viewport viewport) {
+        return (long) (viewport.getEndVisibleRow() - viewport.getFirstVisibleRow())
+                * (viewport.getEndVisibleCol() - viewport.getFirstVisibleCol());
+    }
+
+    /**
+     * Draws all tiles which are visible through a viewport.
+     */
+    private static void drawVisibleTiles(@NotNull GraphicsContext gc, @NotNull CellGrid grid,
+                                         @NotNull TileImageSelector selector, @NotNull Viewport viewport) {
+        final int rowEnd = viewport.getEndVisibleRow();
+        final int colEnd = viewport.getEndVisibleCol();
+        for (int i = viewport.getFirstVisibleRow(); i < rowEnd; i++) {
+            for (int j = viewport.getFirstVisibleCol(); j < colEnd; j++) {
+                drawTile(gc, selector.select(grid, i, j), viewport, i, j);
+            }
+        }
+    }
+
+    /**
+     * Clears a tile and draws its image at its position in a {@link Viewport}.
+     */
+    private static void redrawTile(@NotNull GraphicsContext gc, @Nullable CellImage image,
+                                   @NotNull Viewport viewport, int row, int col) {
+        final double x = viewport.getTileX(col);
+        final double y = viewport.getTileY(row);
+        gc.clearRect(x, y, viewport.getTileX(col + 1) - x, viewport.getTileY(row + 1) - y);
+        drawTile(gc, image, viewport, row, col);
+    }
+
+    /**
+     * Redraws all tiles which are visible through a viewport using the {@link BoardRasterizer}.
+     *
+     * <p>
+     * The images of the visible tiles are captured on the JavaFX Application Thread, so the workers do not access the
+     * grid. The canvas is resized immediately, and keeps its previous content until the buffer is uploaded.
+     * </p>
+     */
+    private static void rasterizeTiles(@NotNull Canvas canvas, @NotNull CellGrid grid,
+                                       @NotNull TileImageSelector selector, @NotNull Viewport viewport) {
+        final int width = (int) Math.ceil(viewport.getWidth());
+        final int height = (int) Math.ceil(viewport.getHeight());
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+
+        final int firstRow = viewport.getFirstVisibleRow();
+        final int firstCol = viewport.getFirstVisibleCol();
+        final int rowCount = viewport.getEndVisibleRow() - firstRow;
+        final int colCount = viewport.getEndVisibleCol() - firstCol;
+
+        final var atlas = SpriteAtlas.getInstance();
+        final var images = new int[rowCount * colCount];
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < colCount; j++) {
+                final var image = selector.select(grid, firstRow + i, firstCol + j);
+                if (image != null) {
+                    atlas.ensureBaked(image);
+                }
+                images[i * colCount + j] = image != null ? image.getIndex() : -1;
+            }
+        }
+        final var tileX = new int[colCount + 1];
+        for (int j = 0; j <= colCount; j++) {
+            tileX[j] = (int) viewport.getTileX(firstCol + j);
+        }
+        final var tileY = new int[rowCount + 1];
+        for (int i = 0; i <= rowCount; i++) {
+            tileY[i] = (int) viewport.getTileY(firstRow + i);
+        }
+        final var job = new BoardRasterizer.Job(width, height, images, tileX, tileY,
+                SpriteAtlas.selectLevel(viewport.getScaledTileSize()), atlas.getPixels());
+
+        var state = (RasterState) canvas.getProperties().get(RASTER_STATE_KEY);
+        if (state == null) {
+            state = new RasterState();
+            canvas.getProperties().put(RASTER_STATE_KEY, state);
+        }
+        final var rasterState = state;
+        final long generation = ++rasterState.generation;
+        rasterState.pending = true;
+        rasterState.redraw.clear();
+        rasterState.grid = grid;
+        rasterState.selector = selector;
+        rasterState.viewport = viewport;
+
+        BoardRasterizer.getInstance()
+                .rasterize(job, () -> rasterState.generation != generation)
+                .whenComplete((buffer, throwable) -> Platform.runLater(() -> {
+                    if (rasterState.generation != generation) {
+                        return;
+                    }
+                    if (throwable != null) {
+                        // a rasterizer which failed once is likely to fail again, so later redraws are drawn directly
+                        defaultRenderMode = RenderMode.CANVAS;
+                        drawRasterFallback(canvas, rasterState);
+                        return;
+                    }
+                    uploadRaster(canvas, rasterState, job, buffer);
+                }));
+    }
+
+    /**
+     * Draws the tiles of a failed rasterization directly onto the canvas, so that the canvas does not keep showing
+     * its previous content.
+     */
+    private static void drawRasterFallback(@NotNull Canvas canvas, @NotNull RasterState state) {
+        state.pending = false;
+        state.redraw.clear();
+
+        final var grid = state.grid;
+        final var selector = state.selector;
+        final var viewport = state.viewport;
+        if (grid == null || selector == null || viewport == null) {
+            return;
+        }
+        final var gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawVisibleTiles(gc, grid, selector, viewport);
+    }
+
+    /**
+     * Uploads a finished rasterization into a canvas, and redraws the tiles which have changed since it was started.
+     */
+    private static void uploadRaster(@NotNull Canvas canvas, @NotNull RasterState state,
+                                     @NotNull BoardRasterizer.Job job, @NotNull int[] buffer) {
+        if (state.image == null || state.image.getWidth() != job.width || state.image.getHeight() != job.height) {
+            state.image = new WritableImage(job.width, job.height);
+        }
+        state.image.getPixelWriter().setPixels(0, 0, job.width, job.height, PixelFormat.getIntArgbInstance(),
+                buffer, 0, job.width);
+
+        final var gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.drawImage(state.image, 0, 0);
+        state.pending = false;
+
+        final var grid = state.grid;
+        final var selector = state.selector;
+        final var viewport = state.viewport;
+        if (grid != null && selector != null && viewport != null && !state.redraw.isAllDirty()) {
+            state.redraw.forEach(packed -> {
+                final int row = PackedCoordinate.row(packed);
+                final int col = PackedCoordinate.col(packed);
+                if (viewport.isVisible(row, col)) {
+                    redrawTile(gc, selector.select(grid, row, col), viewport, row, col);
+                }
+            });
+        }
+        state.redraw.clear();
+    }
+
+    /**
+     * Draws the image of a tile at its position in a {@link Viewport}.
+     */
+    private static void drawTile(@NotNull GraphicsContext gc, @Nullable CellImage image, @NotNull Viewport viewport,
+                                 int row, int col) {
+        if (image == null) {
+            return;
+        }
+
+        final double x = viewport.getTileX(col);
+        final double y = viewport.getTileY(row);
+        SpriteAtlas.getInstance().draw(gc, image, x, y, viewport.getTileX(col + 1) - x, viewport.getTileY(row + 1) - y);
+    }
+
+    /**
+     * Renders the water which is flowing into tiles of a map, i.e. the partially filled tiles between two flow steps,
+     * into a {@link Canvas} which is shown on top of the {@link Layer#WATER} layer.
+     *
+     * <p>
+     * Only the tiles which the water is currently flowing into are drawn, and only the tiles drawn by the previous
+     * call are cleared, so the cost of a frame is proportional to the length of the water front rather than the size
+     * of the map. The canvas is cleared entirely if {@code drawn} is {@link DirtyCells#isAllDirty() all dirty} or the
+     * canvas does not have the size of the viewport.
+     * </p>
+     * <p>
+     * The water fills a tile from the side it enters to the centre in the first half of a step, and from the centre
+     * to the other ends of the pipe in the second half.
+     * </p>
+     *
+     * @param canvas   Canvas to render to.
+     * @param map      Map to render the water front of.
+     * @param progress Progress of the current flow step, from {@code 0} to {@code 1}.
+     * @param drawn    Tiles which have been drawn to {@code canvas} by the previous call. Updated to the tiles drawn by
+     *                 this call.
+     * @param viewport Camera to render the map through.
+     */
+    public static void renderFlow(@NotNull Canvas canvas, @NotNull Map map, double progress,
+                                  @NotNull DirtyCells drawn, @NotNull Viewport viewport) {
+        final var grid = map.getGrid();
+        viewport.setMapSize(grid.getRows(), grid.getCols());
+        final var gc = canvas.getGraphicsContext2D();
+
+        final double width = viewport.getWidth();
+        final double height = viewport.getHeight();
+        if (drawn.isAllDirty() || canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            gc.clearRect(0, 0, width, height);
+        } else {
+            drawn.forEach(packed -> {
+                final int row = PackedCoordinate.row(packed);
+                final int col = PackedCoordinate.col(packed);
+                if (viewport.isVisible(row, col)) {
+                    redrawTile(gc, null, viewport, row, col);
+                }
+            });
+        }
+        drawn.clear();
+
+        map.forEachFlowTarget((row, col, direction) -> {
+            final var shape = grid.getShape(row, col);
+            if (shape == null || !viewport.isVisible(row, col)) {
+                return;
+            }
+
+            drawPartialFill(gc, shape.getCellImage(true), shape.getConnections(), direction, progress, viewport,
+                    row, col);
+            drawn.mark(row, col);
+        });
+    }
+
+    /**
+     * Draws the part of a filled pipe which the water has reached.
+     *
+     * @param gc          Target Graphics Context.
+     * @param image       Image of the filled pipe.
+     * @param connections Sides of the pipe.
+     * @param direction   Direction which the water flows in when entering the pipe.
+     * @param progress    Progress of the water through the pipe, from {@code 0} to {@code 1}.
+     */
+    private static void drawPartialFill(@NotNull GraphicsContext gc, @NotNull CellImage image,
+                                        @NotNull Direction[] connections, @NotNull Direction direction,
+                                        double progress, @NotNull Viewport viewport, int row, int col) {
+        final var entry = direction.getOpposite();
+        drawStrip(gc, image, entry, 0, Math.min(progress, 0.5), viewport, row, col);
+        if (progress <= 0.5) {
+            return;
+        }
+        for (var side : connections) {
+            if (side != entry) {
+                drawStrip(gc, image, side, 1 - progress, 0.5, viewport, row, col);
+            }
+        }
+    }
+
+    /**
+     * Draws a strip of a tile which runs parallel to one of its sides.
+     *
+     * @param side Side of the tile which the strip runs parallel to.
+     * @param from Distance of the near edge of the strip from {@code side}, as a fraction of the tile size.
+     * @param to   Distance of the far edge of the strip from {@code side}, as a fraction of the tile size.
+     */
+    private static void drawStrip(@NotNull GraphicsContext gc, @NotNull CellImage image, @NotNull Direction side,
+                                  double from, double to, @NotNull Viewport viewport, int row, int col) {
+        final double x = viewport.getTileX(col);
+        final double y = viewport.getTileY(row);
+        final double width = viewport.getTileX(col + 1) - x;
+        final double height = viewport.getTileY(row + 1) - y;
+        final var atlas = SpriteAtlas.getInstance();
+        switch (side) {
+            case UP:
+                atlas.drawPart(gc, image, x, y, width, height, 0, from, 1, to);
+                break;
+            case DOWN:
+                atlas.drawPart(gc, image, x, y, width, height, 0, 1 - to, 1, 1 - from);
+                break;
+            case LEFT:
+                atlas.drawPart(gc, image, x, y, width, height, from, 0, to, 1);
+                break;
+            case RIGHT:
+                atlas.drawPart(gc, image, x, y, width, height, 1 - to, 0, 1 - from, 1);
+                break;
         }
     }
 
@@ -108,9 +616,8 @@ public class Renderer {
         canvas.setHeight(TILE_SIZE);
         canvas.setWidth((TILE_SIZE+QUEUE_TILE_PADDING)*pipeQueue.size());
         for(int i = 0; i<pipeQueue.size(); i++){
-            drawRotatedImage(canvas.getGraphicsContext2D(),
-                    pipeQueue.get(i).getImageRep().image,
-                    pipeQueue.get(i).getImageRep().rotation,
+            drawCellImage(canvas.getGraphicsContext2D(),
+                    pipeQueue.get(i).getImageRep(),
                     i*(TILE_SIZE+QUEUE_TILE_PADDING),0);
         }
     }
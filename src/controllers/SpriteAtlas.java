@@ -0,0 +1,363 @@
+package controllers;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import models.CellImage;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Direction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static models.Config.TILE_SIZE;
+
+/**
+ * Singleton texture atlas containing a pre-rotated copy of every {@link CellImage}.
+ *
+ * <p>
+ * Every image is baked once into a slot of a single {@link WritableImage}, at the index of its {@link CellImage}. A
+ * tile is then drawn with one untransformed {@link GraphicsContext#drawImage(Image, double, double, double, double,
+ * double, double, double, double)} call of its slot, instead of saving, rotating and restoring the graphics context
+ * for every tile.
+ * </p>
+ * <p>
+ * The atlas has {@link SpriteAtlas#LEVELS} mipmap levels, each with tiles of half the size of the previous level. Tiles
+ * which are drawn smaller than their original size are drawn from the smallest level which is at least as large, so
+ * zoomed out views neither shimmer nor sample many more pixels than they draw.
+ * </p>
+ * <p>
+ * The decoded pixels of every level are kept as well, for rasterizing tiles without a {@link GraphicsContext}, e.g. on
+ * worker threads by the {@link BoardRasterizer}.
+ * </p>
+ * <p>
+ * Descriptors created after the atlas has been baked, e.g. of shapes registered later, cause the atlas to be baked
+ * again when they are first drawn. This class must only be used on the JavaFX Application Thread.
+ * </p>
+ */
+public class SpriteAtlas {
+
+    /**
+     * Number of slots in a row of the atlas.
+     */
+    private static final int COLUMNS = 8;
+    /**
+     * Number of mipmap levels, from {@link models.Config#TILE_SIZE} pixels down to an eighth of it.
+     */
+    private static final int LEVELS = 4;
+
+    /**
+     * One descriptor of each kind of built-in element. Referencing these creates the descriptors of all built-in
+     * elements, so that they are baked into the first atlas.
+     */
+    @NotNull
+    private static final List<CellImage> BUILT_IN = List.of(
+            Wall.IMAGE_REP,
+            FillableCell.EMPTY_IMAGE_REP,
+            Pipe.Shape.CROSS.getCellImage(false),
+            TerminationCell.getImageRep(TerminationCell.Type.SOURCE, Direction.UP, false)
+    );
+
+    @Nullable
+    private static SpriteAtlas instance;
+
+    /**
+     * Loaded source images, keyed by their resource path.
+     */
+    @NotNull
+    private final Map<String, Image> sources = new HashMap<>();
+    /**
+     * Atlas images, indexed by mipmap level.
+     */
+    @NotNull
+    private WritableImage[] levels = new WritableImage[0];
+    /**
+     * Non-premultiplied ARGB pixels of the atlas images, indexed by mipmap level. The arrays are replaced instead of
+     * modified when the atlas is baked again, so they can be read from any thread.
+     */
+    @NotNull
+    private int[][] pixels = new int[0][];
+    /**
+     * Number of {@link CellImage} which have been baked into {@link SpriteAtlas#levels}.
+     */
+    private int bakedCount;
+
+    private SpriteAtlas() {
+        bake();
+    }
+
+    /**
+     * Retrieves the atlas, baking it if this is the first call.
+     *
+     * @return Singleton instance of this class.
+     */
+    @NotNull
+    public static SpriteAtlas getInstance() {
+        if (instance == null) {
+            instance = new SpriteAtlas();
+        }
+        return instance;
+    }
+
+    /**
+     * Draws a {@link CellImage} onto a {@link GraphicsContext}.
+     *
+     * @param gc        Target Graphics Context.
+     * @param cellImage Image to draw.
+     * @param x         X-coordinate relative to the graphics context to draw the top-left of the image.
+     * @param y         Y-coordinate relative to the graphics context to draw the top-left of the image.
+     */
+    public void draw(@NotNull GraphicsContext gc, @NotNull CellImage cellImage, double x, double y) {
+        draw(gc, cellImage, x, y, TILE_SIZE, TILE_SIZE);
+    }
+
+    /**
+     * Draws a {@link CellImage} onto a {@link GraphicsContext}, scaled to a given size.
+     *
+     * @param gc        Target Graphics Context.
+     * @param cellImage Image to draw.
+     * @param x         X-coordinate relative to the graphics context to draw the top-left of the image.
+     * @param y         Y-coordinate relative to the graphics context to draw the top-left of the image.
+     * @param width     Width to draw the image with.
+     * @param height    Height to draw the image with.
+     */
+    public void draw(@NotNull GraphicsContext gc, @NotNull CellImage cellImage, double x, double y,
+                     double width, double height) {
+        ensureBaked(cellImage);
+
+        final int index = cellImage.getIndex();
+        final int level = selectLevel(Math.max(width, height));
+        final int tileSize = getTileSize(level);
+        gc.drawImage(levels[level], getSourceX(index, level), getSourceY(index, level), tileSize, tileSize,
+                x, y, width, height);
+    }
+
+    /**
+     * Draws a rectangular part of a {@link CellImage} onto a {@link GraphicsContext}, at the position which the part
+     * would have if the whole image was drawn.
+     *
+     * @param gc        Target Graphics Context.
+     * @param cellImage Image to draw.
+     * @param x         X-coordinate relative to the graphics context of the top-left of the whole image.
+     * @param y         Y-coordinate relative to the graphics context of the top-left of the whole image.
+     * @param width     Width of the whole image.
+     * @param height    Height of the whole image.
+     * @param left      Left edge of the part, as a fraction of the width of the image.
+     * @param top       Top edge of the part, as a fraction of the height of the image.
+     * @param right     Right edge of the part, as a fraction of the width of the image.
+     * @param bottom    Bottom edge of the part, as a fraction of the height of the image.
+     */
+    public void drawPart(@NotNull GraphicsContext gc, @NotNull CellImage cellImage, double x, double y,
+                         double width, double height, double left, double top, double right, double bottom) {
+        if (right <= left || bottom <= top) {
+            return;
+        }
+        ensureBaked(cellImage);
+
+        final int index = cellImage.getIndex();
+        final int level = selectLevel(Math.max(width, height));
+        final int tileSize = getTileSize(level);
+        gc.drawImage(levels[level],
+                getSourceX(index, level) + left * tileSize, getSourceY(index, level) + top * tileSize,
+                (right - left) * tileSize, (bottom - top) * tileSize,
+                x + left * width, y + top * height, (right - left) * width, (bottom - top) * height);
+    }
+
+    /**
+     * Bakes the atlas again if it does not contain an image yet.
+     *
+     * @param cellImage Image which must be contained in the atlas.
+     */
+    void ensureBaked(@NotNull CellImage cellImage) {
+        if (cellImage.getIndex() >= bakedCount) {
+            bake();
+        }
+    }
+
+    /**
+     * @return Pixels of each mipmap level, which must not be modified. Rows of a level are
+     * {@link SpriteAtlas#getAtlasWidth(int)} pixels wide.
+     */
+    @NotNull
+    int[][] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @param size Width or height which a tile is drawn with.
+     * @return Smallest mipmap level whose tiles are at least as large as {@code size}.
+     */
+    static int selectLevel(double size) {
+        int level = 0;
+        while (level + 1 < LEVELS && getTileSize(level + 1) >= size) {
+            ++level;
+        }
+        return level;
+    }
+
+    /**
+     * @param level Mipmap level.
+     * @return Width of the atlas image of the level.
+     */
+    static int getAtlasWidth(int level) {
+        return COLUMNS * getTileSize(level);
+    }
+
+    /**
+     * @return The full-size atlas image. The image is replaced when the atlas is baked again.
+     */
+    @NotNull
+    public Image getImage() {
+        return levels[0];
+    }
+
+    /**
+     * @param level Mipmap level.
+     * @return Width and height of a tile in the level.
+     */
+    static int getTileSize(int level) {
+        return TILE_SIZE >> level;
+    }
+
+    /**
+     * @param index {@link CellImage#getIndex()} of an image.
+     * @param level Mipmap level.
+     * @return X-coordinate of the slot of the image in the atlas.
+     */
+    static int getSourceX(int index, int level) {
+        return (index % COLUMNS) * getTileSize(level);
+    }
+
+    /**
+     * @param index {@link CellImage#getIndex()} of an image.
+     * @param level Mipmap level.
+     * @return Y-coordinate of the slot of the image in the atlas.
+     */
+    static int getSourceY(int index, int level) {
+        return (index / COLUMNS) * getTileSize(level);
+    }
+
+    /**
+     * Bakes all {@link CellImage} which currently exist into new atlas images.
+     */
+    private void bake() {
+        final var all = CellImage.getAll();
+        final int rows = Math.max(1, (all.size() + COLUMNS - 1) / COLUMNS);
+        final var atlasPixels = new int[LEVELS][];
+        for (int level = 0; level < LEVELS; ++level) {
+            atlasPixels[level] = new int[getAtlasWidth(level) * rows * getTileSize(level)];
+        }
+        final var format = PixelFormat.getIntArgbInstance();
+
+        final var src = new int[TILE_SIZE * TILE_SIZE];
+        final var dst = new int[TILE_SIZE * TILE_SIZE];
+        for (var cellImage : all) {
+            final var source = sources.computeIfAbsent(cellImage.getResource(),
+                    path -> new Image(ResourceLoader.getResource(path)));
+            if (source.getWidth() != TILE_SIZE || source.getHeight() != TILE_SIZE) {
+                throw new IllegalStateException("Image " + cellImage.getResource() + " is not "
+                        + TILE_SIZE + "x" + TILE_SIZE);
+            }
+
+            source.getPixelReader().getPixels(0, 0, TILE_SIZE, TILE_SIZE, format, src, 0, TILE_SIZE);
+            rotate(src, dst, (int) cellImage.getRotation());
+
+            for (int level = 0; level < LEVELS; ++level) {
+                final int tileSize = getTileSize(level);
+                if (level > 0) {
+                    downsample(dst, tileSize * 2);
+                }
+                final int x = getSourceX(cellImage.getIndex(), level);
+                final int y = getSourceY(cellImage.getIndex(), level);
+                for (int row = 0; row < tileSize; ++row) {
+                    System.arraycopy(dst, row * tileSize, atlasPixels[level], (y + row) * getAtlasWidth(level) + x,
+                            tileSize);
+                }
+            }
+        }
+
+        final var atlas = new WritableImage[LEVELS];
+        for (int level = 0; level < LEVELS; ++level) {
+            final int width = getAtlasWidth(level);
+            final int height = rows * getTileSize(level);
+            atlas[level] = new WritableImage(width, height);
+            atlas[level].getPixelWriter().setPixels(0, 0, width, height, format, atlasPixels[level], 0, width);
+        }
+
+        levels = atlas;
+        pixels = atlasPixels;
+        bakedCount = all.size();
+    }
+
+    /**
+     * Halves the size of a square tile of pixels in place, by averaging each 2x2 block with premultiplied alpha.
+     *
+     * @param pixels Pixels of the tile in row-major order. The halved tile is written to the start of the array.
+     * @param size   Width and height of the tile before halving.
+     */
+    private static void downsample(@NotNull int[] pixels, int size) {
+        final int half = size / 2;
+        for (int y = 0; y < half; ++y) {
+            for (int x = 0; x < half; ++x) {
+                final int topLeft = (2 * y) * size + 2 * x;
+                int a = 0;
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int i : new int[]{topLeft, topLeft + 1, topLeft + size, topLeft + size + 1}) {
+                    final int argb = pixels[i];
+                    final int alpha = argb >>> 24;
+                    a += alpha;
+                    r += ((argb >> 16) & 0xFF) * alpha;
+                    g += ((argb >> 8) & 0xFF) * alpha;
+                    b += (argb & 0xFF) * alpha;
+                }
+                // the block is read before the pixel is written, as the halved tile is written over the first rows
+                pixels[y * half + x] = a == 0 ? 0 : ((a / 4) << 24) | ((r / a) << 16) | ((g / a) << 8) | (b / a);
+            }
+        }
+    }
+
+    /**
+     * Rotates a square tile of pixels clockwise around its center.
+     *
+     * @param src      Pixels of the tile in row-major order.
+     * @param dst      Array to write the rotated pixels into.
+     * @param rotation Rotation in degrees, as one of 0, 90, 180 or 270.
+     */
+    private static void rotate(@NotNull int[] src, @NotNull int[] dst, int rotation) {
+        final int last = TILE_SIZE - 1;
+        for (int y = 0; y < TILE_SIZE; ++y) {
+            for (int x = 0; x < TILE_SIZE; ++x) {
+                int srcX;
+                int srcY;
+                switch (rotation) {
+                    case 90:
+                        srcX = y;
+                        srcY = last - x;
+                        break;
+                    case 180:
+                        srcX = last - x;
+                        srcY = last - y;
+                        break;
+                    case 270:
+                        srcX = last - y;
+                        srcY = x;
+                        break;
+                    default:
+                        srcX = x;
+                        srcY = y;
+                        break;
+                }
+                dst[y * TILE_SIZE + x] = src[srcY * TILE_SIZE + srcX];
+            }
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader and writer of the binary level format.
+ *
+ * <p>
+ * Layout of a binary level, with all integers in big-endian order:
+ * <ul>
+ * <li>4 bytes: {@link BinaryLevelFormat#MAGIC}.</li>
+ * <li>1 byte: Version of the format, currently {@link BinaryLevelFormat#VERSION}.</li>
+ * <li>1 byte: Flags, a combination of the {@code FLAG_*} values.</li>
+ * <li>3 &times; 4 bytes: Number of rows, number of columns, and delay.</li>
+ * <li>4 bytes: Number of initial pipes, or {@code -1} if the level does not specify any.</li>
+ * <li>If {@link BinaryLevelFormat#FLAG_FIXED_STRIDE} is set, 4 &times; 4 bytes: Row and column of the source, and row
+ * and column of the sink.</li>
+ * <li>Initial pipes: the ID of each {@link Pipe.Shape}, packed as 4-bit values.</li>
+ * <li>Cells in row-major order, packed as 4-bit values.</li>
+ * </ul>
+ * 4-bit values are packed with the first value in the high half of each byte. A partially-filled final byte is padded
+ * with {@link BinaryLevelFormat#PADDING}.
+ * </p>
+ * <p>
+ * Each cell is one of the {@code CODE_*} values. Runs of at least {@link BinaryLevelFormat#MIN_RUN} empty cells or
+ * walls are instead written as {@link BinaryLevelFormat#RUN_EMPTY} or {@link BinaryLevelFormat#RUN_WALL}, followed
+ * by the length of the run as a variable-length number: each 4-bit value holds 3 bits of the length, lowest bits first,
+ * and the highest bit is set if more values follow. Runs may span multiple rows.
+ * </p>
+ * <p>
+ * If {@link BinaryLevelFormat#FLAG_FIXED_STRIDE} is set, runs are not used, and every row starts at a new byte. The
+ * cell at any position can then be located without decoding the rest of the level, which allows {@link MappedLevel}
+ * to read it directly from a memory-mapped file.
+ * </p>
+ */
+final class BinaryLevelFormat {
+
+    /**
+     * Magic number at the start of every binary level.
+     */
+    static final byte[] MAGIC = {'P', 'M', 'A', 'P'};
+    static final int VERSION = 1;
+
+    /**
+     * Flag which indicates that the cells are stored with a fixed number of bytes per row.
+     */
+    static final int FLAG_FIXED_STRIDE = 0x01;
+
+    /**
+     * Size of the header of a level with {@link BinaryLevelFormat#FLAG_FIXED_STRIDE}, up to the initial pipes.
+     */
+    static final int FIXED_STRIDE_HEADER_SIZE = MAGIC.length + 2 + 8 * Integer.BYTES;
+
+    static final int CODE_EMPTY = 0x0;
+    static final int CODE_WALL = 0x1;
+    /**
+     * Code of the first termination cell. The code of a termination cell is this value plus the ordinal of its
+     * direction. Whether the cell is a source or a sink is given by its position, as in the text format.
+     */
+    static final int CODE_TERMINATION = 0x2;
+    static final int RUN_EMPTY = 0xE;
+    static final int RUN_WALL = 0xF;
+    static final int PADDING = 0xF;
+
+    /**
+     * Minimum length of a run which is written as a run.
+     */
+    private static final int MIN_RUN = 3;
+
+    private BinaryLevelFormat() {
+    }
+
+    /**
+     * @param head The first bytes of a file. The position of the buffer is not changed.
+     * @return Whether the file is a binary level.
+     */
+    static boolean isBinary(@NotNull ByteBuffer head) {
+        if (head.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; ++i) {
+            if (head.get(head.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param head The first bytes of a file. The position of the buffer is not changed.
+     * @return Whether the file is a binary level with {@link BinaryLevelFormat#FLAG_FIXED_STRIDE}.
+     */
+    static boolean isFixedStride(@NotNull ByteBuffer head) {
+        return isBinary(head) && head.remaining() > MAGIC.length + 1
+                && (head.get(head.position() + MAGIC.length + 1) & FLAG_FIXED_STRIDE) != 0;
+    }
+
+    /**
+     * @param cols Number of columns of a level.
+     * @return Number of bytes of each row of a level with {@link BinaryLevelFormat#FLAG_FIXED_STRIDE}.
+     */
+    static long strideOf(int cols) {
+        return (cols + 1L) / 2;
+    }
+
+    /**
+     * Reads a binary level.
+     *
+     * @param in   Stream to read from, positioned at the start of the level. The stream is not closed by this method.
+     * @param size Number of bytes of the level, or {@code -1} if it is not known.
+     * @return The properties of the level.
+     * @throws IOException         if the stream fails to read.
+     * @throws InvalidMapException if the level is malformed.
+     */
+    @NotNull
+    static GameProperties read(@NotNull InputStream in, long size) throws IOException {
+        final var data = new DataInputStream(new BufferedInputStream(in));
+        try {
+            final var magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!isBinary(ByteBuffer.wrap(magic))) {
+                throw new InvalidMapException("Not a binary level");
+            }
+
+            final int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new InvalidMapException("Unsupported binary level version " + version);
+            }
+            final int flags = data.readUnsignedByte();
+            final boolean fixedStride = (flags & FLAG_FIXED_STRIDE) != 0;
+
+            final int rows = data.readInt();
+            final int cols = data.readInt();
+            final int delay = data.readInt();
+            final int pipeCount = data.readInt();
+            if (rows <= 0 || cols <= 0) {
+                throw new InvalidMapException("Map must have at least one row and column");
+            }
+            if (fixedStride && size >= 0) {
+                // every cell of a fixed-stride level is stored, so the size of the level bounds its cells
+                Deserializer.checkSize(rows, cols, strideOf(cols) * rows, size);
+            } else {
+                // run-length encoded cells can take any number of bytes, so their number is limited instead
+                Deserializer.checkDimensions(rows, cols, 0, size);
+            }
+            if (fixedStride) {
+                // the positions of the source and sink are only needed when the level is memory-mapped
+                for (int i = 0; i < 4; ++i) {
+                    data.readInt();
+                }
+            }
+
+            final var nibbles = new NibbleReader(data);
+
+            List<Pipe> pipes = null;
+            if (pipeCount >= 0) {
+                pipes = new ArrayList<>(pipeCount);
+                for (int i = 0; i < pipeCount; ++i) {
+                    final int id = nibbles.read();
+                    if (id >= Pipe.Shape.values().length) {
+                        throw new InvalidMapException("Unknown pipe shape " + id);
+                    }
+                    pipes.add(new Pipe(Pipe.Shape.fromId(id)));
+                }
+                nibbles.align();
+            }
+
+            final var cells = new Cell[rows][cols];
+            if (fixedStride) {
+                for (int r = 0; r < rows; ++r) {
+                    for (int c = 0; c < cols; ++c) {
+                        cells[r][c] = createCell(nibbles.read(), r, c, rows, cols);
+                    }
+                    nibbles.align();
+                }
+                return new GameProperties(rows, cols, cells, delay, pipes);
+            }
+
+            final long total = (long) rows * cols;
+            long index = 0;
+            while (index < total) {
+                final int code = nibbles.read();
+                if (code == RUN_EMPTY || code == RUN_WALL) {
+                    final long length = nibbles.readLength();
+                    if (length > total - index) {
+                        throw new InvalidMapException("Run of " + length + " cells exceeds the size of the map");
+                    }
+                    for (long end = index + length; index < end; ++index) {
+                        final int r = (int) (index / cols);
+                        final int c = (int) (index % cols);
+                        cells[r][c] = createCell(code == RUN_EMPTY ? CODE_EMPTY : CODE_WALL, r, c, rows, cols);
+                    }
+                } else {
+                    final int r = (int) (index / cols);
+                    final int c = (int) (index % cols);
+                    cells[r][c] = createCell(code, r, c, rows, cols);
+                    ++index;
+                }
+            }
+
+            return new GameProperties(rows, cols, cells, delay, pipes);
+        } catch (EOFException e) {
+            throw new InvalidMapException("Unexpected EOF when reading binary level");
+        }
+    }
+
+    /**
+     * Writes a binary level.
+     *
+     * @param prop        Properties of the level.
+     * @param out         Stream to write to. The stream is flushed but not closed by this method.
+     * @param fixedStride Whether to write the level with {@link BinaryLevelFormat#FLAG_FIXED_STRIDE}.
+     * @throws IOException              if the stream fails to write.
+     * @throws IllegalArgumentException if the level contains cells which cannot be represented, or if a fixed-stride
+     *                                  level does not have a source and a sink.
+     */
+    static void write(@NotNull GameProperties prop, @NotNull OutputStream out, boolean fixedStride)
+            throws IOException {
+        final var data = new DataOutputStream(new BufferedOutputStream(out));
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(fixedStride ? FLAG_FIXED_STRIDE : 0);
+        data.writeInt(prop.rows);
+        data.writeInt(prop.cols);
+        data.writeInt(prop.delay);
+        data.writeInt(prop.pipes != null ? prop.pipes.size() : -1);
+        if (fixedStride) {
+            final var source = findTermination(prop, TerminationCell.Type.SOURCE);
+            final var sink = findTermination(prop, TerminationCell.Type.SINK);
+            data.writeInt(source.row);
+            data.writeInt(source.col);
+            data.writeInt(sink.row);
+            data.writeInt(sink.col);
+        }
+
+        final var nibbles = new NibbleWriter(data);
+        if (prop.pipes != null) {
+            for (var pipe : prop.pipes) {
+                nibbles.write(pipe.getShape().getId());
+            }
+            nibbles.align();
+        }
+
+        if (fixedStride) {
+            for (int r = 0; r < prop.rows; ++r) {
+                for (int c = 0; c < prop.cols; ++c) {
+                    nibbles.write(codeOf(prop.cells[r][c]));
+                }
+                nibbles.align();
+            }
+            data.flush();
+            return;
+        }
+
+        final long total = (long) prop.rows * prop.cols;
+        long index = 0;
+        while (index < total) {
+            final int code = codeOf(prop.cells[(int) (index / prop.cols)][(int) (index % prop.cols)]);
+
+            long runEnd = index + 1;
+            if (code == CODE_EMPTY || code == CODE_WALL) {
+                while (runEnd < total
+                        && codeOf(prop.cells[(int) (runEnd / prop.cols)][(int) (runEnd % prop.cols)]) == code) {
+                    ++runEnd;
+                }
+            }
+
+            final long length = runEnd - index;
+            if (length >= MIN_RUN) {
+                nibbles.write(code == CODE_EMPTY ? RUN_EMPTY : RUN_WALL);
+                nibbles.writeLength(length);
+            } else {
+                for (long i = 0; i < length; ++i) {
+                    nibbles.write(code);
+                }
+            }
+            index = runEnd;
+        }
+        nibbles.align();
+        data.flush();
+    }
+
+    /**
+     * @return The position of the first termination cell of the given type.
+     * @throws IllegalArgumentException if there is no such cell.
+     */
+    @NotNull
+    private static Coordinate findTermination(@NotNull GameProperties prop, @NotNull TerminationCell.Type type) {
+        for (int r = 0; r < prop.rows; ++r) {
+            for (int c = 0; c < prop.cols; ++c) {
+                final var cell = prop.cells[r][c];
+                if (cell instanceof TerminationCell && ((TerminationCell) cell).type == type) {
+                    return cell.coord;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Level does not have a " + type.name().toLowerCase());
+    }
+
+    /**
+     * @param cell Cell to encode.
+     * @return The {@code CODE_*} value of the cell.
+     */
+    static int codeOf(@Nullable Cell cell) {
+        if (cell instanceof Wall) {
+            return CODE_WALL;
+        } else if (cell instanceof FillableCell) {
+            return CODE_EMPTY;
+        } else if (cell instanceof TerminationCell) {
+            return CODE_TERMINATION + ((TerminationCell) cell).pointingTo.ordinal();
+        } else {
+            throw new IllegalArgumentException("Cannot encode cell " + cell);
+        }
+    }
+
+    /**
+     * Creates the cell represented by a {@code CODE_*} value.
+     *
+     * @throws InvalidMapException if the code does not represent a cell.
+     */
+    @NotNull
+    static Cell createCell(int code, int row, int col, int rows, int cols) {
+        final var coord = new Coordinate(row, col);
+        switch (code) {
+            case CODE_EMPTY:
+                return new FillableCell(coord);
+            case CODE_WALL:
+                return new Wall(coord);
+            default:
+                final int dir = code - CODE_TERMINATION;
+                if (dir < 0 || dir >= Direction.values().length) {
+                    throw new InvalidMapException("Invalid cell code " + code + " at (" + row + ", " + col + ")");
+                }
+
+                final var type = row == 0 || row == rows - 1 || col == 0 || col == cols - 1
+                        ? TerminationCell.Type.SINK
+                        : TerminationCell.Type.SOURCE;
+                return new TerminationCell(coord, Direction.fromOrdinal(dir), type);
+        }
+    }
+
+    /**
+     * Reads 4-bit values from a stream.
+     */
+    private static final class NibbleReader {
+        @NotNull
+        private final DataInputStream in;
+        private int current;
+        private boolean hasLow = false;
+
+        NibbleReader(@NotNull DataInputStream in) {
+            this.in = in;
+        }
+
+        int read() throws IOException {
+            if (hasLow) {
+                hasLow = false;
+                return current & 0xF;
+            }
+
+            current = in.readUnsignedByte();
+            hasLow = true;
+            return current >>> 4;
+        }
+
+        long readLength() throws IOException {
+            long length = 0;
+            int shift = 0;
+            int nibble;
+            do {
+                if (shift > 60) {
+                    throw new InvalidMapException("Run length too long");
+                }
+                nibble = read();
+                length |= (long) (nibble & 0x7) << shift;
+                shift += 3;
+            } while ((nibble & 0x8) != 0);
+            return length;
+        }
+
+        /**
+         * Skips the padding of a partially-read byte.
+         */
+        void align() {
+            hasLow = false;
+        }
+    }
+
+    /**
+     * Writes 4-bit values to a stream.
+     */
+    private static final class NibbleWriter {
+        @NotNull
+        private final DataOutputStream out;
+        private int current;
+        private boolean hasHigh = false;
+
+        NibbleWriter(@NotNull DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(int nibble) throws IOException {
+            if (hasHigh) {
+                out.writeByte(current | nibble);
+                hasHigh = false;
+            } else {
+                current = nibble << 4;
+                hasHigh = true;
+            }
+        }
+
+        void writeLength(long length) throws IOException {
+            do {
+                int nibble = (int) (length & 0x7);
+                length >>>= 3;
+                if (length != 0) {
+                    nibble |= 0x8;
+                }
+                write(nibble);
+            } while (length != 0);
+        }
+
+        /**
+         * Pads a partially-written byte.
+         */
+        void align() throws IOException {
+            if (hasHigh) {
+                write(PADDING);
+            }
+        }
+    }
+}
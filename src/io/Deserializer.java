@@ -1,29 +1,33 @@
 package io;
 
-import models.FXGame;
 import models.exceptions.InvalidMapException;
 import models.map.Map;
 import models.map.cells.Cell;
-import models.map.cells.TerminationCell;
-import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import textgame.game.Game;
-import util.Coordinate;
 
-import java.io.*;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A deserializer for converting a map file into a {@link Game}.
  */
 public class Deserializer {
 
+    /**
+     * Largest number of cells of a map which is parsed into memory, unless changed with
+     * {@link Deserializer#setDefaultMaxCells(long)}.
+     */
+    private static long defaultMaxCells = 1L << 24;
+
     /**
      * Path to the map to deserialize.
      */
@@ -35,7 +39,7 @@ public class Deserializer {
     }
 
     public Deserializer(@NotNull final Path path) throws FileNotFoundException {
-        if (!path.toFile().exists()) {
+        if (!Files.exists(path)) {
             throw new FileNotFoundException("Cannot find file to load!");
         }
 
@@ -43,27 +47,70 @@ public class Deserializer {
     }
 
     /**
-     * Parses the text file and returns an instance of {@link Game}.
+     * Sets the largest number of cells of a map which is parsed into memory. Larger maps are rejected before any cell
+     * is created, so that a malformed or hostile header cannot exhaust the heap. Levels opened as a
+     * {@link MappedLevel}, and fixed-stride binary levels whose size matches their header, are not limited.
      *
-     * @return An instance of {@link Game}.
-     * @throws InvalidMapException if the map cannot be parsed.
+     * @param maxCells New maximum number of cells.
      */
-    @Nullable
-    public Game parseGame() {
-        final var properties = parseGameFile();
-        return new Game(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes);
+    public static void setDefaultMaxCells(long maxCells) {
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("Maximum number of cells must be positive");
+        }
+        defaultMaxCells = maxCells;
+    }
+
+    /**
+     * @return Current largest number of cells of a map which is parsed into memory.
+     */
+    public static long getDefaultMaxCells() {
+        return defaultMaxCells;
+    }
+
+    /**
+     * Checks the dimensions in the header of a level before its cells are allocated.
+     *
+     * @param rows     Number of rows in the header.
+     * @param cols     Number of columns in the header.
+     * @param minBytes Smallest number of bytes which a level of this size can be stored in.
+     * @param size     Number of bytes of the level, or {@code -1} if it is not known.
+     * @throws InvalidMapException if the level cannot have the dimensions, or exceeds
+     *                             {@link Deserializer#getDefaultMaxCells()}.
+     */
+    static void checkDimensions(int rows, int cols, long minBytes, long size) {
+        checkSize(rows, cols, minBytes, size);
+        if ((long) rows * cols > defaultMaxCells) {
+            throw new InvalidMapException("Map of " + rows + "x" + cols + " cells exceeds the limit of "
+                    + defaultMaxCells + " cells");
+        }
     }
 
     /**
-     * Parses the text file and returns an instance of {@link FXGame}.
+     * Checks that a level is large enough to hold the dimensions in its header, without limiting the number of cells.
+     *
+     * @param rows     Number of rows in the header.
+     * @param cols     Number of columns in the header.
+     * @param minBytes Smallest number of bytes which a level of this size can be stored in.
+     * @param size     Number of bytes of the level, or {@code -1} if it is not known.
+     * @throws InvalidMapException if the level cannot have the dimensions.
+     */
+    static void checkSize(int rows, int cols, long minBytes, long size) {
+        if (size >= 0 && size < minBytes) {
+            throw new InvalidMapException("Map of " + rows + "x" + cols + " cells needs at least " + minBytes
+                    + " bytes, but the level has " + size);
+        }
+    }
+
+    /**
+     * Parses the text file and returns an instance of {@link Game}.
      *
-     * @return An instance of {@link FXGame}.
+     * @return An instance of {@link Game}.
      * @throws InvalidMapException if the map cannot be parsed.
      */
     @Nullable
-    public FXGame parseFXGame() {
+    public Game parseGame() {
         final var properties = parseGameFile();
-        return new FXGame(properties.rows, properties.cols, properties.delay, properties.cells, properties.pipes);
+        return new Game(properties);
     }
 
     /**
@@ -74,53 +121,50 @@ public class Deserializer {
      */
     @NotNull
     public GameProperties parseGameFile() {
-        try (var reader = new BufferedReader(new FileReader(path.toFile()))) {
-            String line;
-
-            var rows = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                rows = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing number of rows");
-            }
-
-            var cols = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                cols = Integer.parseInt(line);
-            } else {
-                throw new InvalidMapException("Unexpected EOF when parsing number of columns");
-            }
-
-            var delay = 0;
-            if ((line = getFirstNonEmptyLine(reader)) != null) {
-                delay = Integer.parseInt(line);
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (detectFormat(channel) != LevelFormat.TEXT) {
+                return BinaryLevelFormat.read(Channels.newInputStream(channel), channel.size());
             } else {
-                throw new InvalidMapException("Unexpected EOF when parsing amount of delay");
+                return MapTextParser.parse(channel, channel.size());
             }
+        } catch (IOException ioe) {
+            throw new InvalidMapException(ioe);
+        }
+    }
 
-            final var mapRep = new ArrayList<String>();
-            for (int r = 0; r < rows; ++r) {
-                line = getFirstNonEmptyLine(reader);
-                if (line == null) {
-                    throw new InvalidMapException("Unexpected EOF when parsing row " + r + " of map");
-                }
+    /**
+     * Detects the format of the file from its contents.
+     *
+     * @return The format of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    @NotNull
+    public LevelFormat detectFormat() throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return detectFormat(channel);
+        }
+    }
 
-                mapRep.add(line);
-            }
-            final var cells = parseString(rows, cols, String.join("\n", mapRep));
-
-            List<Pipe> defaultPipes = null;
-            String s = getFirstNonEmptyLine(reader);
-            if (s != null) {
-                defaultPipes = Arrays.stream(s.split(","))
-                        .map(Pipe::fromString)
-                        .collect(Collectors.toList());
-            }
+    /**
+     * Detects the format of a file from its first few bytes.
+     *
+     * @param channel Channel of the file. Its position is reset to the start of the file.
+     * @return The format of the file.
+     * @throws IOException if the channel fails to read.
+     */
+    @NotNull
+    private static LevelFormat detectFormat(@NotNull FileChannel channel) throws IOException {
+        final var head = ByteBuffer.allocate(BinaryLevelFormat.MAGIC.length + 2);
+        while (head.hasRemaining() && channel.read(head) >= 0) {
+            // keep reading until the header is complete or the file ends
+        }
+        head.flip();
+        channel.position(0);
 
-            return new GameProperties(rows, cols, cells, delay, defaultPipes);
-        } catch (IOException ioe) {
-            throw new InvalidMapException(ioe);
+        if (BinaryLevelFormat.isFixedStride(head)) {
+            return LevelFormat.MAPPED;
         }
+        return BinaryLevelFormat.isBinary(head) ? LevelFormat.BINARY : LevelFormat.TEXT;
     }
 
     /**
@@ -135,46 +179,26 @@ public class Deserializer {
     @NotNull
     public static Cell[][] parseString(final int rows, final int cols, @NotNull final String cellsRep) {
         var cells = new Cell[rows][cols];
+        int rowStart = 0;
         for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var coord = new Coordinate(r, c);
-                var ch = cellsRep.lines().skip(r).findFirst().orElseThrow().charAt(c);
+            if (rowStart > cellsRep.length()) {
+                throw new InvalidMapException("Unexpected end of string when parsing row " + r + " of map");
+            }
 
-                Cell cell;
-                if (r == 0 || r == rows - 1 || c == 0 || c == cols - 1) {
-                    cell = Cell.fromChar(ch, coord, TerminationCell.Type.SINK);
-                } else {
-                    cell = Cell.fromChar(ch, coord, TerminationCell.Type.SOURCE);
-                }
+            var rowEnd = cellsRep.indexOf('\n', rowStart);
+            if (rowEnd < 0) {
+                rowEnd = cellsRep.length();
+            }
+            if (rowEnd - rowStart < cols) {
+                throw new InvalidMapException("Row " + r + " of map has " + (rowEnd - rowStart) + " columns, expected " + cols);
+            }
 
-                cells[r][c] = cell;
+            for (int c = 0; c < cols; ++c) {
+                cells[r][c] = MapTextParser.parseCell(cellsRep.charAt(rowStart + c), r, c, rows, cols);
             }
+            rowStart = rowEnd + 1;
         }
 
         return cells;
     }
-
-    /**
-     * Returns the first non-empty and non-comment line from the reader.
-     *
-     * @param br {@link BufferedReader} to read from.
-     * @return First line that is a parseable line, or {@code null} there are no lines to read.
-     * @throws IOException if the reader fails to read a line.
-     */
-    @Nullable
-    private String getFirstNonEmptyLine(@NotNull final BufferedReader br) throws IOException {
-        do {
-
-            String s = br.readLine();
-
-            if (s == null) {
-                return null;
-            }
-            if (s.isBlank() || s.startsWith("#")) {
-                continue;
-            }
-
-            return s;
-        } while (true);
-    }
 }
@@ -0,0 +1,533 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.PackedCellGrid;
+import models.map.cells.Cell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only journal of the edits made to a map, so that unsaved work can be recovered after a crash.
+ *
+ * <p>
+ * The journal starts with a snapshot of the whole map, followed by one small record per edit. Records are appended and
+ * synced to disk on a background thread, so an edit only costs a few bytes on the calling thread. Once the edits
+ * outgrow the snapshot, the owner should write a new snapshot, which atomically replaces the journal.
+ * </p>
+ * <p>
+ * Layout of the file:
+ * <ul>
+ * <li>{@link EditJournal#MAGIC} and {@link EditJournal#VERSION}.</li>
+ * <li>A snapshot record: rows, columns, delay, the number of pipes (or {@code -1}), one byte per pipe shape ID, and
+ * one {@link PackedCellGrid packed} byte per cell.</li>
+ * <li>Any number of cell records (row, column, packed cell) and delay records.</li>
+ * </ul>
+ * A record which was only partially written when the program stopped is ignored during recovery.
+ * </p>
+ */
+public final class EditJournal implements Closeable {
+
+    /**
+     * Magic number at the start of a journal, {@code "PJNL"}.
+     */
+    static final int MAGIC = 0x504A4E4C;
+    static final byte VERSION = 1;
+
+    private static final byte RECORD_SNAPSHOT = 1;
+    private static final byte RECORD_CELL = 2;
+    private static final byte RECORD_DELAY = 3;
+
+    /**
+     * Size of the magic number, version, record type, and the four ints at the start of a snapshot.
+     */
+    private static final int SNAPSHOT_HEADER_SIZE = Integer.BYTES + 2 + 4 * Integer.BYTES;
+
+    /**
+     * Number of bytes the edits may grow to before {@link EditJournal#needsSnapshot()}, in addition to the size of
+     * the snapshot.
+     */
+    private static final long MIN_EDIT_BYTES = 1 << 20;
+
+    /**
+     * Default location of the level editor's journal.
+     */
+    @NotNull
+    private static Path defaultPath = Paths.get(System.getProperty("user.home"), ".pipes", "editor.journal");
+
+    @NotNull
+    private final Path path;
+    @NotNull
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Channel which records are appended to. Only accessed on {@link EditJournal#writer}.
+     */
+    @Nullable
+    private FileChannel channel;
+
+    /**
+     * Records which have not been written yet. Guarded by {@code this}.
+     */
+    @NotNull
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    @NotNull
+    private DataOutputStream pendingData = new DataOutputStream(pending);
+    private boolean flushScheduled = false;
+    /**
+     * Incremented by every snapshot, so that flushes scheduled before a snapshot do not write edits made after it to
+     * the replaced journal.
+     */
+    private int generation = 0;
+    private long snapshotBytes = 0;
+    private long editBytes = 0;
+    /**
+     * Whether the journal contains a snapshot, which is not the case after {@link EditJournal#discard(long)}.
+     */
+    private boolean hasSnapshot = false;
+    /**
+     * Incremented by every snapshot and edit.
+     */
+    private long revision = 0;
+
+    private EditJournal(@NotNull Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Sets the location of the level editor's journal.
+     *
+     * @param path New default path.
+     */
+    public static void setDefaultPath(@NotNull Path path) {
+        defaultPath = path;
+    }
+
+    /**
+     * @return Current location of the level editor's journal.
+     */
+    @NotNull
+    public static Path getDefaultPath() {
+        return defaultPath;
+    }
+
+    /**
+     * Opens a journal for appending. The journal is empty until {@link EditJournal#snapshot(GameProperties)} is
+     * called, so existing contents should be {@link EditJournal#recover(Path) recovered} first.
+     *
+     * @param path Path to the journal.
+     * @return The journal.
+     */
+    @NotNull
+    public static EditJournal open(@NotNull Path path) {
+        return new EditJournal(path.toAbsolutePath());
+    }
+
+    /**
+     * Recovers the map stored in a journal.
+     *
+     * <p>
+     * A journal with an impossible header, such as a negative size or an unknown pipe, cannot have been written by
+     * this class. It is deleted, so that it does not fail again on every start.
+     * </p>
+     *
+     * @param path Path to the journal.
+     * @return The map at the time of the last edit which was fully written, or {@code null} if the journal does not
+     * exist, does not contain a complete snapshot, or is damaged.
+     * @throws IOException if the journal cannot be read.
+     */
+    @Nullable
+    public static GameProperties recover(@NotNull Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            return read(path);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            Files.deleteIfExists(path);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the snapshot in a journal, and replays the edits after it.
+     *
+     * @throws InvalidMapException if the header of the snapshot is damaged.
+     */
+    @Nullable
+    private static GameProperties read(@NotNull Path path) throws IOException {
+        final long size = Files.size(path);
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION || in.readByte() != RECORD_SNAPSHOT) {
+                return null;
+            }
+
+            final int rows = in.readInt();
+            final int cols = in.readInt();
+            final int delay = in.readInt();
+            final int pipeCount = in.readInt();
+            final long cellCount = (long) rows * cols;
+            if (rows <= 0 || cols <= 0 || pipeCount < -1) {
+                throw new InvalidMapException("Journal has a snapshot of " + rows + "x" + cols + " cells and "
+                        + pipeCount + " pipes");
+            }
+            if (cellCount > Integer.MAX_VALUE || cellCount > Deserializer.getDefaultMaxCells()) {
+                throw new InvalidMapException("Journal has a snapshot of " + rows + "x" + cols
+                        + " cells, which exceeds the limit of " + Deserializer.getDefaultMaxCells() + " cells");
+            }
+            if (SNAPSHOT_HEADER_SIZE + Math.max(pipeCount, 0) + cellCount > size) {
+                // the snapshot was only partially written
+                return null;
+            }
+
+            List<Pipe> pipes = null;
+            if (pipeCount >= 0) {
+                final int shapeCount = Pipe.Shape.values().length;
+                pipes = new ArrayList<>(pipeCount);
+                for (int i = 0; i < pipeCount; ++i) {
+                    final int id = in.readUnsignedByte();
+                    if (id >= shapeCount) {
+                        throw new InvalidMapException("Journal contains unknown pipe " + id);
+                    }
+                    pipes.add(new Pipe(Pipe.Shape.fromId(id)));
+                }
+            }
+            final var packed = new byte[(int) cellCount];
+            in.readFully(packed);
+            final var prop = new GameProperties(rows, cols, new Cell[rows][cols], delay, pipes);
+
+            // replay the edits on the packed cells, then create the cell objects once
+            try {
+                while (true) {
+                    final int type = in.read();
+                    if (type == RECORD_CELL) {
+                        final int row = in.readInt();
+                        final int col = in.readInt();
+                        final byte cell = in.readByte();
+                        if (row >= 0 && row < rows && col >= 0 && col < cols) {
+                            packed[row * cols + col] = cell;
+                        }
+                    } else if (type == RECORD_DELAY) {
+                        prop.delay = in.readInt();
+                    } else {
+                        // end of file, or an unwritten tail
+                        break;
+                    }
+                }
+            } catch (EOFException e) {
+                // the last record was only partially written
+            }
+
+            for (int r = 0; r < rows; ++r) {
+                for (int c = 0; c < cols; ++c) {
+                    prop.cells[r][c] = PackedCellGrid.toCell(packed[r * cols + c], new Coordinate(r, c));
+                }
+            }
+            return prop;
+        } catch (EOFException e) {
+            // the snapshot was only partially written
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the journal with a snapshot of a map.
+     *
+     * <p>
+     * A snapshot of the cell array is taken before this method returns, so {@code prop} may be modified afterwards.
+     * {@link Cell} objects are not copied, and must not be modified in place.
+     * </p>
+     *
+     * @param prop Map to snapshot.
+     */
+    public void snapshot(@NotNull GameProperties prop) {
+        final var cells = new Cell[prop.rows][];
+        for (int r = 0; r < prop.rows; ++r) {
+            cells[r] = prop.cells[r].clone();
+        }
+        final var pipes = prop.pipes != null ? new ArrayList<>(prop.pipes) : null;
+        final int rows = prop.rows;
+        final int cols = prop.cols;
+        final int delay = prop.delay;
+
+        synchronized (this) {
+            // edits recorded before the snapshot are superseded by it
+            pending.reset();
+            flushScheduled = false;
+            ++generation;
+            ++revision;
+            snapshotBytes = (long) rows * cols;
+            editBytes = 0;
+            hasSnapshot = true;
+
+            writer.execute(() -> {
+                try {
+                    writeSnapshot(rows, cols, delay, cells, pipes);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    /**
+     * Records that a cell has been replaced.
+     *
+     * @param cell The new cell.
+     */
+    public synchronized void setCell(@NotNull Cell cell) {
+        try {
+            pendingData.writeByte(RECORD_CELL);
+            pendingData.writeInt(cell.coord.row);
+            pendingData.writeInt(cell.coord.col);
+            pendingData.writeByte(PackedCellGrid.pack(cell));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        editBytes += 10;
+        ++revision;
+        scheduleFlush();
+    }
+
+    /**
+     * Records that the delay has been changed.
+     *
+     * @param delay The new delay.
+     */
+    public synchronized void setDelay(int delay) {
+        try {
+            pendingData.writeByte(RECORD_DELAY);
+            pendingData.writeInt(delay);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        editBytes += 5;
+        ++revision;
+        scheduleFlush();
+    }
+
+    /**
+     * @return Whether the journal has no snapshot, or the edits have outgrown the snapshot, so that a new snapshot
+     * would make the journal smaller.
+     */
+    public synchronized boolean needsSnapshot() {
+        return !hasSnapshot || editBytes > snapshotBytes + MIN_EDIT_BYTES;
+    }
+
+    /**
+     * @return Number of snapshots and edits recorded so far, to be passed to {@link EditJournal#discard(long)}.
+     */
+    public synchronized long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Deletes the journal after the map has been saved, so that the saved map is not recovered on the next start.
+     *
+     * <p>
+     * Nothing is deleted if any snapshot or edit has been recorded since {@code revision}, since those changes are not
+     * part of the saved map. Edits recorded after the journal is deleted are not written until the next snapshot, see
+     * {@link EditJournal#needsSnapshot()}.
+     * </p>
+     *
+     * @param revision {@link EditJournal#getRevision()} when the saved map was captured.
+     * @return Whether the journal was deleted.
+     */
+    public synchronized boolean discard(long revision) {
+        if (revision != this.revision) {
+            return false;
+        }
+
+        pending.reset();
+        flushScheduled = false;
+        ++generation;
+        hasSnapshot = false;
+        editBytes = 0;
+
+        writer.execute(() -> {
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Waits until all records have been written and synced.
+     *
+     * @throws IOException if the journal cannot be written.
+     */
+    public void flush() throws IOException {
+        try {
+            final int generation;
+            synchronized (this) {
+                generation = this.generation;
+            }
+            writer.submit(() -> {
+                writePending(generation);
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Writes all pending records and closes the journal. The journal file is kept, so it can be recovered.
+     *
+     * @throws IOException if the journal cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.execute(() -> {
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Schedules the pending records to be written. Must be called while holding the lock.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        final int generation = this.generation;
+        writer.execute(() -> {
+            try {
+                writePending(generation);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Appends the pending records to the journal and syncs it. Only called on {@link EditJournal#writer}.
+     *
+     * @param generation {@link EditJournal#generation} when the write was scheduled.
+     */
+    private void writePending(int generation) throws IOException {
+        final byte[] records;
+        synchronized (this) {
+            if (generation != this.generation) {
+                // a snapshot is queued after this write, which will schedule its own
+                return;
+            }
+            flushScheduled = false;
+            if (pending.size() == 0) {
+                return;
+            }
+            records = pending.toByteArray();
+            pending.reset();
+        }
+
+        if (channel == null) {
+            // no snapshot has been written, so the edits cannot be replayed
+            return;
+        }
+        final var buffer = ByteBuffer.wrap(records);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and renames it over the journal. Only called on
+     * {@link EditJournal#writer}.
+     */
+    private void writeSnapshot(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes)
+            throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+
+        Files.createDirectories(path.getParent());
+        final var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(RECORD_SNAPSHOT);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(delay);
+            out.writeInt(pipes != null ? pipes.size() : -1);
+            if (pipes != null) {
+                for (var pipe : pipes) {
+                    out.writeByte(pipe.getShape().getId());
+                }
+            }
+            final var row = new byte[cols];
+            for (int r = 0; r < rows; ++r) {
+                for (int c = 0; c < cols; ++c) {
+                    row[c] = PackedCellGrid.pack(cells[r][c]);
+                }
+                out.write(row);
+            }
+        }
+        try (var tmpChannel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            tmpChannel.force(true);
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
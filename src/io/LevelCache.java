@@ -0,0 +1,312 @@
+package io;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Singleton cache of parsed levels, so that selecting, previewing and retrying a level only parses it once.
+ *
+ * <p>
+ * Levels are cached as {@link LevelTemplate templates}, keyed by the file they were read from. A cached level file is
+ * reused as long as its size and modification time have not changed, so only the attributes of the file are read on a
+ * hit. Levels in a {@link LevelPack} are keyed by the pack and their name, since a pack cannot change while it is open.
+ * </p>
+ * <p>
+ * Level files in the {@link LevelFormat#MAPPED} format are never cached, since they are meant to be opened as a
+ * {@link MappedLevel} instead of being loaded into memory.
+ * </p>
+ * <p>
+ * When the templates exceed the memory budget, the least recently used ones are evicted. All methods are thread-safe,
+ * and levels are parsed outside of the lock.
+ * </p>
+ */
+public class LevelCache {
+
+    /**
+     * Key of a cached level.
+     */
+    private static final class Key {
+        /**
+         * File system of a level file, or the pack of a level in a pack.
+         */
+        @NotNull
+        private final Object owner;
+        @NotNull
+        private final String name;
+
+        private Key(@NotNull Object owner, @NotNull String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final var other = (Key) obj;
+            return owner == other.owner && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(owner), name);
+        }
+    }
+
+    /**
+     * A cached level, with the attributes of its file when it was read.
+     */
+    private static final class Entry {
+        @NotNull
+        private final LevelTemplate template;
+        private final long fileSize;
+        private final long lastModified;
+
+        private Entry(@NotNull LevelTemplate template, long fileSize, long lastModified) {
+            this.template = template;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Number of bytes which cached levels may use, unless changed with {@link LevelCache#setMemoryBudget(long)}.
+     */
+    private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Singleton instance.
+     */
+    @NotNull
+    private static final LevelCache INSTANCE = new LevelCache();
+
+    /**
+     * Cached levels, from least to most recently used. Guarded by {@code this}.
+     */
+    @NotNull
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBudget;
+    private long usedBytes = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    private LevelCache() {
+        this.memoryBudget = DEFAULT_MEMORY_BUDGET;
+    }
+
+    /**
+     * @return Singleton instance of this class.
+     */
+    @NotNull
+    public static LevelCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the memory budget of the cache, evicting levels if it is exceeded.
+     *
+     * @param bytes New memory budget in bytes.
+     */
+    public synchronized void setMemoryBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative");
+        }
+        memoryBudget = bytes;
+        evict();
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Reads a level file, from the cache if the file has not changed since it was cached.
+     *
+     * @param path Path to the level file.
+     * @return Template of the level.
+     * @throws IOException if the file cannot be read.
+     * @throws models.exceptions.InvalidMapException if the file cannot be parsed.
+     */
+    @NotNull
+    public LevelTemplate get(@NotNull Path path) throws IOException {
+        final var absolute = path.toAbsolutePath().normalize();
+        final var attrs = Files.readAttributes(absolute, BasicFileAttributes.class);
+        final long size = attrs.size();
+        final long lastModified = attrs.lastModifiedTime().toMillis();
+        final var key = new Key(absolute.getFileSystem(), absolute.toString());
+
+        synchronized (this) {
+            final var entry = entries.get(key);
+            if (entry != null && entry.fileSize == size && entry.lastModified == lastModified) {
+                ++hitCount;
+                return entry.template;
+            }
+            ++missCount;
+        }
+
+        final var deserializer = new Deserializer(absolute);
+        final var template = LevelTemplate.of(deserializer.parseGameFile());
+        if (deserializer.detectFormat() != LevelFormat.MAPPED) {
+            put(key, new Entry(template, size, lastModified));
+        }
+        return template;
+    }
+
+    /**
+     * Reads a level file whose attributes are already known, e.g. from a {@link LevelCatalog} which is watching the
+     * directory of the file. Unlike {@link LevelCache#get(Path)}, the file is not accessed on a hit.
+     *
+     * @param path         Path to the level file.
+     * @param fileSize     Known size of the file.
+     * @param lastModified Known modification time of the file in milliseconds since the epoch.
+     * @return Template of the level.
+     * @throws IOException if the file cannot be read.
+     * @throws models.exceptions.InvalidMapException if the file cannot be parsed.
+     */
+    @NotNull
+    public LevelTemplate get(@NotNull Path path, long fileSize, long lastModified) throws IOException {
+        final var absolute = path.toAbsolutePath().normalize();
+        final var key = new Key(absolute.getFileSystem(), absolute.toString());
+
+        synchronized (this) {
+            final var entry = entries.get(key);
+            if (entry != null && entry.fileSize == fileSize && entry.lastModified == lastModified) {
+                ++hitCount;
+                return entry.template;
+            }
+        }
+
+        // the known attributes may be out of date, so read them again before caching the file
+        return get(absolute);
+    }
+
+    /**
+     * Reads a level from a level pack, from the cache if it has been read before.
+     *
+     * @param pack Level pack containing the level.
+     * @param name Name of the level.
+     * @return Template of the level.
+     * @throws IOException if the level cannot be read.
+     * @throws IllegalArgumentException if the pack does not contain the level.
+     */
+    @NotNull
+    public LevelTemplate get(@NotNull LevelPack pack, @NotNull String name) throws IOException {
+        final var key = new Key(pack, name);
+
+        synchronized (this) {
+            final var entry = entries.get(key);
+            if (entry != null) {
+                ++hitCount;
+                return entry.template;
+            }
+            ++missCount;
+        }
+
+        final var template = LevelTemplate.of(pack.read(name));
+        put(key, new Entry(template, -1, -1));
+        return template;
+    }
+
+    /**
+     * Removes all levels of a level pack, e.g. after it has been closed.
+     *
+     * @param pack Level pack to remove the levels of.
+     */
+    public void invalidate(@NotNull LevelPack pack) {
+        invalidateOwner(pack);
+    }
+
+    /**
+     * Removes the levels of a file system, e.g. after the archive it belongs to has been closed.
+     *
+     * @param fileSystem File system to remove the levels of.
+     */
+    public void invalidate(@NotNull FileSystem fileSystem) {
+        invalidateOwner(fileSystem);
+    }
+
+    /**
+     * Removes all cached levels.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * @return Number of cached levels.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated number of bytes used by cached levels.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Adds a level, unless it is larger than the whole memory budget.
+     */
+    private synchronized void put(@NotNull Key key, @NotNull Entry entry) {
+        final long size = entry.template.getSizeInBytes();
+        if (size > memoryBudget) {
+            return;
+        }
+
+        final var old = entries.put(key, entry);
+        if (old != null) {
+            usedBytes -= old.template.getSizeInBytes();
+        }
+        usedBytes += size;
+        evict();
+    }
+
+    private synchronized void invalidateOwner(@NotNull Object owner) {
+        final var it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            final var entry = it.next();
+            if (entry.getKey().owner == owner) {
+                usedBytes -= entry.getValue().template.getSizeInBytes();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used levels until the memory budget is met.
+     */
+    private void evict() {
+        final var it = entries.values().iterator();
+        while (usedBytes > memoryBudget && it.hasNext()) {
+            usedBytes -= it.next().template.getSizeInBytes();
+            it.remove();
+            ++evictionCount;
+        }
+    }
+}
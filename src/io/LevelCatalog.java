@@ -0,0 +1,753 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of the metadata of every level in a directory or {@link LevelPack}.
+ *
+ * <p>
+ * Levels in a directory are indexed by only reading their headers, in parallel. For binary levels, the header contains
+ * all metadata. For text levels, the number of rows, columns and delay are read from the start of the file, and the
+ * number of initial pipes from the last line of the file.
+ * </p>
+ * <p>
+ * The index of a directory is saved into {@link LevelCatalog#INDEX_FILE_NAME} in the directory, so that only levels
+ * which have been added or modified since the last scan need to be read again. After the initial scan, the catalog can
+ * be kept up to date by {@link LevelCatalog#startWatching(Listener)}, which applies changes to single levels as they
+ * are reported by a {@link WatchService}.
+ * </p>
+ * <p>
+ * Levels are ordered by name. This class is thread-safe.
+ * </p>
+ */
+public final class LevelCatalog implements Closeable {
+
+    /**
+     * Name of the file in a directory which the catalog of the directory is saved to.
+     */
+    public static final String INDEX_FILE_NAME = ".levels.idx";
+
+    private static final byte[] INDEX_MAGIC = {'P', 'C', 'A', 'T'};
+    private static final int INDEX_VERSION = 1;
+    /**
+     * Size of an entry of the saved index with an empty name.
+     */
+    private static final int MIN_INDEX_ENTRY_SIZE = Short.BYTES + 4 * Integer.BYTES + 1 + 2 * Long.BYTES;
+
+    /**
+     * Number of bytes read from the end of a text level at a time, when looking for the list of pipes.
+     */
+    private static final int TAIL_BLOCK_SIZE = 4096;
+    /**
+     * Time without any changes in a watched directory before the changes are applied.
+     */
+    private static final long SETTLE_MILLIS = 200;
+
+    private static final Pattern FILTER_PATTERN = Pattern.compile("(rows|cols|delay|pipes)(<=|>=|<|>|=)(\\d{1,9})");
+
+    /**
+     * Metadata of a level.
+     */
+    public static final class Entry {
+        /**
+         * Value of {@link Entry#getPipeCount()} when the number of pipes is not known.
+         */
+        public static final int UNKNOWN = -1;
+
+        @NotNull
+        private final String name;
+        private final int rows;
+        private final int cols;
+        private final int delay;
+        private final int pipeCount;
+        @NotNull
+        private final LevelFormat format;
+        private final long fileSize;
+        private final long lastModified;
+
+        Entry(@NotNull String name, int rows, int cols, int delay, int pipeCount, @NotNull LevelFormat format,
+              long fileSize, long lastModified) {
+            this.name = name;
+            this.rows = rows;
+            this.cols = cols;
+            this.delay = delay;
+            this.pipeCount = pipeCount;
+            this.format = format;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return Name of the level.
+         */
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of rows of the level.
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return Number of columns of the level.
+         */
+        public int getCols() {
+            return cols;
+        }
+
+        /**
+         * @return Delay before the water starts flowing.
+         */
+        public int getDelay() {
+            return delay;
+        }
+
+        /**
+         * @return Number of initial pipes, zero if the level does not specify any, or {@link Entry#UNKNOWN}.
+         */
+        public int getPipeCount() {
+            return pipeCount;
+        }
+
+        /**
+         * @return Format the level is stored in.
+         */
+        @NotNull
+        public LevelFormat getFormat() {
+            return format;
+        }
+
+        /**
+         * @return Size of the level file in bytes, or of the level in its pack.
+         */
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        /**
+         * @return Modification time of the level file in milliseconds since the epoch.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return Whether the entry describes a file with the given attributes.
+         */
+        private boolean isUpToDate(@NotNull BasicFileAttributes attrs) {
+            return fileSize == attrs.size() && lastModified == attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * Receives changes to a catalog which is being watched.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the watching thread after the catalog has changed.
+         *
+         * @param updated Entries of levels which have been added or modified.
+         * @param removed Names of levels which have been removed.
+         * @param reset   Whether the whole catalog has been rescanned, in which case {@code updated} and
+         *                {@code removed} are empty and the listener should re-read the catalog.
+         */
+        void onChanged(@NotNull Collection<Entry> updated, @NotNull Collection<String> removed, boolean reset);
+    }
+
+    /**
+     * Directory of the levels, or {@code null} if the catalog is of a level pack.
+     */
+    @Nullable
+    private final Path directory;
+    @NotNull
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    /**
+     * Lock held while scanning or applying watched changes, so that changes seen by the watcher are never overwritten
+     * by an older listing of the directory.
+     */
+    @NotNull
+    private final Object updateLock = new Object();
+    /**
+     * Service watching {@link LevelCatalog#directory}. Accesses are synchronized on this object.
+     */
+    @Nullable
+    private WatchService watchService;
+    private boolean closed = false;
+
+    private LevelCatalog(@Nullable Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a catalog of the {@code .map} files in a directory. The catalog is empty until it is loaded or scanned.
+     *
+     * @param directory Directory of the levels.
+     * @return A new catalog.
+     */
+    @NotNull
+    public static LevelCatalog forDirectory(@NotNull Path directory) {
+        return new LevelCatalog(directory);
+    }
+
+    /**
+     * Creates a catalog of the levels in a level pack, using the metadata in its table of contents.
+     *
+     * @param pack Level pack to catalog.
+     * @return A new catalog, which does not need to be scanned.
+     */
+    @NotNull
+    public static LevelCatalog forPack(@NotNull LevelPack pack) {
+        final var catalog = new LevelCatalog(null);
+        for (var entry : pack.getEntries()) {
+            catalog.entries.putIfAbsent(entry.getName(), new Entry(entry.getName(), entry.getRows(), entry.getCols(),
+                    entry.getDelay(), Entry.UNKNOWN, entry.getFormat(), 0, 0));
+        }
+        return catalog;
+    }
+
+    /**
+     * @return Number of levels in the catalog.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param name Name of the level.
+     * @return The entry of the level, or {@code null} if there is no such level.
+     */
+    @Nullable
+    public Entry get(@NotNull String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return The names of all levels, in order.
+     */
+    @NotNull
+    public List<String> getNames() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * @param prefix Prefix of the names.
+     * @return The entries of all levels whose names start with {@code prefix}, in order.
+     */
+    @NotNull
+    public List<Entry> findByPrefix(@NotNull String prefix) {
+        if (prefix.isEmpty()) {
+            return new ArrayList<>(entries.values());
+        }
+        return new ArrayList<>(entries.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+    }
+
+    /**
+     * @param query Query in the syntax of {@link LevelCatalog#parseQuery(String)}.
+     * @return The entries of all levels matching the query, in order.
+     */
+    @NotNull
+    public List<Entry> query(@NotNull String query) {
+        final var filter = parseQuery(query);
+        return entries.values().stream().filter(filter).collect(Collectors.toList());
+    }
+
+    /**
+     * Parses a query over the entries of a catalog.
+     *
+     * <p>
+     * A query is a list of terms separated by whitespace, all of which must match. A term is either a comparison of
+     * {@code rows}, {@code cols}, {@code delay} or {@code pipes} with a number using one of {@code <}, {@code <=},
+     * {@code =}, {@code >=} or {@code >}, such as {@code rows<=10}, or otherwise a case-insensitive prefix of the name.
+     * Levels where the number of pipes is not known never match a comparison of {@code pipes}.
+     * </p>
+     *
+     * @param query Query to parse.
+     * @return Predicate which matches the entries selected by the query.
+     */
+    @NotNull
+    public static Predicate<Entry> parseQuery(@NotNull String query) {
+        Predicate<Entry> filter = entry -> true;
+        for (var term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+
+            final var matcher = FILTER_PATTERN.matcher(term);
+            if (!matcher.matches()) {
+                final var prefix = term.toLowerCase();
+                filter = filter.and(entry -> entry.name.toLowerCase().startsWith(prefix));
+                continue;
+            }
+
+            final var field = matcher.group(1);
+            final var op = matcher.group(2);
+            final int value = Integer.parseInt(matcher.group(3));
+            filter = filter.and(entry -> {
+                final int actual;
+                switch (field) {
+                    case "rows":
+                        actual = entry.rows;
+                        break;
+                    case "cols":
+                        actual = entry.cols;
+                        break;
+                    case "delay":
+                        actual = entry.delay;
+                        break;
+                    default:
+                        if (entry.pipeCount == Entry.UNKNOWN) {
+                            return false;
+                        }
+                        actual = entry.pipeCount;
+                        break;
+                }
+
+                switch (op) {
+                    case "<":
+                        return actual < value;
+                    case "<=":
+                        return actual <= value;
+                    case ">":
+                        return actual > value;
+                    case ">=":
+                        return actual >= value;
+                    default:
+                        return actual == value;
+                }
+            });
+        }
+        return filter;
+    }
+
+    /**
+     * Loads the saved index of the directory, without checking whether the levels have changed since it was saved.
+     * Does nothing if the directory does not have a saved index, or if the catalog is of a level pack.
+     *
+     * @return Whether an index was loaded.
+     */
+    public boolean loadIndex() {
+        if (directory == null) {
+            return false;
+        }
+
+        final var indexFile = directory.resolve(INDEX_FILE_NAME);
+        if (!Files.isRegularFile(indexFile)) {
+            return false;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            final var magic = new byte[INDEX_MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, INDEX_MAGIC) || in.readUnsignedByte() != INDEX_VERSION) {
+                return false;
+            }
+
+            final int count = in.readInt();
+            if (count < 0 || count > Files.size(indexFile) / MIN_INDEX_ENTRY_SIZE) {
+                return false;
+            }
+            final var loaded = new HashMap<String, Entry>(count * 2);
+            for (int i = 0; i < count; ++i) {
+                final var name = in.readUTF();
+                final int rows = in.readInt();
+                final int cols = in.readInt();
+                final int delay = in.readInt();
+                final int pipeCount = in.readInt();
+                final int format = in.readUnsignedByte();
+                final long fileSize = in.readLong();
+                final long lastModified = in.readLong();
+                if (format >= LevelFormat.values().length) {
+                    return false;
+                }
+                loaded.put(name, new Entry(name, rows, cols, delay, pipeCount, LevelFormat.values()[format],
+                        fileSize, lastModified));
+            }
+
+            entries.putAll(loaded);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // a damaged index is rebuilt by the next scan
+            return false;
+        }
+    }
+
+    /**
+     * Scans the directory, and updates the catalog to match it. Levels whose size and modification time match the
+     * catalog are not read again. The updated index is then saved into the directory, if it is writable. Does nothing
+     * if the catalog is of a level pack.
+     *
+     * @throws IOException if the directory cannot be listed.
+     */
+    public void scan() throws IOException {
+        if (directory == null) {
+            return;
+        }
+
+        synchronized (updateLock) {
+            scanDirectory();
+        }
+    }
+
+    private void scanDirectory() throws IOException {
+
+        final var files = new HashMap<String, BasicFileAttributes>();
+        try (Stream<Path> list = Files.list(directory)) {
+            for (var path : (Iterable<Path>) list::iterator) {
+                final var name = directory.relativize(path).toString();
+                if (!name.endsWith(".map")) {
+                    continue;
+                }
+                try {
+                    final var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attrs.isRegularFile()) {
+                        files.put(name, attrs);
+                    }
+                } catch (NoSuchFileException e) {
+                    // deleted while listing
+                }
+            }
+        }
+
+        final boolean removedAny = entries.keySet().retainAll(files.keySet());
+
+        final var stale = files.entrySet().stream()
+                .filter(file -> {
+                    final var entry = entries.get(file.getKey());
+                    return entry == null || !entry.isUpToDate(file.getValue());
+                })
+                .map(java.util.Map.Entry::getKey)
+                .collect(Collectors.toList());
+        final var scanned = stale.parallelStream()
+                .map(this::scanLevel)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        for (var name : stale) {
+            entries.remove(name);
+        }
+        for (var entry : scanned) {
+            entries.put(entry.name, entry);
+        }
+
+        if (removedAny || !stale.isEmpty()) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Saves the catalog into the directory. Failures are ignored, as the index can always be rebuilt.
+     */
+    private void saveIndex() {
+        if (directory == null || directory.getFileSystem() != FileSystems.getDefault()) {
+            // never write into archives
+            return;
+        }
+
+        final var snapshot = new ArrayList<>(entries.values());
+        final var indexFile = directory.resolve(INDEX_FILE_NAME);
+        try {
+            final var tempFile = Files.createTempFile(directory, INDEX_FILE_NAME, ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.write(INDEX_MAGIC);
+                out.writeByte(INDEX_VERSION);
+                out.writeInt(snapshot.size());
+                for (var entry : snapshot) {
+                    out.writeUTF(entry.name);
+                    out.writeInt(entry.rows);
+                    out.writeInt(entry.cols);
+                    out.writeInt(entry.delay);
+                    out.writeInt(entry.pipeCount);
+                    out.writeByte(entry.format.ordinal());
+                    out.writeLong(entry.fileSize);
+                    out.writeLong(entry.lastModified);
+                }
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            // read-only directory
+        }
+    }
+
+    /**
+     * Starts watching the directory for changes on a new daemon thread, and applies every change to the catalog.
+     * Does nothing if the catalog is of a level pack or has been closed, or if the file system of the directory cannot
+     * be watched.
+     *
+     * @param listener Listener which is notified after each batch of changes.
+     * @return Whether the directory is being watched.
+     * @throws IllegalStateException if the catalog is already being watched.
+     */
+    public synchronized boolean startWatching(@NotNull Listener listener) {
+        if (directory == null || closed) {
+            return false;
+        }
+        if (watchService != null) {
+            throw new IllegalStateException("Catalog is already being watched");
+        }
+
+        final WatchService service;
+        try {
+            service = directory.getFileSystem().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+        watchService = service;
+
+        final var thread = new Thread(() -> watch(service, listener), "level-catalog-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Main loop of the watching thread.
+     */
+    private void watch(@NotNull WatchService service, @NotNull Listener listener) {
+        try {
+            while (true) {
+                // collect events until the directory has been quiet for a while, so that files which are still being
+                // written are not read, and bursts of changes are applied together
+                final var changed = new LinkedHashSet<String>();
+                boolean reset = false;
+                for (var key = service.take(); key != null; key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    for (var event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            reset = true;
+                        } else if (event.context().toString().endsWith(".map")) {
+                            changed.add(event.context().toString());
+                        }
+                    }
+                    key.reset();
+                }
+
+                if (reset) {
+                    try {
+                        scan();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    listener.onChanged(Collections.emptyList(), Collections.emptyList(), true);
+                    continue;
+                }
+
+                final var updated = new ArrayList<Entry>();
+                final var removed = new ArrayList<String>();
+                synchronized (updateLock) {
+                    for (var name : changed) {
+                        final var entry = Files.exists(directory.resolve(name)) ? scanLevel(name) : null;
+                        if (entry != null) {
+                            entries.put(name, entry);
+                            updated.add(entry);
+                        } else if (entries.remove(name) != null) {
+                            removed.add(name);
+                        }
+                    }
+                }
+
+                if (!updated.isEmpty() || !removed.isEmpty()) {
+                    saveIndex();
+                    listener.onChanged(updated, removed, false);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Stops watching the directory, if it is being watched. The catalog can no longer be watched afterwards.
+     *
+     * @throws IOException if the {@link WatchService} cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    /**
+     * Reads the metadata of a level in the directory.
+     *
+     * @param name Name of the level.
+     * @return The entry of the level, or {@code null} if the level cannot be read.
+     */
+    @Nullable
+    private Entry scanLevel(@NotNull String name) {
+        final var path = Objects.requireNonNull(directory).resolve(name);
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            final var head = ByteBuffer.allocate(BinaryLevelFormat.FIXED_STRIDE_HEADER_SIZE);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            head.flip();
+
+            final var fileSize = attrs.size();
+            final var lastModified = attrs.lastModifiedTime().toMillis();
+            if (BinaryLevelFormat.isBinary(head)) {
+                if (head.remaining() < BinaryLevelFormat.MAGIC.length + 2 + 4 * Integer.BYTES) {
+                    return null;
+                }
+                final var format = BinaryLevelFormat.isFixedStride(head) ? LevelFormat.MAPPED : LevelFormat.BINARY;
+                head.position(BinaryLevelFormat.MAGIC.length + 2);
+                final int rows = head.getInt();
+                final int cols = head.getInt();
+                final int delay = head.getInt();
+                final int pipeCount = head.getInt();
+                return new Entry(name, rows, cols, delay, Math.max(pipeCount, 0), format, fileSize, lastModified);
+            }
+
+            channel.position(0);
+            final var header = readTextHeader(channel);
+            if (header == null) {
+                return null;
+            }
+            return new Entry(name, header[0], header[1], header[2], countTextPipes(channel), LevelFormat.TEXT,
+                    fileSize, lastModified);
+        } catch (IOException | InvalidMapException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the number of rows, number of columns and delay from the start of a text level.
+     *
+     * @return The three numbers, or {@code null} if they cannot be read.
+     */
+    @Nullable
+    private static int[] readTextHeader(@NotNull FileChannel channel) throws IOException {
+        final var header = new int[3];
+        int found = 0;
+
+        final var buffer = ByteBuffer.allocate(256);
+        final var line = new StringBuilder();
+        while (found < header.length) {
+            buffer.clear();
+            final boolean eof = channel.read(buffer) < 0;
+            buffer.flip();
+
+            while (found < header.length && (buffer.hasRemaining() || eof)) {
+                final int ch = buffer.hasRemaining() ? buffer.get() : '\n';
+                if (ch != '\n' && ch != '\r') {
+                    line.append((char) ch);
+                    if (line.length() > 64) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                final var content = line.toString().trim();
+                line.setLength(0);
+                if (content.isEmpty() || content.startsWith("#")) {
+                    if (eof && !buffer.hasRemaining()) {
+                        return null;
+                    }
+                    continue;
+                }
+                try {
+                    header[found++] = Integer.parseInt(content);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Counts the initial pipes of a text level from the last line of the file which is not blank or a comment.
+     *
+     * <p>
+     * The line is the list of pipes if all of its comma-separated values are names of pipe shapes, and otherwise the
+     * last row of the map, in which case the level does not specify any pipes.
+     * </p>
+     */
+    private static int countTextPipes(@NotNull FileChannel channel) throws IOException {
+        var tail = new byte[0];
+        long position = channel.size();
+        while (position > 0) {
+            final int blockSize = (int) Math.min(TAIL_BLOCK_SIZE, position);
+            position -= blockSize;
+            final var block = ByteBuffer.allocate(blockSize + tail.length);
+            while (block.position() < blockSize) {
+                if (channel.read(block, position + block.position()) < 0) {
+                    break;
+                }
+            }
+            block.position(blockSize);
+            block.put(tail);
+            tail = block.array();
+
+            // the first line of the tail is incomplete, unless the start of the file has been reached
+            final var lines = new String(tail, StandardCharsets.US_ASCII).split("[\r\n]");
+            for (int i = lines.length - 1; i >= (position > 0 ? 1 : 0); --i) {
+                final var content = lines[i].trim();
+                if (content.isEmpty() || lines[i].startsWith("#")) {
+                    continue;
+                }
+                return countPipes(content);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param line A line of a text level.
+     * @return The number of pipes in the line, or zero if the line is not a list of pipes.
+     */
+    private static int countPipes(@NotNull String line) {
+        final var tokens = line.split(",");
+        for (var token : tokens) {
+            if (Pipe.Shape.fromRep(token.trim()) == null) {
+                return 0;
+            }
+        }
+        return tokens.length;
+    }
+}
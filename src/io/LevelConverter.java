@@ -0,0 +1,74 @@
+package io;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Command-line tool for converting levels between the text, binary and mapped formats.
+ */
+public class LevelConverter {
+
+    public static void main(String[] args) {
+        LevelFormat target = null;
+        final var paths = new ArrayList<Path>();
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--text":
+                        target = LevelFormat.TEXT;
+                        break;
+                    case "--binary":
+                        target = LevelFormat.BINARY;
+                        break;
+                    case "--mapped":
+                        target = LevelFormat.MAPPED;
+                        break;
+                    case "--help":
+                        break;
+                    case "--max-cells":
+                        Deserializer.setDefaultMaxCells(Long.parseLong(args[++i]));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        paths.add(Path.of(args[i]));
+                        break;
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            paths.clear();
+        }
+
+        if (paths.size() != 2) {
+            System.out.println("Usage: java io.LevelConverter [--text|--binary|--mapped] [--max-cells N] [input] [output]");
+            System.out.println("Converts a level file to the given format. If no format is given, text levels are converted");
+            System.out.println("to the binary format, and binary and mapped levels are converted to the text format.");
+            System.out.println("--max-cells changes the largest level which is read into memory.");
+            System.exit(args.length == 1 && args[0].equals("--help") ? 0 : 1);
+        }
+
+        final var input = paths.get(0);
+        final var output = paths.get(1);
+
+        try {
+            final var deserializer = new Deserializer(input);
+            final var source = deserializer.detectFormat();
+            if (target == null) {
+                target = source == LevelFormat.TEXT ? LevelFormat.BINARY : LevelFormat.TEXT;
+            }
+
+            final var prop = deserializer.parseGameFile();
+            new Serializer(output, target).serializeGameProp(prop);
+
+            System.out.println("Converted " + input + " (" + source + ", " + input.toFile().length() + " bytes) to "
+                    + output + " (" + target + ", " + output.toFile().length() + " bytes)");
+        } catch (final Throwable tr) {
+            tr.printStackTrace();
+            System.err.println("Unable to convert level: " + tr.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io;
+
+/**
+ * Formats of level files.
+ */
+public enum LevelFormat {
+    /**
+     * Human-readable text format, with one character per cell.
+     */
+    TEXT,
+    /**
+     * Compact binary format, with 4 bits per cell and run-length encoding.
+     */
+    BINARY,
+    /**
+     * Binary format with a fixed number of bytes per row and no run-length encoding, which can be opened as a
+     * {@link MappedLevel} without reading the whole file.
+     */
+    MAPPED
+}
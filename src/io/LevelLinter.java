@@ -0,0 +1,327 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.validation.LevelValidator;
+import models.validation.ValidationIssue;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line tool for validating many levels at once.
+ *
+ * <p>
+ * Levels are read and checked with a {@link LevelValidator} in parallel. The report is written as one JSON object per
+ * line: one for each level with issues, in the order the levels were given, followed by a summary of the run. The tool
+ * exits with status 1 if any level has an error, so it can be used in scripts.
+ * </p>
+ */
+public class LevelLinter {
+
+    /**
+     * A level to validate.
+     */
+    private interface Job {
+        /**
+         * @return Name of the level in the report.
+         */
+        @NotNull
+        String getName();
+
+        /**
+         * @return Properties of the level.
+         * @throws IOException         if the level cannot be read.
+         * @throws InvalidMapException if the level cannot be parsed.
+         */
+        @NotNull
+        GameProperties read() throws IOException;
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean reportAll = false;
+        Path output = null;
+        final var inputs = new ArrayList<Path>();
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        if (threads < 1) {
+                            throw new IllegalArgumentException("Thread count must be positive");
+                        }
+                        break;
+                    case "--max-cells":
+                        Deserializer.setDefaultMaxCells(Long.parseLong(args[++i]));
+                        break;
+                    case "--all":
+                        reportAll = true;
+                        break;
+                    case "--output":
+                        output = Path.of(args[++i]);
+                        break;
+                    default:
+                        inputs.add(Path.of(args[i]));
+                        break;
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            inputs.clear();
+        }
+
+        if (inputs.isEmpty()) {
+            System.out.println("Usage: java io.LevelLinter [--threads N] [--max-cells N] [--all] [--output file] [input...]");
+            System.out.println("Validates level files, directories of .map files and level packs, and writes a report with");
+            System.out.println("one JSON line per level with issues followed by a summary line. --all also reports valid");
+            System.out.println("levels. --max-cells changes the largest level which is read into memory. Exits with status");
+            System.out.println("1 if any level is invalid.");
+            System.exit(args.length == 1 && args[0].equals("--help") ? 0 : 1);
+        }
+
+        final var packs = new ArrayList<LevelPack>();
+        try {
+            final var jobs = new ArrayList<Job>();
+            for (var input : inputs) {
+                jobs.addAll(expand(input, packs));
+            }
+
+            final Writer writer = output == null
+                    ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                    : Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+            final boolean hasErrors;
+            try (var out = new BufferedWriter(writer)) {
+                hasErrors = lint(jobs, threads, reportAll, out);
+            }
+            System.exit(hasErrors ? 1 : 0);
+        } catch (final Throwable tr) {
+            tr.printStackTrace();
+            System.err.println("Unable to validate levels: " + tr.getMessage());
+            System.exit(2);
+        } finally {
+            for (var pack : packs) {
+                try {
+                    pack.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates levels and writes the report.
+     *
+     * @param jobs      Levels to validate.
+     * @param threads   Number of threads to validate with.
+     * @param reportAll Whether to also report levels without issues.
+     * @param out       Writer for the report.
+     * @return Whether any level has an error.
+     */
+    private static boolean lint(@NotNull List<Job> jobs, int threads, boolean reportAll, @NotNull Writer out)
+            throws IOException, InterruptedException {
+        final var validator = new LevelValidator();
+        final var invalid = new AtomicInteger();
+        final var warnings = new AtomicInteger();
+        final long start = System.nanoTime();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // submit in batches so the results of a huge directory are not all held in memory at once
+            final int batchSize = threads * 256;
+            for (int first = 0; first < jobs.size(); first += batchSize) {
+                final var results = new ArrayList<Future<String>>();
+                for (var job : jobs.subList(first, Math.min(first + batchSize, jobs.size()))) {
+                    results.add(executor.submit(() -> check(job, validator, reportAll, invalid, warnings)));
+                }
+                for (var result : results) {
+                    final var line = result.get();
+                    if (line != null) {
+                        out.write(line);
+                        out.write('\n');
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final long elapsedNanos = System.nanoTime() - start;
+        final long levelsPerSecond = elapsedNanos == 0 ? 0 : jobs.size() * 1_000_000_000L / elapsedNanos;
+        out.write("{\"summary\":{\"levels\":" + jobs.size()
+                + ",\"invalid\":" + invalid.get()
+                + ",\"warnings\":" + warnings.get()
+                + ",\"threads\":" + threads
+                + ",\"elapsedMs\":" + elapsedNanos / 1_000_000
+                + ",\"levelsPerSecond\":" + levelsPerSecond + "}}\n");
+        return invalid.get() != 0;
+    }
+
+    /**
+     * Validates one level.
+     *
+     * @return The report line of the level, or {@code null} if it should not be reported.
+     */
+    private static String check(@NotNull Job job, @NotNull LevelValidator validator, boolean reportAll,
+                                @NotNull AtomicInteger invalid, @NotNull AtomicInteger warnings) {
+        List<ValidationIssue> issues;
+        int line = -1;
+        int column = -1;
+        try {
+            issues = validator.validate(job.read());
+        } catch (InvalidMapException e) {
+            issues = List.of(new ValidationIssue(ValidationIssue.Type.UNREADABLE, String.valueOf(e.getMessage()), null));
+            line = e.getLine();
+            column = e.getColumn();
+        } catch (IOException | RuntimeException e) {
+            issues = List.of(new ValidationIssue(ValidationIssue.Type.UNREADABLE, String.valueOf(e.getMessage()), null));
+        }
+
+        final boolean valid = LevelValidator.isValid(issues);
+        if (!valid) {
+            invalid.incrementAndGet();
+        }
+        final long warningCount = issues.stream()
+                .filter(issue -> issue.getSeverity() == ValidationIssue.Severity.WARNING)
+                .count();
+        warnings.addAndGet((int) warningCount);
+
+        if (issues.isEmpty() && !reportAll) {
+            return null;
+        }
+
+        final var sb = new StringBuilder();
+        sb.append("{\"level\":").append(quote(job.getName()))
+                .append(",\"valid\":").append(valid)
+                .append(",\"issues\":[");
+        for (int i = 0; i < issues.size(); ++i) {
+            final var issue = issues.get(i);
+            if (i != 0) {
+                sb.append(',');
+            }
+            sb.append("{\"code\":\"").append(issue.getType())
+                    .append("\",\"severity\":\"").append(issue.getSeverity())
+                    .append("\",\"message\":").append(quote(issue.getMessage()));
+            if (issue.getCoord() != null) {
+                sb.append(",\"row\":").append(issue.getCoord().row)
+                        .append(",\"col\":").append(issue.getCoord().col);
+            }
+            if (issue.getType() == ValidationIssue.Type.UNREADABLE && line != -1) {
+                sb.append(",\"line\":").append(line)
+                        .append(",\"column\":").append(column);
+            }
+            sb.append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * @param input A level file, a directory of level files or a level pack.
+     * @param packs List to add the opened level packs to, so they can be closed after validation.
+     * @return The levels of the input.
+     */
+    @NotNull
+    private static List<Job> expand(@NotNull Path input, @NotNull List<LevelPack> packs) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.list(input)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(path -> path.getFileName().toString().endsWith(".map"))
+                        .sorted()
+                        .map(LevelLinter::fileJob)
+                        .collect(Collectors.toList());
+            }
+        }
+
+        if (LevelPack.isLevelPack(input)) {
+            final var pack = LevelPack.open(input);
+            packs.add(pack);
+            return pack.getEntries().stream()
+                    .map(entry -> new Job() {
+                        @NotNull
+                        @Override
+                        public String getName() {
+                            return input + "!" + entry.getName();
+                        }
+
+                        @NotNull
+                        @Override
+                        public GameProperties read() throws IOException {
+                            return pack.read(entry);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        }
+
+        return List.of(fileJob(input));
+    }
+
+    @NotNull
+    private static Job fileJob(@NotNull Path path) {
+        return new Job() {
+            @NotNull
+            @Override
+            public String getName() {
+                return path.toString();
+            }
+
+            @NotNull
+            @Override
+            public GameProperties read() throws IOException {
+                return new Deserializer(path).parseGameFile();
+            }
+        };
+    }
+
+    /**
+     * @return The string as a JSON string literal.
+     */
+    @NotNull
+    private static String quote(@NotNull String s) {
+        final var sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
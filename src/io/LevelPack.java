@@ -0,0 +1,434 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-file archive of levels with a table of contents, which allows random access to any level by name or index.
+ *
+ * <p>
+ * Layout of a level pack, with all integers in big-endian order:
+ * <ul>
+ * <li>4 bytes: {@link LevelPack#MAGIC}.</li>
+ * <li>1 byte: Version of the format, currently {@link LevelPack#VERSION}.</li>
+ * <li>1 byte: Flags, currently always zero.</li>
+ * <li>4 bytes: Number of levels.</li>
+ * <li>8 bytes: Offset of the table of contents from the start of the pack.</li>
+ * <li>The contents of each level, as it would be stored in a standalone level file of any {@link LevelFormat}.</li>
+ * <li>Table of contents, with one entry per level in the order of the pack: the name of the level as 2 bytes of length
+ * followed by UTF-8, 8 bytes of offset and 4 bytes of length of the level contents, 3 &times; 4 bytes of number of
+ * rows, number of columns, and delay, and 1 byte of the ordinal of the {@link LevelFormat}.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Opening a pack only reads its table of contents. The pack is read through a single {@link FileChannel} which stays
+ * open until the pack is closed. As the channel is opened using the file system of the path, packs can also be read
+ * from inside a zip or jar file by opening them through a zip {@link java.nio.file.FileSystem}.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public final class LevelPack implements Closeable {
+
+    /**
+     * Magic number at the start of every level pack.
+     */
+    static final byte[] MAGIC = {'P', 'P', 'A', 'K'};
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = MAGIC.length + 2 + Integer.BYTES + Long.BYTES;
+    /**
+     * Size of an entry in the table of contents with an empty name.
+     */
+    private static final int MIN_ENTRY_SIZE = Short.BYTES + Long.BYTES + 4 * Integer.BYTES + 1;
+
+    /**
+     * Entry in the table of contents of a level pack.
+     */
+    public static final class Entry {
+        private final int index;
+        @NotNull
+        private final String name;
+        private final long offset;
+        private final int length;
+        private final int rows;
+        private final int cols;
+        private final int delay;
+        @NotNull
+        private final LevelFormat format;
+
+        private Entry(int index, @NotNull String name, long offset, int length, int rows, int cols, int delay,
+                      @NotNull LevelFormat format) {
+            this.index = index;
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+            this.cols = cols;
+            this.delay = delay;
+            this.format = format;
+        }
+
+        /**
+         * @return Index of the level in the pack.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return Name of the level.
+         */
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Number of rows of the level.
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return Number of columns of the level.
+         */
+        public int getCols() {
+            return cols;
+        }
+
+        /**
+         * @return Delay before the water starts flowing.
+         */
+        public int getDelay() {
+            return delay;
+        }
+
+        /**
+         * @return Format the level is stored in.
+         */
+        @NotNull
+        public LevelFormat getFormat() {
+            return format;
+        }
+    }
+
+    @NotNull
+    private final Path path;
+    @NotNull
+    private final FileChannel channel;
+    @NotNull
+    private final List<Entry> entries;
+    @NotNull
+    private final Map<String, Entry> entriesByName;
+
+    private LevelPack(@NotNull Path path, @NotNull FileChannel channel, @NotNull List<Entry> entries) {
+        this.path = path;
+        this.channel = channel;
+        this.entries = Collections.unmodifiableList(entries);
+        this.entriesByName = new HashMap<>(entries.size() * 2);
+        for (var entry : entries) {
+            entriesByName.putIfAbsent(entry.name, entry);
+        }
+    }
+
+    /**
+     * @param path Path to check.
+     * @return Whether the file at the path is a level pack.
+     */
+    public static boolean isLevelPack(@NotNull Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var head = ByteBuffer.allocate(MAGIC.length);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                // keep reading until the magic number is complete or the file ends
+            }
+            return Arrays.equals(head.array(), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a level pack.
+     *
+     * @param path Path to the level pack, which may be in any file system.
+     * @return The opened pack, which should be closed after use.
+     * @throws IOException         if the pack cannot be read.
+     * @throws InvalidMapException if the file is not a valid level pack.
+     */
+    @NotNull
+    public static LevelPack open(@NotNull Path path) throws IOException {
+        final var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            final var header = readFully(channel, 0, HEADER_SIZE);
+            final var magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new InvalidMapException("Not a level pack");
+            }
+            final int version = header.get() & 0xFF;
+            if (version != VERSION) {
+                throw new InvalidMapException("Unsupported level pack version " + version);
+            }
+            header.get();
+
+            final int count = header.getInt();
+            final long tocOffset = header.getLong();
+            if (count < 0 || tocOffset < HEADER_SIZE || tocOffset > channel.size()) {
+                throw new InvalidMapException("Malformed level pack header");
+            }
+
+            final long tocSize = channel.size() - tocOffset;
+            if (tocSize > Integer.MAX_VALUE) {
+                throw new InvalidMapException("Table of contents of level pack is too large");
+            }
+            if (count > tocSize / MIN_ENTRY_SIZE) {
+                throw new InvalidMapException("Level pack declares " + count
+                        + " levels, but its table of contents only has " + tocSize + " bytes");
+            }
+            final var toc = readFully(channel, tocOffset, (int) tocSize);
+            final var entries = new ArrayList<Entry>(count);
+            for (int i = 0; i < count; ++i) {
+                entries.add(readEntry(toc, i, tocOffset));
+            }
+
+            return new LevelPack(path, channel, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads an entry of the table of contents.
+     */
+    @NotNull
+    private static Entry readEntry(@NotNull ByteBuffer toc, int index, long tocOffset) {
+        try {
+            final var nameBytes = new byte[Short.toUnsignedInt(toc.getShort())];
+            toc.get(nameBytes);
+            final var name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            final long offset = toc.getLong();
+            final int length = toc.getInt();
+            final int rows = toc.getInt();
+            final int cols = toc.getInt();
+            final int delay = toc.getInt();
+            final int format = toc.get() & 0xFF;
+            if (offset < HEADER_SIZE || length < 0 || offset + length > tocOffset) {
+                throw new InvalidMapException("Level " + name + " lies outside of the level pack");
+            }
+            if (format >= LevelFormat.values().length) {
+                throw new InvalidMapException("Unknown format " + format + " of level " + name);
+            }
+
+            return new Entry(index, name, offset, length, rows, cols, delay, LevelFormat.values()[format]);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidMapException("Unexpected EOF when reading table of contents of level pack");
+        }
+    }
+
+    /**
+     * Writes a level pack.
+     *
+     * @param path   Path to write the level pack to.
+     * @param levels Level files to add to the pack, in order. Each level is named after its file name.
+     * @throws IOException         if a file cannot be read or written.
+     * @throws InvalidMapException if a level cannot be parsed.
+     */
+    public static void write(@NotNull Path path, @NotNull List<Path> levels) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+
+            final var toc = new ByteArrayOutputStream();
+            final var tocData = new DataOutputStream(toc);
+            for (var level : levels) {
+                final var deserializer = new Deserializer(level);
+                final var format = deserializer.detectFormat();
+                final var prop = deserializer.parseGameFile();
+
+                final long offset = channel.position();
+                final long length;
+                try (var in = FileChannel.open(level, StandardOpenOption.READ)) {
+                    length = in.size();
+                    if (length > Integer.MAX_VALUE) {
+                        throw new IOException("Level " + level + " is too large to be added to a level pack");
+                    }
+                    long transferred = 0;
+                    while (transferred < length) {
+                        transferred += in.transferTo(transferred, length - transferred, channel);
+                    }
+                }
+
+                final var nameBytes = level.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+                if (nameBytes.length > 0xFFFF) {
+                    throw new IOException("Name of level " + level + " is too long");
+                }
+                tocData.writeShort(nameBytes.length);
+                tocData.write(nameBytes);
+                tocData.writeLong(offset);
+                tocData.writeInt((int) length);
+                tocData.writeInt(prop.rows);
+                tocData.writeInt(prop.cols);
+                tocData.writeInt(prop.delay);
+                tocData.writeByte(format.ordinal());
+            }
+
+            final long tocOffset = channel.position();
+            writeFully(channel, ByteBuffer.wrap(toc.toByteArray()), tocOffset);
+
+            final var header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC);
+            header.put((byte) VERSION);
+            header.put((byte) 0);
+            header.putInt(levels.size());
+            header.putLong(tocOffset);
+            header.flip();
+            writeFully(channel, header, 0);
+        }
+    }
+
+    /**
+     * @return Path of this pack.
+     */
+    @NotNull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Number of levels in this pack.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The entries of all levels in this pack, in order.
+     */
+    @NotNull
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param index Index of the level.
+     * @return The entry of the level.
+     * @throws IndexOutOfBoundsException if there is no level with the index.
+     */
+    @NotNull
+    public Entry getEntry(int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * @param name Name of the level.
+     * @return The entry of the first level with the name, or {@code null} if there is no such level.
+     */
+    @Nullable
+    public Entry getEntry(@NotNull String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Reads a level from this pack.
+     *
+     * @param entry Entry of the level.
+     * @return The properties of the level.
+     * @throws IOException         if the pack cannot be read.
+     * @throws InvalidMapException if the level cannot be parsed.
+     */
+    @NotNull
+    public GameProperties read(@NotNull Entry entry) throws IOException {
+        final var contents = readFully(channel, entry.offset, entry.length);
+        final var in = new ByteArrayInputStream(contents.array(), 0, contents.limit());
+        if (entry.format == LevelFormat.TEXT) {
+            return MapTextParser.parse(Channels.newChannel(in), contents.limit());
+        } else {
+            return BinaryLevelFormat.read(in, contents.limit());
+        }
+    }
+
+    /**
+     * Reads a level from this pack.
+     *
+     * @param name Name of the level.
+     * @return The properties of the level.
+     * @throws IOException              if the pack cannot be read.
+     * @throws InvalidMapException      if the level cannot be parsed.
+     * @throws IllegalArgumentException if there is no level with the name.
+     */
+    @NotNull
+    public GameProperties read(@NotNull String name) throws IOException {
+        final var entry = getEntry(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No level named " + name + " in " + path);
+        }
+        return read(entry);
+    }
+
+    /**
+     * Closes the channel of this pack. Levels can no longer be read afterwards.
+     *
+     * @throws IOException if the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a range of bytes from a channel without changing its position.
+     *
+     * @return Buffer containing the bytes, ready for reading.
+     * @throws InvalidMapException if the channel ends before the range.
+     */
+    @NotNull
+    private static ByteBuffer readFully(@NotNull FileChannel channel, long position, int length) throws IOException {
+        final var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new InvalidMapException("Unexpected EOF when reading level pack");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes a buffer to a channel without changing its position.
+     */
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line tool for creating and listing {@link LevelPack level packs}.
+ */
+public class LevelPacker {
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("create") || args[0].equals("list"))
+                || (args[0].equals("list") && args.length != 2)) {
+            System.out.println("Usage: java io.LevelPacker create [output] [input...]");
+            System.out.println("       java io.LevelPacker list [pack]");
+            System.out.println("Creates a level pack from level files, or lists the levels in a level pack. Directories");
+            System.out.println("given as input are expanded to the .map files inside them, in alphabetical order.");
+            System.exit(args.length == 1 && args[0].equals("--help") ? 0 : 1);
+        }
+
+        try {
+            if (args[0].equals("list")) {
+                list(Path.of(args[1]));
+            } else {
+                final var levels = new ArrayList<Path>();
+                for (int i = 2; i < args.length; ++i) {
+                    levels.addAll(expand(Path.of(args[i])));
+                }
+
+                final var output = Path.of(args[1]);
+                LevelPack.write(output, levels);
+                System.out.println("Packed " + levels.size() + " levels into " + output + " ("
+                        + Files.size(output) + " bytes)");
+            }
+        } catch (final Throwable tr) {
+            tr.printStackTrace();
+            System.err.println("Unable to process level pack: " + tr.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param input A level file or a directory of level files.
+     * @return The level files of the input.
+     */
+    private static List<Path> expand(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+
+        try (Stream<Path> files = Files.list(input)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(".map"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void list(Path path) throws IOException {
+        try (var pack = LevelPack.open(path)) {
+            for (var entry : pack.getEntries()) {
+                System.out.println(entry.getIndex() + "\t" + entry.getName() + "\t" + entry.getRows() + "x"
+                        + entry.getCols() + "\tdelay " + entry.getDelay() + "\t" + entry.getFormat());
+            }
+            System.out.println(pack.size() + " levels");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io;
+
+import models.GameCore;
+import models.map.Map;
+import models.map.PackedCellGrid;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of a parsed level, from which any number of independent games can be created.
+ *
+ * <p>
+ * Cells are stored in a {@link PackedCellGrid}, which is never modified after construction. Every game or
+ * {@link GameProperties} created from a template gets its own copy of the cells and pipes.
+ * </p>
+ */
+public final class LevelTemplate {
+
+    /**
+     * Estimated size of a template excluding its cells.
+     */
+    private static final int BASE_SIZE = 64;
+
+    private final int rows;
+    private final int cols;
+    private final int delay;
+    @NotNull
+    private final PackedCellGrid grid;
+    /**
+     * Shapes of the initial pipes, or {@code null} if the level does not have any.
+     */
+    @Nullable
+    private final List<Pipe.Shape> pipeShapes;
+
+    private LevelTemplate(int rows, int cols, int delay, @NotNull PackedCellGrid grid,
+                          @Nullable List<Pipe.Shape> pipeShapes) {
+        this.rows = rows;
+        this.cols = cols;
+        this.delay = delay;
+        this.grid = grid;
+        this.pipeShapes = pipeShapes;
+    }
+
+    /**
+     * Creates a template from the properties of a level. The properties are copied, and can be modified afterwards.
+     *
+     * @param prop Properties of the level.
+     * @return A template of the level.
+     */
+    @NotNull
+    public static LevelTemplate of(@NotNull GameProperties prop) {
+        List<Pipe.Shape> shapes = null;
+        if (prop.pipes != null) {
+            shapes = new ArrayList<>(prop.pipes.size());
+            for (var pipe : prop.pipes) {
+                shapes.add(pipe.getShape());
+            }
+            shapes = List.copyOf(shapes);
+        }
+        return new LevelTemplate(prop.rows, prop.cols, prop.delay,
+                PackedCellGrid.fromCells(prop.rows, prop.cols, prop.cells), shapes);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return Estimated number of bytes used by this template.
+     */
+    public long getSizeInBytes() {
+        return BASE_SIZE + (long) rows * cols + (pipeShapes == null ? 0 : pipeShapes.size() * 8L);
+    }
+
+    /**
+     * @return New properties with a copy of the cells and pipes of this level.
+     */
+    @NotNull
+    public GameProperties toProperties() {
+        return new GameProperties(rows, cols, grid.toCells(), delay, createPipes());
+    }
+
+    /**
+     * Creates a game of this level.
+     *
+     * <p>
+     * If maps of this size are stored as {@link Map.StorageMode#PACKED}, the game is built from a copy of the packed cells without
+     * creating any cell objects.
+     * </p>
+     *
+     * @return A new game of this level.
+     */
+    @NotNull
+    public GameCore createGame() {
+        if (Map.getStorageMode(grid.getRows(), grid.getCols()) == Map.StorageMode.PACKED) {
+            return new GameCore(new Map(grid.copy()), createPipes());
+        }
+        return new GameCore(toProperties());
+    }
+
+    @Nullable
+    private List<Pipe> createPipes() {
+        if (pipeShapes == null) {
+            return null;
+        }
+
+        final var pipes = new ArrayList<Pipe>(pipeShapes.size());
+        for (var shape : pipeShapes) {
+            pipes.add(new Pipe(shape));
+        }
+        return pipes;
+    }
+}
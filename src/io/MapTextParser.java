@@ -0,0 +1,337 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.cells.Cell;
+import models.map.cells.TerminationCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass parser for the text map format.
+ *
+ * <p>
+ * The file is read once through a fixed-size buffer, and cells are created directly from the bytes of each row without
+ * creating any intermediate strings. Map files are expected to be ASCII.
+ * </p>
+ * <p>
+ * Blank lines, and lines starting with {@code '#'}, are skipped everywhere in the file. All errors are reported as
+ * {@link InvalidMapException} with the line and column where parsing failed.
+ * </p>
+ */
+class MapTextParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int EOF = -1;
+
+    @NotNull
+    private final ReadableByteChannel channel;
+    @NotNull
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean channelDrained = false;
+    /**
+     * Number of bytes of the map file, or {@code -1} if it is not known.
+     */
+    private final long size;
+
+    /**
+     * Line of the next character, 1-based.
+     */
+    private int line = 1;
+    /**
+     * Column of the next character, 1-based.
+     */
+    private int column = 1;
+
+    private MapTextParser(@NotNull ReadableByteChannel channel, long size) {
+        this.channel = channel;
+        this.size = size;
+        buffer.flip();
+    }
+
+    /**
+     * Parses a map file.
+     *
+     * @param channel Channel to read the map file from. The channel is not closed by this method.
+     * @param size    Number of bytes of the map file, or {@code -1} if it is not known.
+     * @return The properties of the parsed game.
+     * @throws IOException         if the channel fails to read.
+     * @throws InvalidMapException if the map cannot be parsed.
+     */
+    @NotNull
+    static GameProperties parse(@NotNull ReadableByteChannel channel, long size) throws IOException {
+        return new MapTextParser(channel, size).parseGame();
+    }
+
+    /**
+     * Creates the cell represented by a character.
+     *
+     * @param ch   Character of the cell.
+     * @param row  Row of the cell.
+     * @param col  Column of the cell.
+     * @param rows Number of rows of the map.
+     * @param cols Number of columns of the map.
+     * @return The cell, or {@code null} if the character does not represent a cell.
+     */
+    @Nullable
+    static Cell parseCell(char ch, int row, int col, int rows, int cols) {
+        var coord = new Coordinate(row, col);
+        if (row == 0 || row == rows - 1 || col == 0 || col == cols - 1) {
+            return Cell.fromChar(ch, coord, TerminationCell.Type.SINK);
+        } else {
+            return Cell.fromChar(ch, coord, TerminationCell.Type.SOURCE);
+        }
+    }
+
+    @NotNull
+    private GameProperties parseGame() throws IOException {
+        final var rows = parseIntLine("number of rows");
+        final var cols = parseIntLine("number of columns");
+        final var delay = parseIntLine("amount of delay");
+        if (rows <= 0 || cols <= 0) {
+            throw new InvalidMapException("Map must have at least one row and column");
+        }
+        // every row takes one byte per cell and a line break, except that the last line break is optional
+        Deserializer.checkDimensions(rows, cols, (long) rows * (cols + 1) - 1, size);
+
+        final var cells = new Cell[rows][cols];
+        for (int r = 0; r < rows; ++r) {
+            if (!skipToContent()) {
+                throw error("Unexpected EOF when parsing row " + r + " of map");
+            }
+            if (column != 1) {
+                throw new InvalidMapException("Invalid cell ' ' in row " + r + " of map", line, 1);
+            }
+            parseRow(cells, r, rows, cols);
+        }
+
+        List<Pipe> pipes = null;
+        if (skipToContent()) {
+            pipes = parsePipes();
+        }
+
+        return new GameProperties(rows, cols, cells, delay, pipes);
+    }
+
+    /**
+     * Parses a line containing a single integer.
+     *
+     * @param description Description of the integer, for error messages.
+     * @return The parsed integer.
+     */
+    private int parseIntLine(@NotNull String description) throws IOException {
+        if (!skipToContent()) {
+            throw error("Unexpected EOF when parsing " + description);
+        }
+
+        final boolean negative = peek() == '-';
+        if (negative) {
+            next();
+        }
+        if (!isDigit(peek())) {
+            throw error("Expected a number when parsing " + description);
+        }
+
+        long value = 0;
+        while (isDigit(peek())) {
+            value = value * 10 + (next() - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw error("Number too large when parsing " + description);
+            }
+        }
+
+        skipWhitespace();
+        if (!isLineEnd(peek())) {
+            throw error("Unexpected character '" + (char) peek() + "' when parsing " + description);
+        }
+        skipLine();
+
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Parses a row of the map into {@code cells}. Characters after the last column are ignored.
+     */
+    private void parseRow(@NotNull Cell[][] cells, int row, int rows, int cols) throws IOException {
+        for (int c = 0; c < cols; ++c) {
+            final int ch = peek();
+            if (isLineEnd(ch)) {
+                throw error("Row " + row + " of map has " + c + " columns, expected " + cols);
+            }
+
+            final var cell = parseCell((char) ch, row, c, rows, cols);
+            if (cell == null) {
+                throw error("Invalid cell '" + (char) ch + "' in row " + row + " of map");
+            }
+            cells[row][c] = cell;
+            next();
+        }
+
+        skipLine();
+    }
+
+    /**
+     * Parses a comma-separated list of pipes, which occupies the rest of the current line and may end with a comma.
+     */
+    @NotNull
+    private List<Pipe> parsePipes() throws IOException {
+        final var pipes = new ArrayList<Pipe>();
+        final var token = new StringBuilder();
+
+        while (true) {
+            skipWhitespace();
+            final int tokenLine = line;
+            final int tokenColumn = column;
+
+            token.setLength(0);
+            while (!isLineEnd(peek()) && peek() != ',') {
+                token.append((char) next());
+            }
+            while (token.length() > 0 && Character.isWhitespace(token.charAt(token.length() - 1))) {
+                token.setLength(token.length() - 1);
+            }
+
+            // a single trailing comma is allowed, as in "TR, TL,"
+            if (token.length() == 0 && !pipes.isEmpty() && isLineEnd(peek())) {
+                break;
+            }
+
+            var shape = Pipe.Shape.fromRep(token.toString());
+            if (shape == null) {
+                throw new InvalidMapException("Unknown pipe '" + token + "'", tokenLine, tokenColumn);
+            }
+            pipes.add(new Pipe(shape));
+
+            if (peek() != ',') {
+                break;
+            }
+            next();
+        }
+
+        skipLine();
+        return pipes;
+    }
+
+    /**
+     * Skips blank lines and comments, up to the first non-whitespace character of the next content line.
+     *
+     * @return {@code false} if the end of the file is reached.
+     */
+    private boolean skipToContent() throws IOException {
+        while (true) {
+            if (peek() == EOF) {
+                return false;
+            }
+            if (column == 1 && peek() == '#') {
+                skipLine();
+                continue;
+            }
+
+            skipWhitespace();
+            if (!isLineEnd(peek())) {
+                return true;
+            }
+            skipLine();
+        }
+    }
+
+    /**
+     * Skips whitespace characters on the current line.
+     */
+    private void skipWhitespace() throws IOException {
+        int ch;
+        while ((ch = peek()) == ' ' || ch == '\t' || ch == '\f' || ch == 0x0B) {
+            next();
+        }
+    }
+
+    /**
+     * Skips the rest of the current line, including the line terminator.
+     */
+    private void skipLine() throws IOException {
+        int ch;
+        while ((ch = next()) != EOF && ch != '\n') {
+            if (ch == '\r' && peek() != '\n') {
+                // old Mac line ending
+                newLine();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The next byte without consuming it, or {@link MapTextParser#EOF}.
+     */
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return EOF;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    /**
+     * @return The next byte, or {@link MapTextParser#EOF}.
+     */
+    private int next() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return EOF;
+        }
+
+        final int ch = buffer.get() & 0xFF;
+        if (ch == '\n') {
+            newLine();
+        } else {
+            ++column;
+        }
+        return ch;
+    }
+
+    private void newLine() {
+        ++line;
+        column = 1;
+    }
+
+    /**
+     * Refills the buffer from the channel.
+     *
+     * @return {@code false} if the channel has no more bytes.
+     */
+    private boolean fill() throws IOException {
+        if (channelDrained) {
+            return false;
+        }
+
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+
+        if (read < 0) {
+            channelDrained = true;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isLineEnd(int ch) {
+        return ch == EOF || ch == '\n' || ch == '\r';
+    }
+
+    private static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    @NotNull
+    private InvalidMapException error(@NotNull String message) {
+        return new InvalidMapException(message, line, column);
+    }
+}
@@ -0,0 +1,240 @@
+package io;
+
+import models.exceptions.InvalidMapException;
+import models.map.CellGrid;
+import models.map.CellSource;
+import models.map.LazyCellGrid;
+import models.map.Map;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Level in the {@link LevelFormat#MAPPED} format, whose cells are read directly from a memory-mapped file.
+ *
+ * <p>
+ * Opening a level only reads its header and initial pipes, so it takes constant time and memory regardless of the size
+ * of the level. Pages of the file are loaded by the operating system when the cells in them are first accessed, and
+ * can be evicted again under memory pressure. Maps created by {@link MappedLevel#createMap()} are backed by a
+ * {@link LazyCellGrid}, which only decodes the parts of the level which are modified during the game.
+ * </p>
+ * <p>
+ * Files larger than 2 GiB are mapped as several regions, each containing a whole number of rows.
+ * </p>
+ */
+public final class MappedLevel implements CellSource {
+
+    private final int rows;
+    private final int cols;
+    private final int delay;
+    @Nullable
+    private final List<Pipe> pipes;
+    @NotNull
+    private final Coordinate source;
+    @NotNull
+    private final Coordinate sink;
+
+    /**
+     * Number of bytes of each row.
+     */
+    private final int stride;
+    private final int rowsPerRegion;
+    @NotNull
+    private final MappedByteBuffer[] regions;
+
+    private MappedLevel(int rows, int cols, int delay, @Nullable List<Pipe> pipes, @NotNull Coordinate source,
+                        @NotNull Coordinate sink, int rowsPerRegion, @NotNull MappedByteBuffer[] regions) {
+        this.rows = rows;
+        this.cols = cols;
+        this.delay = delay;
+        this.pipes = pipes;
+        this.source = source;
+        this.sink = sink;
+        this.stride = (int) BinaryLevelFormat.strideOf(cols);
+        this.rowsPerRegion = rowsPerRegion;
+        this.regions = regions;
+    }
+
+    /**
+     * Opens a level in the {@link LevelFormat#MAPPED} format.
+     *
+     * @param path Path to the level.
+     * @return The opened level. The file stays mapped until the level is garbage-collected.
+     * @throws IOException         if the file cannot be read.
+     * @throws InvalidMapException if the file is not a valid level in the {@link LevelFormat#MAPPED} format.
+     */
+    @NotNull
+    public static MappedLevel open(@NotNull Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var header = ByteBuffer.allocate(BinaryLevelFormat.FIXED_STRIDE_HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (!BinaryLevelFormat.isFixedStride(header)
+                    || header.remaining() < BinaryLevelFormat.FIXED_STRIDE_HEADER_SIZE) {
+                throw new InvalidMapException("Not a mapped level");
+            }
+            header.position(BinaryLevelFormat.MAGIC.length);
+            final int version = header.get() & 0xFF;
+            if (version != BinaryLevelFormat.VERSION) {
+                throw new InvalidMapException("Unsupported binary level version " + version);
+            }
+            header.get();
+
+            final int rows = header.getInt();
+            final int cols = header.getInt();
+            final int delay = header.getInt();
+            final int pipeCount = header.getInt();
+            final var source = new Coordinate(header.getInt(), header.getInt());
+            final var sink = new Coordinate(header.getInt(), header.getInt());
+            if (rows <= 0 || cols <= 0) {
+                throw new InvalidMapException("Map must have at least one row and column");
+            }
+
+            final List<Pipe> pipes = pipeCount >= 0 ? readPipes(channel, pipeCount) : null;
+
+            final long cellsOffset = channel.position();
+            final long stride = BinaryLevelFormat.strideOf(cols);
+            if (channel.size() - cellsOffset < stride * rows) {
+                throw new InvalidMapException("Unexpected EOF when reading mapped level");
+            }
+
+            final int rowsPerRegion = (int) Math.min(rows, Integer.MAX_VALUE / stride);
+            final var regions = new MappedByteBuffer[(rows + rowsPerRegion - 1) / rowsPerRegion];
+            for (int i = 0; i < regions.length; ++i) {
+                final long firstRow = (long) i * rowsPerRegion;
+                final long regionRows = Math.min(rowsPerRegion, rows - firstRow);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, cellsOffset + firstRow * stride,
+                        regionRows * stride);
+            }
+
+            return new MappedLevel(rows, cols, delay, pipes, source, sink, rowsPerRegion, regions);
+        }
+    }
+
+    /**
+     * Reads the initial pipes, leaving the channel positioned at the first cell.
+     */
+    @NotNull
+    private static List<Pipe> readPipes(@NotNull FileChannel channel, int pipeCount) throws IOException {
+        final var bytes = ByteBuffer.allocate((pipeCount + 1) / 2);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) < 0) {
+                throw new InvalidMapException("Unexpected EOF when reading mapped level");
+            }
+        }
+
+        final var pipes = new ArrayList<Pipe>(pipeCount);
+        for (int i = 0; i < pipeCount; ++i) {
+            final int b = bytes.get(i / 2);
+            final int id = (i & 1) == 0 ? (b >>> 4) & 0xF : b & 0xF;
+            if (id >= Pipe.Shape.values().length) {
+                throw new InvalidMapException("Unknown pipe shape " + id);
+            }
+            pipes.add(new Pipe(Pipe.Shape.fromId(id)));
+        }
+        return pipes;
+    }
+
+    /**
+     * Creates a map of this level.
+     *
+     * @return A new map backed by a {@link LazyCellGrid} over this level.
+     * @throws InvalidMapException if the source or sink recorded in the header are invalid.
+     */
+    @NotNull
+    public Map createMap() {
+        try {
+            return new Map(new LazyCellGrid(this), source, sink);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidMapException(e.getMessage());
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return Delay before the water starts flowing.
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return The initial pipes of the level, or {@code null} if the level does not specify any.
+     */
+    @Nullable
+    public List<Pipe> getPipes() {
+        return pipes != null ? Collections.unmodifiableList(pipes) : null;
+    }
+
+    /**
+     * @return Position of the source cell.
+     */
+    @NotNull
+    public Coordinate getSource() {
+        return source;
+    }
+
+    /**
+     * @return Position of the sink cell.
+     */
+    @NotNull
+    public Coordinate getSink() {
+        return sink;
+    }
+
+    @Override
+    public int getKind(int row, int col) {
+        final int code = codeAt(row, col);
+        switch (code) {
+            case BinaryLevelFormat.CODE_EMPTY:
+                return CellGrid.KIND_FILLABLE;
+            case BinaryLevelFormat.CODE_WALL:
+                return CellGrid.KIND_WALL;
+            default:
+                if (code - BinaryLevelFormat.CODE_TERMINATION >= Direction.values().length) {
+                    throw new InvalidMapException("Invalid cell code " + code + " at (" + row + ", " + col + ")");
+                }
+                return row == 0 || row == rows - 1 || col == 0 || col == cols - 1
+                        ? CellGrid.KIND_SINK
+                        : CellGrid.KIND_SOURCE;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Direction getTerminationDirection(int row, int col) {
+        final int dir = codeAt(row, col) - BinaryLevelFormat.CODE_TERMINATION;
+        return dir >= 0 && dir < Direction.values().length ? Direction.fromOrdinal(dir) : null;
+    }
+
+    /**
+     * @return The {@code CODE_*} value of the cell in the file.
+     */
+    private int codeAt(int row, int col) {
+        final int b = regions[row / rowsPerRegion].get((row % rowsPerRegion) * stride + col / 2);
+        return (col & 1) == 0 ? (b >>> 4) & 0xF : b & 0xF;
+    }
+}
@@ -1,54 +1,187 @@
 package io;
 
 import models.MapElement;
+import models.map.cells.Cell;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 /**
  * A serializer for converting {@link GameProperties} into a map file.
+ *
+ * <p>
+ * Maps are written to a temporary file in the same directory, which is synced to disk and then renamed over the
+ * target file. A failed or interrupted write therefore leaves the previous version of the file intact, instead of a
+ * truncated map.
+ * </p>
  */
 public class Serializer {
 
+    /**
+     * Size of the buffer which maps are written through.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Thread which asynchronous writes are run on. Writes are run one at a time, in the order they were requested.
+     */
+    @NotNull
+    private static final Executor WRITER_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "level-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Path to the map to serialize to.
      */
     @NotNull
     private Path path;
+    /**
+     * Format of the map file.
+     */
+    @NotNull
+    private final LevelFormat format;
 
+    /**
+     * Creates a serializer which writes the text format.
+     *
+     * @param path Path to the map to serialize to.
+     */
     public Serializer(@NotNull final Path path) {
+        this(path, LevelFormat.TEXT);
+    }
+
+    /**
+     * @param path   Path to the map to serialize to.
+     * @param format Format of the map file.
+     */
+    public Serializer(@NotNull final Path path, @NotNull final LevelFormat format) {
         this.path = path;
+        this.format = format;
     }
 
     /**
      * Serializes a {@link GameProperties} object and saves it into a file.
      *
      * @param prop {@link GameProperties} objeect to serialize and save.
-     * @throws IOException if an I/O exception has occurred.
+     * @throws IOException if an I/O exception has occurred. The target file is not modified in this case.
      */
     public void serializeGameProp(@NotNull final GameProperties prop) throws IOException {
-        // TODO done
-        try(PrintWriter pw = new PrintWriter(path.toFile())){
-            pw.println(prop.rows);
-            pw.println(prop.cols);
-            pw.println(prop.delay);
-            for (int i = 0; i<prop.rows;i++){
-                for (int j = 0; j<prop.cols; j++){
-                    pw.print(prop.cells[i][j].toSerializedRep());
-                }
-                pw.println();
+        final var target = path.toAbsolutePath();
+        final var dir = target.getParent();
+        // not Files.createTempFile, which would give the saved map owner-only permissions
+        final var tmp = dir.resolve("." + target.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+
+        try {
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                final var out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                write(prop, out);
+                out.flush();
+                channel.force(true);
             }
-            if(prop.pipes!=null){
-                for(var pipe:prop.pipes){
-                pw.print(pipe.toSerializedRep());
-                }
+
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
             }
-            pw.println();
-        }catch (IOException e){
-            e.printStackTrace();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        syncDirectory(dir);
+    }
+
+    /**
+     * Serializes a {@link GameProperties} object and saves it into a file on a background thread.
+     *
+     * <p>
+     * A snapshot of the cell array and pipe list is taken before this method returns, so {@code prop} may be modified
+     * while the file is being written. {@link Cell} objects are not copied, and must not be modified in place.
+     * </p>
+     *
+     * @param prop {@link GameProperties} object to serialize and save.
+     * @return Future which completes when the file has been written, or completes exceptionally with the
+     * {@link IOException} if it cannot be written.
+     */
+    @NotNull
+    public CompletableFuture<Void> serializeGamePropAsync(@NotNull final GameProperties prop) {
+        final var cells = new Cell[prop.rows][];
+        for (int r = 0; r < prop.rows; ++r) {
+            cells[r] = prop.cells[r].clone();
+        }
+        final var snapshot = new GameProperties(prop.rows, prop.cols, cells, prop.delay,
+                prop.pipes != null ? new ArrayList<>(prop.pipes) : null);
+
+        final var future = new CompletableFuture<Void>();
+        WRITER_EXECUTOR.execute(() -> {
+            try {
+                serializeGameProp(snapshot);
+                future.complete(null);
+            } catch (final Throwable tr) {
+                future.completeExceptionally(tr);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Writes a map in {@link Serializer#format} to a stream.
+     */
+    private void write(@NotNull final GameProperties prop, @NotNull final OutputStream out) throws IOException {
+        if (format == LevelFormat.BINARY || format == LevelFormat.MAPPED) {
+            BinaryLevelFormat.write(prop, out, format == LevelFormat.MAPPED);
+            return;
+        }
+
+        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(prop.rows + "\n");
+        writer.write(prop.cols + "\n");
+        writer.write(prop.delay + "\n");
+
+        final var row = new StringBuilder(prop.cols + 1);
+        for (int i = 0; i < prop.rows; i++) {
+            row.setLength(0);
+            for (int j = 0; j < prop.cols; j++) {
+                row.append(prop.cells[i][j].toSerializedRep());
+            }
+            row.append('\n');
+            writer.append(row);
+        }
+        if (prop.pipes != null) {
+            writer.write(prop.pipes.stream().map(MapElement::toSerializedRep).collect(Collectors.joining(", ")));
+        }
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Syncs a directory, so that a file renamed into it survives a crash. This is not supported on all platforms, in
+     * which case the rename is only as durable as the file system makes it.
+     */
+    private static void syncDirectory(@NotNull final Path dir) {
+        try (var channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
         }
     }
 }
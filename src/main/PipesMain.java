@@ -1,6 +1,7 @@
 package main;
 
 import controllers.SceneManager;
+import controllers.SpriteAtlas;
 import javafx.application.Application;
 import javafx.stage.Stage;
 import textgame.Main;
@@ -13,6 +14,7 @@ public class PipesMain extends Application {
 
     @Override
     public void start(final Stage primaryStage) {
+        SpriteAtlas.getInstance();
         SceneManager.getInstance().setStage(primaryStage);
         SceneManager.getInstance().showPane(MainMenuPane.class);
     }
@@ -0,0 +1,110 @@
+package models;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Description of the image of a cell, with support for rotated images.
+ *
+ * <p>
+ * This class only refers to the image by its resource path, so that models can describe their appearance without
+ * loading any images. The images are loaded by the renderer when they are first drawn.
+ * </p>
+ * <p>
+ * Instances are shared flyweights obtained from {@link CellImage#of(String, float)}, so that elements can hand out the
+ * same descriptor every time instead of allocating one per draw. Each instance has a dense {@link CellImage#getIndex()
+ * index}, which lets the renderer look up a pre-rotated copy of the image without hashing.
+ * </p>
+ */
+public final class CellImage {
+
+    /**
+     * All created instances, indexed by {@link CellImage#getIndex()}. Guarded by {@code CellImage.class}.
+     */
+    @NotNull
+    private static final List<CellImage> ALL = new ArrayList<>();
+    /**
+     * All created instances, keyed by their resource path and rotation. Guarded by {@code CellImage.class}.
+     */
+    @NotNull
+    private static final java.util.Map<String, CellImage> BY_KEY = new HashMap<>();
+
+    private final int index;
+    /**
+     * Path to the image, relative to the root of the resource directory.
+     */
+    @NotNull
+    private final String resource;
+    /**
+     * Rotation of the image in degrees clockwise, normalized to one of 0, 90, 180 or 270.
+     */
+    private final int rotation;
+
+    private CellImage(int index, @NotNull String resource, int rotation) {
+        this.index = index;
+        this.resource = resource;
+        this.rotation = rotation;
+    }
+
+    /**
+     * Retrieves the shared descriptor of an image.
+     *
+     * @param resource Path to the image, relative to the root of the resource directory.
+     * @param rotation Rotation of the image in degrees clockwise. Must be a multiple of 90.
+     * @return The descriptor of the image. Repeated calls with the same arguments return the same instance.
+     * @throws IllegalArgumentException if {@code rotation} is not a multiple of 90.
+     */
+    @NotNull
+    public static synchronized CellImage of(@NotNull String resource, float rotation) {
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees");
+        }
+
+        final int normalized = Math.floorMod((int) rotation, 360);
+        return BY_KEY.computeIfAbsent(normalized + ":" + resource, key -> {
+            final var image = new CellImage(ALL.size(), resource, normalized);
+            ALL.add(image);
+            return image;
+        });
+    }
+
+    /**
+     * @return Number of descriptors which have been created so far.
+     */
+    public static synchronized int count() {
+        return ALL.size();
+    }
+
+    /**
+     * @return Snapshot of all descriptors which have been created so far, in the order of their index.
+     */
+    @NotNull
+    public static synchronized List<CellImage> getAll() {
+        return List.copyOf(ALL);
+    }
+
+    /**
+     * @return Index of this descriptor, from 0 to {@link CellImage#count()} exclusive.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Path to the image, relative to the root of the resource directory.
+     */
+    @NotNull
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * @return Rotation of the image in degrees clockwise, as one of 0, 90, 180 or 270.
+     */
+    public float getRotation() {
+        return rotation;
+    }
+}
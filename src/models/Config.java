@@ -30,6 +30,15 @@ public class Config {
      */
     public static final int TILE_SIZE = 32;
 
+    /**
+     * Largest width of a map view. Larger maps are shown through a {@link util.Viewport}.
+     */
+    public static final int MAX_VIEWPORT_WIDTH = 576;
+    /**
+     * Largest height of a map view. Larger maps are shown through a {@link util.Viewport}.
+     */
+    public static final int MAX_VIEWPORT_HEIGHT = 448;
+
     /**
      * Path to the CSS styling.
      */
@@ -42,6 +51,8 @@ public class Config {
     public static String getAboutText() {
         return "Controls:\n" +
                 "LMB: Place Pipe\n" +
+                "RMB Drag: Pan View\n" +
+                "Scroll: Zoom View\n" +
                 "u: Undo Move\n" +
                 "s: Skip Pipe\n" +
                 "\n" +
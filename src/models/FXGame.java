@@ -1,16 +1,18 @@
 package models;
 
+import controllers.Renderer;
+import io.GameProperties;
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.canvas.Canvas;
-import models.map.Map;
 import models.map.cells.Cell;
-import models.map.cells.FillableCell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import textgame.game.Game;
 import util.Coordinate;
+import views.LayeredMapView;
 
 import java.util.List;
 
@@ -29,15 +31,12 @@ public class FXGame {
     private static int defaultCols = 8;
 
     @NotNull
-    private final Map map;
-    @NotNull
-    private final PipeQueue pipeQueue;
+    private final GameCore core;
     @NotNull
     private final FlowTimer flowTimer;
-    @NotNull
-    private final CellStack cellStack = new CellStack();
 
-    private IntegerProperty numOfSteps = new SimpleIntegerProperty(0);
+    private final IntegerProperty numOfSteps = new SimpleIntegerProperty(0);
+    private final IntegerProperty numOfUndo = new SimpleIntegerProperty(0);
 
     /**
      * Sets the default number of rows for generated maps.
@@ -85,10 +84,8 @@ public class FXGame {
      * @param cols Number of columns (excluding side walls)
      */
     private FXGame(int rows, int cols) {
-        // TODO done
-        map = new Map(rows,cols);
-        pipeQueue = new PipeQueue();
-        flowTimer = new FlowTimer();
+        core = new GameCore(rows, cols);
+        flowTimer = new FlowTimer(FlowTimer.getDefaultDelay(), Platform::runLater);
     }
 
     /**
@@ -101,10 +98,28 @@ public class FXGame {
      * @param pipes Initial pipes, if provided.
      */
     public FXGame(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
-        // TODO done
-        map = new Map(rows, cols, cells);
-        pipeQueue = new PipeQueue(pipes);
-        flowTimer = new FlowTimer(delay);
+        core = new GameCore(rows, cols, cells, pipes);
+        flowTimer = new FlowTimer(delay, Platform::runLater);
+    }
+
+    /**
+     * Constructs an instance from the properties of a game file.
+     *
+     * @param prop Properties of the game.
+     */
+    public FXGame(@NotNull GameProperties prop) {
+        this(prop.rows, prop.cols, prop.delay, prop.cells, prop.pipes);
+    }
+
+    /**
+     * Constructs an instance from a game which has already been built, e.g. by a {@link controllers.LevelPrefetcher}.
+     *
+     * @param core  Game to play.
+     * @param delay Delay in seconds before water starts flowing.
+     */
+    public FXGame(@NotNull GameCore core, int delay) {
+        this.core = core;
+        flowTimer = new FlowTimer(delay, Platform::runLater);
     }
 
     /**
@@ -141,13 +156,30 @@ public class FXGame {
 
     public void restartCountdown(){flowTimer.resume();}
 
-    public Pipe getPipeAt(int row, int col){
-        return map.getPipeAt(row,col);
+    /**
+     * Sets the speed of the flow of water.
+     *
+     * @param speed New speed.
+     */
+    public void setSpeed(@NotNull FlowTimer.Speed speed) {
+        flowTimer.setSpeed(speed);
+    }
+
+    /**
+     * @return Current speed of the flow of water.
+     */
+    @NotNull
+    public FlowTimer.Speed getSpeed() {
+        return flowTimer.getSpeed();
+    }
+
+    @Nullable
+    public Pipe getPipeAt(int row, int col) {
+        return core.getPipeAt(row, col);
     }
 
-    public void replacePipe(int row, int col, Pipe pipe){
-        map.remove(row,col);
-        map.tryPlacePipe(new Coordinate(row,col), pipe);
+    public void replacePipe(int row, int col, @NotNull Pipe pipe) {
+        core.replacePipe(row, col, pipe);
     }
 
     /**
@@ -156,49 +188,55 @@ public class FXGame {
      * @see Game#placePipe(int, char)
      */
     public void placePipe(int row, int col) {
-        // TODO done
-        var coord = new Coordinate(row,col);
-        var pipe = pipeQueue.peek();
-        if(map.tryPlacePipe(coord,pipe)){
-           pipeQueue.consume();
-           cellStack.push(new FillableCell(coord,pipe));
-           numOfSteps.setValue(numOfSteps.intValue()+1);
-        }
+        core.placePipe(new Coordinate(row, col));
+        syncProperties();
     }
 
     /**
      * @see Game#skipPipe()
      */
     public void skipPipe() {
-        // TODO done
-        numOfSteps.setValue(numOfSteps.get()+1);
-        pipeQueue.consume();
+        core.skipPipe();
+        syncProperties();
     }
 
     /**
      * @see Game#undoStep()
      */
     public void undoStep() {
-        // TODO done!
-        FillableCell undoCell = cellStack.pop();//this increments undocount
-        if(undoCell != null){
-            if(undoCell.getPipe().get().getFilled()){
-                cellStack.push(undoCell);
-                return;
-            }
-            pipeQueue.undo(undoCell.getPipe().get());
-            map.undo(undoCell.coord);
-            numOfSteps.setValue(numOfSteps.intValue()+1);
-        }
+        core.undoStep();
+        syncProperties();
     }
 
     /**
-     * Renders the map onto a {@link Canvas}.
+     * Renders the map onto a {@link LayeredMapView}. This must be called on the JavaFX Application Thread, e.g. from a
+     * {@link controllers.RenderScheduler}.
      *
-     * @param canvas {@link Canvas} to render to.
+     * <p>
+     * Only the cells which have changed since the last render are redrawn, and only on the layers they have changed
+     * on.
+     * </p>
+     *
+     * @param view {@link LayeredMapView} to render to.
+     */
+    public void renderMap(@NotNull LayeredMapView view) {
+        final var map = core.getMap();
+        view.render(map.getGrid(), map.getDirtyPipes(), map.getDirtyWater());
+    }
+
+    /**
+     * Renders a frame of the water flowing into the next tiles onto a {@link LayeredMapView}. This must be called on
+     * the JavaFX Application Thread, e.g. on every pulse while the game is running.
+     *
+     * <p>
+     * The fill of the tiles is interpolated from the progress of the {@link FlowTimer} towards the next flow event, so
+     * the water moves continuously instead of a whole tile at a time.
+     * </p>
+     *
+     * @param view {@link LayeredMapView} to render to.
      */
-    public void renderMap(@NotNull Canvas canvas) {
-        map.render(canvas);
+    public void renderFlow(@NotNull LayeredMapView view) {
+        view.renderFlow(core.getMap(), flowTimer.getFlowPhase());
     }
 
     /**
@@ -207,56 +245,58 @@ public class FXGame {
      * @param canvas {@link Canvas} to render to.
      */
     public void renderQueue(@NotNull Canvas canvas) {
-        pipeQueue.render(canvas);
+        Renderer.renderQueue(canvas, core.getPipeQueue().getPipes());
     }
 
     /**
      * @see Game#updateState()
      */
     public void updateState() {
-        // TODO done
-        if (flowTimer.distance()==0){
-            map.fillBeginTile();
-            map.fillTiles(flowTimer.distance());
-        }else if(flowTimer.distance()>0){
-            map.fillTiles(flowTimer.distance());
-        }
+        core.updateState(flowTimer.distance());
     }
 
     /**
      * @see Game#updateState()
      */
     public boolean hasWon() {
-        // TODO done
-        return map.checkPath();
+        return core.hasWon();
     }
 
     /**
      * @see Game#hasLost()
      */
     public boolean hasLost() {
-        // TODO done
-        if (flowTimer.distance()<=0){
-            return false;
-        }else{
-            return map.hasLost();
-        }
+        return core.hasLost(flowTimer.distance());
     }
 
     /**
      * Fills all reachable pipes in the map.
      */
     public void fillAllPipes() {
-        map.fillAll();
+        core.fillAllPipes();
     }
 
-
+    /**
+     * @return The headless game state backing this game.
+     */
+    @NotNull
+    public GameCore getCore() {
+        return core;
+    }
 
     public IntegerProperty getNumOfSteps() {
         return numOfSteps;
     }
 
     public IntegerProperty getNumOfUndo() {
-        return cellStack.getUndoCountProperty();
+        return numOfUndo;
+    }
+
+    /**
+     * Copies the step and undo counters of {@link FXGame#core} into their properties.
+     */
+    private void syncProperties() {
+        numOfSteps.set(core.getNumOfSteps());
+        numOfUndo.set(core.getNumOfUndo());
     }
 }
@@ -1,20 +1,63 @@
 package models;
 
-import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
+import models.timing.Clock;
+import models.timing.GameLoop;
+import models.timing.Ticker;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Timer for handling flow events.
+ *
+ * <p>
+ * Callbacks are handed to a dispatcher instead of being run on the timer thread. User interfaces can supply a
+ * dispatcher which runs the callbacks on their own thread, e.g. {@code Platform::runLater} for JavaFX. All callbacks
+ * of a tick are coalesced into a single dispatch, so that they cannot interleave with other events on that thread.
+ * At most one dispatch is pending at a time. Ticks which elapse while it is pending are added to it, so a busy
+ * dispatcher thread receives fewer, larger dispatches instead of a growing backlog.
+ * </p>
+ * <p>
+ * The timer is driven by a {@link Ticker} on a {@link Clock}. By default this is the {@link GameLoop}, so all instances
+ * share a single thread. Passing a {@link models.timing.ManualClock} instead allows the timer to be stepped in virtual
+ * time.
+ * </p>
  */
 public class FlowTimer {
 
+    /**
+     * Speed multipliers of the timer.
+     */
+    public enum Speed {
+        NORMAL(1), DOUBLE(2), QUADRUPLE(4), TURBO(16);
+
+        private final int multiplier;
+
+        Speed(int multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        /**
+         * @return Number of ticks which elapse per second.
+         */
+        public int getMultiplier() {
+            return multiplier;
+        }
+
+        /**
+         * @return The next faster speed, or {@link Speed#NORMAL} if {@code this} is the fastest speed.
+         */
+        @NotNull
+        public Speed next() {
+            var values = values();
+            return values[(ordinal() + 1) % values.length];
+        }
+    }
+
     /**
      * Default delay before the water starts flowing.
      */
@@ -25,16 +68,34 @@ public class FlowTimer {
      */
     private static int defaultFlowDuration = 5;
 
+    /**
+     * Duration of a tick at {@link Speed#NORMAL} speed.
+     */
+    public static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     /**
      * Backing timer.
      */
     @NotNull
-    private Timer flowTimer = new Timer(true);
+    private final Ticker ticker;
+    @NotNull
+    private Speed speed = Speed.NORMAL;
+
+    /**
+     * Number of ticks before the water starts flowing.
+     */
+    private final int delay;
+
+    /**
+     * Executor which runs the tick callbacks.
+     */
+    @NotNull
+    private final Executor dispatcher;
 
     /**
      * Current value of the flow timer.
      */
-    private final IntegerProperty currentValue = new SimpleIntegerProperty();
+    private int currentValue;
 
     /**
      * List of callbacks to execute when a tick has passed.
@@ -47,6 +108,12 @@ public class FlowTimer {
 
     private int ticksElapsed;
 
+    /**
+     * Number of elapsed ticks which have not been run by the dispatcher yet. A dispatch is pending if this is not 0.
+     */
+    @NotNull
+    private final AtomicInteger pendingTicks = new AtomicInteger();
+
     /**
      * Sets the default delay of all {@link FlowTimer}.
      *
@@ -90,6 +157,15 @@ public class FlowTimer {
         this(defaultDelay);
     }
 
+    /**
+     * Creates an instance with custom delay, which runs callbacks on the timer thread.
+     *
+     * @param initialValue Initial delay value.
+     */
+    FlowTimer(int initialValue) {
+        this(initialValue, Runnable::run);
+    }
+
     /**
      * Creates an instance with custom delay.
      *
@@ -98,29 +174,24 @@ public class FlowTimer {
      * </p>
      *
      * @param initialValue Initial delay value.
+     * @param dispatcher   Executor which runs the tick and flow callbacks.
      */
-    FlowTimer(int initialValue) {
-        // TODO done?
-        currentValue.setValue(-initialValue);
-        registerTickCallback(new Runnable() {
-                    @Override
-                    public void run() {
-                        System.out.println("time passing");
-                        ticksElapsed++;
-                        if(ticksElapsed<defaultDelay){
-                            currentValue.setValue(currentValue.intValue()+1);
-                            System.out.println(distance());
-
-                            return;
-                        }
-                        if(ticksElapsed%defaultFlowDuration == 0){
-                            System.out.println("flow passing");
-                            currentValue.set(currentValue.intValue()+1);
-                            System.out.println(distance());
-
-                            onFlowCallbacks.forEach(Runnable::run);}
-                    }
-        });
+    FlowTimer(int initialValue, @NotNull Executor dispatcher) {
+        this(initialValue, GameLoop.getInstance(), dispatcher);
+    }
+
+    /**
+     * Creates an instance with custom delay, driven by the given clock.
+     *
+     * @param initialValue Initial delay value.
+     * @param clock        Clock which drives the timer.
+     * @param dispatcher   Executor which runs the tick and flow callbacks.
+     */
+    FlowTimer(int initialValue, @NotNull Clock clock, @NotNull Executor dispatcher) {
+        this.dispatcher = dispatcher;
+        this.ticker = new Ticker(clock, TICK_NANOS, this::onTicks);
+        this.delay = initialValue;
+        currentValue = -initialValue;
     }
 
     /**
@@ -150,38 +221,103 @@ public class FlowTimer {
      * </p>
      */
     void start() {
-        // TODO
+        ticker.reset();
         ticksElapsed = 0;
-        flowTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                onTickCallbacks.forEach(Platform::runLater);
-            }
-        },1000,1000);
+        ticker.start();
     }
 
-    void resume(){
-        flowTimer = new Timer(true);
-        flowTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                onTickCallbacks.forEach(Platform::runLater);
-            }
-        },1000,1000);
+    /**
+     * Resumes the timer after {@link FlowTimer#stop()}, continuing from the point in the tick where it was stopped.
+     */
+    void resume() {
+        ticker.start();
     }
 
     /**
      * Stops the timer.
      */
     void stop() {
-        // TODO done
-        flowTimer.cancel();
+        ticker.stop();
+    }
+
+    /**
+     * Sets the speed of the timer. The progress into the current tick is kept.
+     *
+     * @param speed New speed.
+     */
+    void setSpeed(@NotNull Speed speed) {
+        this.speed = speed;
+        ticker.setPeriod(TICK_NANOS / speed.getMultiplier());
+    }
+
+    /**
+     * @return Current speed of the timer.
+     */
+    @NotNull
+    Speed getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Posts the callbacks of all elapsed ticks to the dispatcher as a single task, unless a task is already pending.
+     *
+     * @param ticks Number of elapsed ticks.
+     */
+    private void onTicks(int ticks) {
+        if (pendingTicks.getAndAdd(ticks) != 0) {
+            return;
+        }
+
+        dispatcher.execute(() -> {
+            final int pending = pendingTicks.getAndSet(0);
+            for (int i = 0; i < pending; ++i) {
+                // a callback may have stopped the timer, e.g. when the game ends
+                if (i > 0 && !ticker.isRunning()) {
+                    break;
+                }
+                tick();
+            }
+        });
+    }
+
+    /**
+     * Advances the timer by one tick, and runs the tick and flow callbacks.
+     */
+    private void tick() {
+        ticksElapsed++;
+        if (ticksElapsed < delay) {
+            ++currentValue;
+        } else if (ticksElapsed % defaultFlowDuration == 0) {
+            ++currentValue;
+            onFlowCallbacks.forEach(Runnable::run);
+        }
+
+        onTickCallbacks.forEach(Runnable::run);
+    }
+
+    /**
+     * Retrieves how far the water has progressed towards the next flow event, for animating the flow between events.
+     *
+     * <p>
+     * This must be called on the thread of the dispatcher. Ticks which have elapsed but have not been dispatched yet
+     * hold the phase at the end of the tick, so the phase never runs ahead of the flow callbacks.
+     * </p>
+     *
+     * @return Progress from the previous flow event to the next one, from {@code 0} to {@code 1}. This is {@code 0}
+     * until the delay has elapsed.
+     */
+    double getFlowPhase() {
+        final double tickPhase = pendingTicks.get() != 0 ? 1 : ticker.getPhase();
+        final int nextTick = Math.max(delay, ticksElapsed + 1);
+        final int nextFlow = (nextTick + defaultFlowDuration - 1) / defaultFlowDuration * defaultFlowDuration;
+        final double progress = ticksElapsed + tickPhase - (nextFlow - defaultFlowDuration);
+        return Math.max(0, Math.min(1, progress / defaultFlowDuration));
     }
 
     /**
      * @return Current distance of the water flow. If this value is negative, no pipe should be filled yet.
      */
     int distance() {
-        return currentValue.get();
+        return currentValue;
     }
 }
@@ -0,0 +1,228 @@
+package models;
+
+import io.GameProperties;
+import models.map.Map;
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+import java.util.List;
+
+/**
+ * Headless game state, shared by {@link FXGame} and {@link textgame.game.Game}.
+ *
+ * <p>
+ * This class owns the map, the pipe queue and the undo stack, and implements the rules of the game. It has no
+ * dependency on any user interface or timer; callers decide when the water flows, and pass the current flow distance
+ * into {@link GameCore#updateState(int)} and {@link GameCore#hasLost(int)}.
+ * </p>
+ */
+public class GameCore {
+
+    @NotNull
+    private final Map map;
+    @NotNull
+    private final PipeQueue pipeQueue;
+    @NotNull
+    private final CellStack cellStack = new CellStack();
+
+    private int numOfSteps = 0;
+
+    /**
+     * Creates a game with a randomly generated map.
+     *
+     * @param rows Number of rows including side walls.
+     * @param cols Number of columns including side walls.
+     */
+    public GameCore(int rows, int cols) {
+        map = new Map(rows, cols);
+        pipeQueue = new PipeQueue();
+    }
+
+    /**
+     * Creates a game with a given map.
+     *
+     * @param rows  Number of rows including side walls.
+     * @param cols  Number of columns including side walls.
+     * @param cells Cells of the map.
+     * @param pipes List of pre-generated pipes, if any.
+     */
+    public GameCore(int rows, int cols, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
+        map = new Map(rows, cols, cells);
+        pipeQueue = new PipeQueue(pipes);
+    }
+
+    /**
+     * Creates a game on an existing map.
+     *
+     * @param map   Map of the game.
+     * @param pipes List of pre-generated pipes, if any.
+     */
+    public GameCore(@NotNull Map map, @Nullable List<Pipe> pipes) {
+        this.map = map;
+        pipeQueue = new PipeQueue(pipes);
+    }
+
+    /**
+     * Creates a game from the properties of a game file.
+     *
+     * @param prop Properties of the game.
+     */
+    public GameCore(@NotNull GameProperties prop) {
+        this(prop.rows, prop.cols, prop.cells, prop.pipes);
+    }
+
+    /**
+     * Places the next pipe in the queue at {@code coord}.
+     *
+     * @param coord Coordinate to place the pipe.
+     * @return {@code true} if the pipe is placed.
+     */
+    public boolean placePipe(@NotNull Coordinate coord) {
+        var pipe = pipeQueue.peek();
+        if (!map.tryPlacePipe(coord, pipe)) {
+            return false;
+        }
+
+        pipeQueue.consume();
+        cellStack.push(new FillableCell(coord, pipe));
+        ++numOfSteps;
+        return true;
+    }
+
+    /**
+     * Directly skips the current pipe and use the next pipe.
+     */
+    public void skipPipe() {
+        pipeQueue.consume();
+        ++numOfSteps;
+    }
+
+    /**
+     * Undoes the last placed pipe, unless it has already been filled.
+     *
+     * <p>
+     * Undoing a step counts will increment the number of steps by one.
+     * </p>
+     *
+     * @return {@code false} if there are no steps to undo, otherwise {@code true}.
+     */
+    public boolean undoStep() {
+        var undoCell = cellStack.pop();
+        if (undoCell == null) {
+            return false;
+        }
+        if (map.isFilled(undoCell.coord)) {
+            cellStack.push(undoCell);
+            return false;
+        }
+
+        pipeQueue.undo(undoCell.getPipe().orElseThrow());
+        map.undo(undoCell.coord);
+        ++numOfSteps;
+        return true;
+    }
+
+    /**
+     * Fills the map up to a certain distance.
+     *
+     * @param distance Current distance of the water flow. If this value is negative, no pipe is filled.
+     */
+    public void updateState(int distance) {
+        if (distance == 0) {
+            map.fillBeginTile();
+            map.fillTiles(distance);
+        } else if (distance > 0) {
+            map.fillTiles(distance);
+        }
+    }
+
+    /**
+     * @return {@code true} if the game is won.
+     */
+    public boolean hasWon() {
+        return map.checkPath();
+    }
+
+    /**
+     * @param distance Current distance of the water flow.
+     * @return {@code true} if the game is lost.
+     */
+    public boolean hasLost(int distance) {
+        if (distance <= 0) {
+            return false;
+        } else {
+            return map.hasLost();
+        }
+    }
+
+    /**
+     * Fills all reachable pipes in the map.
+     */
+    public void fillAllPipes() {
+        map.fillAll();
+    }
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return The pipe at (row, col), or {@code null} if there is no pipe.
+     */
+    @Nullable
+    public Pipe getPipeAt(int row, int col) {
+        return map.getPipeAt(row, col);
+    }
+
+    /**
+     * Replaces the pipe at (row, col) without affecting the pipe queue or the undo stack.
+     *
+     * @param row  Row of the cell.
+     * @param col  Column of the cell.
+     * @param pipe New pipe to place.
+     */
+    public void replacePipe(int row, int col, @NotNull Pipe pipe) {
+        map.remove(row, col);
+        map.tryPlacePipe(new Coordinate(row, col), pipe);
+    }
+
+    /**
+     * @return The map of this game.
+     */
+    @NotNull
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * @return The pipe queue of this game.
+     */
+    @NotNull
+    public PipeQueue getPipeQueue() {
+        return pipeQueue;
+    }
+
+    /**
+     * @return The undo stack of this game.
+     */
+    @NotNull
+    public CellStack getCellStack() {
+        return cellStack;
+    }
+
+    /**
+     * @return Number of steps the player has taken.
+     */
+    public int getNumOfSteps() {
+        return numOfSteps;
+    }
+
+    /**
+     * @return Number of steps the player has undone.
+     */
+    public int getNumOfUndo() {
+        return cellStack.getUndoCount();
+    }
+}
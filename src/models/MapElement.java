@@ -1,6 +1,5 @@
 package models;
 
-import controllers.Renderer;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -14,10 +13,10 @@ public interface MapElement {
     char toSingleChar();
 
     /**
-     * @return An {@link Renderer.CellImage} instance representing the image representation of the element.
+     * @return An {@link CellImage} instance representing the image representation of the element.
      */
     @NotNull
-    Renderer.CellImage getImageRep();
+    CellImage getImageRep();
 
     /**
      * @return Serialized {@link String} representation of the element.
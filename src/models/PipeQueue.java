@@ -1,11 +1,10 @@
 package models;
 
-import controllers.Renderer;
-import javafx.scene.canvas.Canvas;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -109,13 +108,11 @@ public class PipeQueue {
     }
 
     /**
-     * Renders this queue to a canvas.
-     *
-     * @param canvas Canvas to render to.
+     * @return An unmodifiable view of the pipes in the queue, starting from the next pipe.
      */
-    public void render(@NotNull Canvas canvas) {
-        // TODO done
-        Renderer.renderQueue(canvas, this.pipeQueue);
+    @NotNull
+    public List<Pipe> getPipes() {
+        return Collections.unmodifiableList(pipeQueue);
     }
 
     /**
@@ -0,0 +1,138 @@
+package models;
+
+import io.GameProperties;
+import models.timing.ManualClock;
+import org.jetbrains.annotations.NotNull;
+import util.Coordinate;
+
+/**
+ * Headless game driven by a {@link ManualClock}, for playtesting levels in virtual time.
+ *
+ * <p>
+ * The flow timer of this game only advances when {@link Simulation#advance(int)} is called, and all callbacks run on
+ * the calling thread. A whole game can therefore be played as fast as the CPU allows.
+ * </p>
+ */
+public class Simulation {
+
+    /**
+     * State of a simulated game.
+     */
+    public enum Result {
+        RUNNING, WON, LOST
+    }
+
+    @NotNull
+    private final ManualClock clock = new ManualClock();
+    @NotNull
+    private final GameCore core;
+    @NotNull
+    private final FlowTimer flowTimer;
+
+    @NotNull
+    private Result result = Result.RUNNING;
+    private int ticksElapsed = 0;
+
+    /**
+     * Creates a simulation of a game file. The flow timer is started immediately.
+     *
+     * @param prop Properties of the game.
+     */
+    public Simulation(@NotNull GameProperties prop) {
+        this(new GameCore(prop), prop.delay);
+    }
+
+    /**
+     * Creates a simulation of a game. The flow timer is started immediately.
+     *
+     * @param core  Game to simulate.
+     * @param delay Number of ticks before the water starts flowing.
+     */
+    public Simulation(@NotNull GameCore core, int delay) {
+        this.core = core;
+        this.flowTimer = new FlowTimer(delay, clock, Runnable::run);
+
+        flowTimer.registerTickCallback(() -> ++ticksElapsed);
+        flowTimer.registerFlowCallback(() -> {
+            core.updateState(flowTimer.distance());
+            if (core.hasLost(flowTimer.distance())) {
+                finish(Result.LOST);
+            }
+        });
+        flowTimer.start();
+    }
+
+    /**
+     * Places the next pipe in the queue, and ends the game if the source is now connected to the sink.
+     *
+     * @param row Row to place the pipe.
+     * @param col Column to place the pipe.
+     * @return {@code true} if the pipe is placed.
+     * @throws IllegalStateException if the game has ended.
+     */
+    public boolean placePipe(int row, int col) {
+        checkRunning();
+
+        final var placed = core.placePipe(new Coordinate(row, col));
+        if (placed && core.hasWon()) {
+            core.fillAllPipes();
+            finish(Result.WON);
+        }
+        return placed;
+    }
+
+    /**
+     * Advances the game by a number of ticks, or until the game ends.
+     *
+     * @param ticks Number of ticks to advance by.
+     * @return State of the game after advancing.
+     */
+    @NotNull
+    public Result advance(int ticks) {
+        for (int i = 0; i < ticks && result == Result.RUNNING; ++i) {
+            clock.advance(FlowTimer.TICK_NANOS);
+        }
+        return result;
+    }
+
+    /**
+     * @return The headless game state being simulated.
+     */
+    @NotNull
+    public GameCore getCore() {
+        return core;
+    }
+
+    /**
+     * @return Current state of the game.
+     */
+    @NotNull
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return Number of ticks which have elapsed.
+     */
+    public int getTicksElapsed() {
+        return ticksElapsed;
+    }
+
+    /**
+     * @return Current distance of the water flow. If this value is negative, no pipe is filled yet.
+     */
+    public int getDistance() {
+        return flowTimer.distance();
+    }
+
+    private void finish(@NotNull Result result) {
+        this.result = result;
+        flowTimer.stop();
+    }
+
+    private void checkRunning() {
+        if (result != Result.RUNNING) {
+            throw new IllegalStateException("The game has already ended");
+        }
+    }
+}
@@ -7,11 +7,49 @@ import org.jetbrains.annotations.NonNls;
  */
 public class InvalidMapException extends RuntimeException {
 
+    /**
+     * Line of the map file where the error occurred, or {@code -1} if unknown.
+     */
+    private final int line;
+    /**
+     * Column of the map file where the error occurred, or {@code -1} if unknown.
+     */
+    private final int column;
+
     public InvalidMapException(@NonNls final String message) {
         super(message);
+        this.line = -1;
+        this.column = -1;
+    }
+
+    /**
+     * @param message Description of the error.
+     * @param line    Line of the map file where the error occurred, 1-based.
+     * @param column  Column of the map file where the error occurred, 1-based.
+     */
+    public InvalidMapException(@NonNls final String message, int line, int column) {
+        super(message + " (line " + line + ", column " + column + ")");
+        this.line = line;
+        this.column = column;
     }
 
     public InvalidMapException(Throwable cause) {
         super(cause);
+        this.line = -1;
+        this.column = -1;
+    }
+
+    /**
+     * @return Line of the map file where the error occurred, or {@code -1} if unknown.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return Column of the map file where the error occurred, or {@code -1} if unknown.
+     */
+    public int getColumn() {
+        return column;
     }
 }
@@ -0,0 +1,176 @@
+package models.map;
+
+import models.CellImage;
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Direction;
+
+/**
+ * Storage backend for the cells of a {@link Map}.
+ *
+ * <p>
+ * The game logic only queries the grid through the primitive accessors in this interface. {@link Cell} objects are
+ * only required by the renderer and the level editor, and are retrieved using {@link CellGrid#getCell(int, int)}.
+ * </p>
+ */
+public interface CellGrid {
+
+    /**
+     * Operation which accepts the position of a cell.
+     */
+    @FunctionalInterface
+    interface CellConsumer {
+        /**
+         * @param row Row of the cell.
+         * @param col Column of the cell.
+         */
+        void accept(int row, int col);
+    }
+
+    /**
+     * Kind of a {@link FillableCell}.
+     */
+    int KIND_FILLABLE = 0;
+    /**
+     * Kind of a {@link Wall}.
+     */
+    int KIND_WALL = 1;
+    /**
+     * Kind of a {@link TerminationCell} of type {@link TerminationCell.Type#SOURCE}.
+     */
+    int KIND_SOURCE = 2;
+    /**
+     * Kind of a {@link TerminationCell} of type {@link TerminationCell.Type#SINK}.
+     */
+    int KIND_SINK = 3;
+
+    /**
+     * @return Number of rows in this grid.
+     */
+    int getRows();
+
+    /**
+     * @return Number of columns in this grid.
+     */
+    int getCols();
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return One of the {@code KIND_*} constants representing the kind of the cell.
+     */
+    int getKind(int row, int col);
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Shape of the pipe in the cell, or {@code null} if the cell does not contain a pipe.
+     */
+    @Nullable
+    Pipe.Shape getShape(int row, int col);
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Direction of the termination cell, or {@code null} if the cell is not a termination cell.
+     */
+    @Nullable
+    Direction getTerminationDirection(int row, int col);
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Whether the pipe or termination cell is filled with water.
+     */
+    boolean isFilled(int row, int col);
+
+    /**
+     * Marks the pipe or termination cell as filled.
+     *
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     */
+    void setFilled(int row, int col);
+
+    /**
+     * Sets the pipe of a {@link FillableCell}.
+     *
+     * @param row  Row of the cell.
+     * @param col  Column of the cell.
+     * @param pipe Pipe to place, or {@code null} to empty the cell.
+     * @throws IllegalArgumentException if the cell is not a {@link FillableCell}.
+     */
+    void setPipe(int row, int col, @Nullable Pipe pipe);
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return The pipe in the cell, or {@code null} if the cell does not contain a pipe.
+     */
+    @Nullable
+    Pipe getPipe(int row, int col);
+
+    /**
+     * Retrieves the cell at the given position.
+     *
+     * <p>
+     * Depending on the implementation, the returned cell may be a snapshot view of the underlying storage. Changes to
+     * the state of a view are not written back into the grid.
+     * </p>
+     *
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Cell at the given position.
+     */
+    @NotNull
+    Cell getCell(int row, int col);
+
+    /**
+     * Retrieves the image representation of a cell. Unlike {@link CellGrid#getCell(int, int)}, implementations should
+     * avoid creating a {@link Cell}, since this is called for every drawn tile.
+     *
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Shared image representation of the cell.
+     */
+    @NotNull
+    default CellImage getImageRep(int row, int col) {
+        return getCell(row, col).getImageRep();
+    }
+
+    /**
+     * Replaces the cell at {@link Cell#coord}.
+     *
+     * @param cell New cell.
+     */
+    void setCell(@NotNull Cell cell);
+
+    /**
+     * @param row Row to check.
+     * @param col Column to check.
+     * @return Whether the position lies within this grid.
+     */
+    default boolean isInBounds(int row, int col) {
+        return row >= 0 && row < getRows() && col >= 0 && col < getCols();
+    }
+
+    /**
+     * Performs an action on every cell which contains a pipe.
+     *
+     * @param action Action to perform.
+     */
+    default void forEachPipe(@NotNull CellConsumer action) {
+        for (int r = 0; r < getRows(); ++r) {
+            for (int c = 0; c < getCols(); ++c) {
+                if (getShape(r, c) != null) {
+                    action.accept(r, c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package models.map;
+
+import org.jetbrains.annotations.Nullable;
+import util.Direction;
+
+/**
+ * Read-only source of the initial cells of a map, which a {@link LazyCellGrid} decodes from on demand.
+ *
+ * <p>
+ * A source only describes the layout of a level, so it does not contain any pipes or water.
+ * </p>
+ */
+public interface CellSource {
+
+    /**
+     * @return Number of rows in the level.
+     */
+    int getRows();
+
+    /**
+     * @return Number of columns in the level.
+     */
+    int getCols();
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return One of the {@code KIND_*} constants of {@link CellGrid} representing the kind of the cell.
+     */
+    int getKind(int row, int col);
+
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return Direction of the termination cell, or {@code null} if the cell is not a termination cell.
+     */
+    @Nullable
+    Direction getTerminationDirection(int row, int col);
+}
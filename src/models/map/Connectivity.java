@@ -0,0 +1,210 @@
+package models.map;
+
+import org.jetbrains.annotations.NotNull;
+import util.Coordinate;
+import util.Direction;
+import util.IntIntHashMap;
+import util.RollbackUnionFind;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally tracks whether the source and sink of a {@link Map} are joined by connected pipes.
+ *
+ * <p>
+ * Two neighbouring cells are joined when water can flow both ways between them. Every placed pipe records a checkpoint
+ * of the underlying {@link RollbackUnionFind}, so that removing the most recently placed pipe only reverts the unions
+ * made by that pipe. Removing an older pipe reverts to its checkpoint and replays the pipes placed after it.
+ * </p>
+ * <p>
+ * Only the source, the sink and cells which have held a pipe are added to the union-find, so the memory used is bounded
+ * by the number of placed pipes rather than by the size of the map.
+ * </p>
+ * <p>
+ * Directional shapes are only joined through their two-way openings, so {@link Map#checkPath()} does not rely on this
+ * class when such shapes are registered.
+ * </p>
+ */
+class Connectivity {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @NotNull
+    private final CellGrid grid;
+    private final int cols;
+
+    private final int sourceIndex;
+    @NotNull
+    private final Direction sourceDir;
+    private final int sinkIndex;
+    @NotNull
+    private final Direction sinkDir;
+
+    @NotNull
+    private final RollbackUnionFind unionFind = new RollbackUnionFind(0);
+    /**
+     * Element in {@link Connectivity#unionFind} of each cell index.
+     */
+    @NotNull
+    private final IntIntHashMap elements = new IntIntHashMap();
+    private final int sourceElement;
+    private final int sinkElement;
+
+    /**
+     * Indices of the cells with pipes, in the order which they were placed.
+     */
+    @NotNull
+    private int[] placedCells = new int[16];
+    /**
+     * Checkpoint of {@link Connectivity#unionFind} before the pipe at the same position was placed.
+     */
+    @NotNull
+    private int[] checkpoints = new int[16];
+    private int placedCount = 0;
+    /**
+     * Position in {@link Connectivity#placedCells} of each placed cell index.
+     */
+    @NotNull
+    private final IntIntHashMap placedPositions = new IntIntHashMap();
+
+    private boolean connected = false;
+
+    /**
+     * Creates an instance and registers all pipes already present in the grid.
+     *
+     * @param grid      Grid to track.
+     * @param source    Coordinate of the source cell.
+     * @param sourceDir Direction which the source cell is pointing to.
+     * @param sink      Coordinate of the sink cell.
+     * @param sinkDir   Direction which the sink cell is pointing to.
+     */
+    Connectivity(@NotNull CellGrid grid,
+                 @NotNull Coordinate source, @NotNull Direction sourceDir,
+                 @NotNull Coordinate sink, @NotNull Direction sinkDir) {
+        this.grid = grid;
+        this.cols = grid.getCols();
+        this.sourceIndex = source.row * cols + source.col;
+        this.sourceDir = sourceDir;
+        this.sinkIndex = sink.row * cols + sink.col;
+        this.sinkDir = sinkDir;
+        this.sourceElement = elementOf(sourceIndex);
+        this.sinkElement = elementOf(sinkIndex);
+
+        grid.forEachPipe(this::onPlaced);
+    }
+
+    /**
+     * @return Whether a path of connected pipes exists between the source and the sink.
+     */
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Registers a pipe which has been placed into the grid.
+     *
+     * @param row Row of the pipe.
+     * @param col Column of the pipe.
+     */
+    void onPlaced(int row, int col) {
+        if (placedCount == placedCells.length) {
+            placedCells = Arrays.copyOf(placedCells, placedCount * 2);
+            checkpoints = Arrays.copyOf(checkpoints, placedCount * 2);
+        }
+
+        placedCells[placedCount] = row * cols + col;
+        checkpoints[placedCount] = unionFind.checkpoint();
+        placedPositions.put(row * cols + col, placedCount);
+        ++placedCount;
+
+        link(row, col);
+        updateConnected();
+    }
+
+    /**
+     * Unregisters a pipe which has been removed from the grid.
+     *
+     * @param row Row of the removed pipe.
+     * @param col Column of the removed pipe.
+     */
+    void onRemoved(int row, int col) {
+        final int index = row * cols + col;
+
+        final int pos = placedPositions.get(index, -1);
+        if (pos < 0) {
+            return;
+        }
+
+        final var replay = Arrays.copyOfRange(placedCells, pos + 1, placedCount);
+        for (int i = pos; i < placedCount; ++i) {
+            placedPositions.remove(placedCells[i]);
+        }
+        unionFind.rollback(checkpoints[pos]);
+        placedCount = pos;
+
+        for (int cell : replay) {
+            onPlaced(cell / cols, cell % cols);
+        }
+        updateConnected();
+    }
+
+    /**
+     * Joins the pipe at (row, col) with all neighbours which connect back to it.
+     *
+     * @param row Row of the pipe.
+     * @param col Column of the pipe.
+     */
+    private void link(int row, int col) {
+        final var shape = grid.getShape(row, col);
+        if (shape == null) {
+            return;
+        }
+
+        final int index = row * cols + col;
+        final int mask = shape.getConnectionMask();
+        for (Direction d : DIRECTIONS) {
+            if ((mask & d.getMask()) == 0) {
+                continue;
+            }
+
+            int nRow = row + d.getRowOffset();
+            int nCol = col + d.getColOffset();
+            if (!grid.isInBounds(nRow, nCol)) {
+                continue;
+            }
+
+            int nIndex = nRow * cols + nCol;
+            if (nIndex == sourceIndex) {
+                if (d == sourceDir.getOpposite()) {
+                    unionFind.union(elementOf(index), elementOf(nIndex));
+                }
+            } else if (nIndex == sinkIndex) {
+                if (d == sinkDir) {
+                    unionFind.union(elementOf(index), elementOf(nIndex));
+                }
+            } else if (grid.getKind(nRow, nCol) == CellGrid.KIND_FILLABLE) {
+                var nShape = grid.getShape(nRow, nCol);
+                if (nShape != null && (nShape.getConnectionMask() & d.getOpposite().getMask()) != 0) {
+                    unionFind.union(elementOf(index), elementOf(nIndex));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param index Index of a cell.
+     * @return The element of the cell in {@link Connectivity#unionFind}, which is added if it does not exist.
+     */
+    private int elementOf(int index) {
+        int element = elements.get(index, -1);
+        if (element < 0) {
+            element = unionFind.add();
+            elements.put(index, element);
+        }
+        return element;
+    }
+
+    private void updateConnected() {
+        connected = unionFind.find(sourceElement) == unionFind.find(sinkElement);
+    }
+}
@@ -0,0 +1,211 @@
+package models.map;
+
+import models.CellImage;
+import models.map.cells.Cell;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+import util.IntList;
+
+/**
+ * {@link CellGrid} which reads the layout of a level from a {@link CellSource}, and only stores the cells which have
+ * been modified.
+ *
+ * <p>
+ * The grid is divided into chunks of {@link LazyCellGrid#CHUNK_SIZE} x {@link LazyCellGrid#CHUNK_SIZE} cells. A chunk
+ * is decoded into the encoding of {@link PackedCellGrid} the first time a cell in it is modified, i.e. when a pipe is
+ * placed or a cell is filled. Cells in chunks which have not been decoded are read directly from the source, so the
+ * memory used by the grid is bounded by the area the player and the water have reached, rather than by the size of
+ * the level.
+ * </p>
+ */
+public class LazyCellGrid implements CellGrid {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    @NotNull
+    private final CellSource source;
+    private final int rows;
+    private final int cols;
+    private final int chunkCols;
+    /**
+     * Decoded chunks, or {@code null} for chunks which are still read from {@link LazyCellGrid#source}.
+     */
+    @NotNull
+    private final byte[][] chunks;
+    /**
+     * Indices of decoded chunks, in the order they were decoded.
+     */
+    @NotNull
+    private final IntList decodedChunks = new IntList();
+
+    /**
+     * @param source Source of the initial cells of the grid.
+     */
+    public LazyCellGrid(@NotNull CellSource source) {
+        this.source = source;
+        this.rows = source.getRows();
+        this.cols = source.getCols();
+        this.chunkCols = (cols + CHUNK_MASK) >>> CHUNK_BITS;
+        this.chunks = new byte[((rows + CHUNK_MASK) >>> CHUNK_BITS) * chunkCols][];
+    }
+
+    /**
+     * @return Number of chunks which have been decoded.
+     */
+    public int getDecodedChunkCount() {
+        return decodedChunks.size();
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getKind(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        return chunk != null ? PackedCellGrid.kindOf(chunk[offset(row, col)]) : source.getKind(row, col);
+    }
+
+    @Nullable
+    @Override
+    public Pipe.Shape getShape(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        return chunk != null ? PackedCellGrid.shapeOf(chunk[offset(row, col)]) : null;
+    }
+
+    @Nullable
+    @Override
+    public Direction getTerminationDirection(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        return chunk != null
+                ? PackedCellGrid.directionOf(chunk[offset(row, col)])
+                : source.getTerminationDirection(row, col);
+    }
+
+    @Override
+    public boolean isFilled(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        return chunk != null && PackedCellGrid.isFilled(chunk[offset(row, col)]);
+    }
+
+    @Override
+    public void setFilled(int row, int col) {
+        var chunk = getOrDecodeChunk(row, col);
+        int offset = offset(row, col);
+        chunk[offset] = PackedCellGrid.withFilled(chunk[offset]);
+    }
+
+    @Override
+    public void setPipe(int row, int col, @Nullable Pipe pipe) {
+        if (getKind(row, col) != KIND_FILLABLE) {
+            throw new IllegalArgumentException("Cannot place pipes on non-FillableCell types!");
+        }
+
+        getOrDecodeChunk(row, col)[offset(row, col)] = PackedCellGrid.pack(pipe);
+    }
+
+    @Nullable
+    @Override
+    public Pipe getPipe(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        return chunk != null ? PackedCellGrid.toPipe(chunk[offset(row, col)]) : null;
+    }
+
+    @NotNull
+    @Override
+    public Cell getCell(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        var value = chunk != null ? chunk[offset(row, col)] : decode(row, col);
+        return PackedCellGrid.toCell(value, new Coordinate(row, col));
+    }
+
+    @NotNull
+    @Override
+    public CellImage getImageRep(int row, int col) {
+        var chunk = chunks[chunkIndex(row, col)];
+        if (chunk == null) {
+            return PackedCellGrid.imageRepOf(decode(row, col));
+        }
+        return PackedCellGrid.imageRepOf(chunk[offset(row, col)]);
+    }
+
+    @Override
+    public void setCell(@NotNull Cell cell) {
+        getOrDecodeChunk(cell.coord.row, cell.coord.col)[offset(cell.coord.row, cell.coord.col)] =
+                PackedCellGrid.pack(cell);
+    }
+
+    /**
+     * Only visits decoded chunks, as the source never contains any pipes.
+     */
+    @Override
+    public void forEachPipe(@NotNull CellConsumer action) {
+        for (int i = 0; i < decodedChunks.size(); ++i) {
+            final int index = decodedChunks.get(i);
+            final var chunk = chunks[index];
+            final int baseRow = (index / chunkCols) << CHUNK_BITS;
+            final int baseCol = (index % chunkCols) << CHUNK_BITS;
+
+            for (int offset = 0; offset < chunk.length; ++offset) {
+                if (PackedCellGrid.shapeOf(chunk[offset]) != null) {
+                    action.accept(baseRow + (offset >>> CHUNK_BITS), baseCol + (offset & CHUNK_MASK));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The chunk containing the cell, which is decoded from the source if it has not been decoded.
+     */
+    @NotNull
+    private byte[] getOrDecodeChunk(int row, int col) {
+        final int index = chunkIndex(row, col);
+        var chunk = chunks[index];
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE * CHUNK_SIZE];
+            final int baseRow = row & ~CHUNK_MASK;
+            final int baseCol = col & ~CHUNK_MASK;
+            final int endRow = Math.min(baseRow + CHUNK_SIZE, rows);
+            final int endCol = Math.min(baseCol + CHUNK_SIZE, cols);
+            for (int r = baseRow; r < endRow; ++r) {
+                for (int c = baseCol; c < endCol; ++c) {
+                    chunk[offset(r, c)] = decode(r, c);
+                }
+            }
+
+            chunks[index] = chunk;
+            decodedChunks.add(index);
+        }
+        return chunk;
+    }
+
+    /**
+     * @return Packed representation of the cell in the source.
+     */
+    private byte decode(int row, int col) {
+        final int kind = source.getKind(row, col);
+        if (kind == KIND_SOURCE || kind == KIND_SINK) {
+            return PackedCellGrid.packTermination(kind, source.getTerminationDirection(row, col), false);
+        }
+        return kind == KIND_WALL ? KIND_WALL : PackedCellGrid.pack((Pipe) null);
+    }
+
+    private int chunkIndex(int row, int col) {
+        return (row >>> CHUNK_BITS) * chunkCols + (col >>> CHUNK_BITS);
+    }
+
+    private static int offset(int row, int col) {
+        return (row & CHUNK_MASK) << CHUNK_BITS | (col & CHUNK_MASK);
+    }
+}
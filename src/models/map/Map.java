@@ -1,17 +1,18 @@
 package models.map;
 
-import controllers.Renderer;
 import io.Deserializer;
-import javafx.application.Platform;
-import javafx.scene.canvas.Canvas;
 import models.map.cells.Cell;
 import models.map.cells.FillableCell;
 import models.map.cells.TerminationCell;
-import models.map.cells.Wall;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.BitGrid;
 import util.Coordinate;
 import util.Direction;
+import util.DirtyCells;
+import util.IntList;
+import util.PackedCoordinate;
 import util.StringUtils;
 
 import java.util.*;
@@ -21,19 +22,96 @@ import java.util.*;
  */
 public class Map {
 
+    /**
+     * Storage backend used for maps whose cells are not supplied as a {@link CellGrid}.
+     */
+    public enum StorageMode {
+        /**
+         * Stores each cell as a {@link Cell} object.
+         */
+        OBJECTS,
+        /**
+         * Stores each cell as a single byte. See {@link PackedCellGrid}.
+         */
+        PACKED
+    }
+
+    /**
+     * Operation which accepts a tile which the water flows into.
+     */
+    @FunctionalInterface
+    public interface FlowTargetConsumer {
+        /**
+         * @param row       Row of the tile.
+         * @param col       Column of the tile.
+         * @param direction Direction which the water flows in when entering the tile.
+         */
+        void accept(int row, int col, @NotNull Direction direction);
+    }
+
+    /**
+     * Default storage backend for new maps.
+     */
+    @NotNull
+    private static StorageMode defaultStorageMode = StorageMode.OBJECTS;
+
+    /**
+     * Number of cells from which maps are always stored as {@link StorageMode#PACKED}, regardless of the default
+     * storage mode.
+     */
+    public static final long PACKED_THRESHOLD = 256L * 256;
+
     private final int rows;
     private final int cols;
     @NotNull
-    private final Cell[][] cells;
+    private final CellGrid grid;
 
-    private TerminationCell sourceCell;
-    private TerminationCell sinkCell;
+    private Coordinate sourceCoord;
+    private Direction sourceDir;
+    private Coordinate sinkCoord;
+    private Direction sinkDir;
+
+    /**
+     * Tracks whether the source and sink are connected.
+     */
+    @NotNull
+    private final Connectivity connectivity;
 
+    /**
+     * Tiles which have been filled by the flow.
+     */
+    @NotNull
+    private final BitGrid filledTiles;
+    /**
+     * {@link PackedCoordinate} of filled tiles which may still spill water into a neighbour. Only these tiles are
+     * visited in a flow step.
+     */
     @NotNull
-    private final Set<Coordinate> filledTiles = new HashSet<>();
+    private IntList frontier = new IntList();
+    /**
+     * Buffer which the next {@link Map#frontier} is built in.
+     */
+    @NotNull
+    private IntList nextFrontier = new IntList();
+    /**
+     * Buffer of tiles filled in the current flow step.
+     */
+    @NotNull
+    private final IntList newlyFilled = new IntList();
     private int prevFilledTiles = 0;
     private Integer prevFilledDistance;
 
+    /**
+     * Cells whose pipe has been placed or removed since the map was last rendered.
+     */
+    @NotNull
+    private final DirtyCells dirtyPipes = new DirtyCells();
+    /**
+     * Cells which have been filled or emptied since the map was last rendered.
+     */
+    @NotNull
+    private final DirtyCells dirtyWater = new DirtyCells();
+
     /**
      * Creates a map with size of rows x cols.
      *
@@ -45,32 +123,25 @@ public class Map {
      * @param cols Number of columns.
      */
     public Map(int rows, int cols) {
-        cells = new Cell[rows][cols];
-
-        for (int r = 0; r < rows; ++r) {
-            for (int c = 0; c < cols; ++c) {
-                var coord = new Coordinate(r, c);
-
-                if (r == 0 || c == 0) {
-                    cells[r][c] = new Wall(coord);
-                } else if (r == rows - 1 || c == cols - 1) {
-                    cells[r][c] = new Wall(coord);
-                } else {
-                    cells[r][c] = new FillableCell(coord);
-                }
-            }
-        }
+        grid = getStorageMode(rows, cols) == StorageMode.PACKED
+                ? PackedCellGrid.createEmpty(rows, cols)
+                : ObjectCellGrid.createEmpty(rows, cols);
 
         this.rows = rows;
         this.cols = cols;
+        this.filledTiles = new BitGrid(rows, cols);
 
         TerminationCell.CreateInfo startCellInfo = generateStartCellInfo();
-        sourceCell = new TerminationCell(startCellInfo.coord, startCellInfo.dir, TerminationCell.Type.SOURCE);
-        cells[startCellInfo.coord.row][startCellInfo.coord.col] = sourceCell;
+        sourceCoord = startCellInfo.coord;
+        sourceDir = startCellInfo.dir;
+        grid.setCell(new TerminationCell(startCellInfo.coord, startCellInfo.dir, TerminationCell.Type.SOURCE));
 
         TerminationCell.CreateInfo sinkCellInfo = generateEndCellInfo();
-        sinkCell = new TerminationCell(sinkCellInfo.coord, sinkCellInfo.dir, TerminationCell.Type.SINK);
-        cells[sinkCellInfo.coord.row][sinkCellInfo.coord.col] = sinkCell;
+        sinkCoord = sinkCellInfo.coord;
+        sinkDir = sinkCellInfo.dir;
+        grid.setCell(new TerminationCell(sinkCellInfo.coord, sinkCellInfo.dir, TerminationCell.Type.SINK));
+
+        connectivity = new Connectivity(grid, sourceCoord, sourceDir, sinkCoord, sinkDir);
     }
 
     /**
@@ -85,37 +156,116 @@ public class Map {
      * @param cells Cells to fill the map.
      */
     public Map(int rows, int cols, @NotNull Cell[][] cells) {
-        this.cells = cells;
+        this(getStorageMode(rows, cols) == StorageMode.PACKED
+                ? PackedCellGrid.fromCells(rows, cols, cells)
+                : new ObjectCellGrid(rows, cols, cells));
+    }
 
-        this.rows = rows;
-        this.cols = cols;
+    /**
+     * Creates a map backed by the given grid.
+     *
+     * @param grid Grid containing the cells of the map.
+     */
+    public Map(@NotNull CellGrid grid) {
+        this.grid = grid;
+
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.filledTiles = new BitGrid(rows, cols);
 
         for (int r = 0; r < rows; ++r) {
             for (int c = 0; c < cols; ++c) {
-                var cell = cells[r][c];
-
-                if (cell instanceof TerminationCell) {
-                    var tCell = (TerminationCell) cell;
-                    if (tCell.type == TerminationCell.Type.SOURCE) {
-                        if (sourceCell != null) {
-                            throw new IllegalArgumentException();
-                        } else {
-                            sourceCell = tCell;
-                        }
-                    } else if (tCell.type == TerminationCell.Type.SINK) {
-                        if (sinkCell != null) {
-                            throw new IllegalArgumentException();
-                        } else {
-                            sinkCell = tCell;
-                        }
+                var kind = grid.getKind(r, c);
+
+                if (kind == CellGrid.KIND_SOURCE) {
+                    if (sourceCoord != null) {
+                        throw new IllegalArgumentException();
+                    } else {
+                        sourceCoord = new Coordinate(r, c);
+                        sourceDir = grid.getTerminationDirection(r, c);
+                    }
+                } else if (kind == CellGrid.KIND_SINK) {
+                    if (sinkCoord != null) {
+                        throw new IllegalArgumentException();
+                    } else {
+                        sinkCoord = new Coordinate(r, c);
+                        sinkDir = grid.getTerminationDirection(r, c);
                     }
                 }
             }
         }
 
-        if (sourceCell == null || sinkCell == null) {
+        if (sourceCoord == null || sinkCoord == null) {
             throw new IllegalArgumentException();
         }
+
+        connectivity = new Connectivity(grid, sourceCoord, sourceDir, sinkCoord, sinkDir);
+    }
+
+    /**
+     * Creates a map backed by the given grid, where the positions of the source and sink are already known.
+     *
+     * <p>
+     * Unlike {@link Map#Map(CellGrid)}, the grid is not scanned, so creating the map takes constant time regardless of
+     * its size.
+     * </p>
+     *
+     * @param grid   Grid containing the cells of the map.
+     * @param source Position of the source cell.
+     * @param sink   Position of the sink cell.
+     * @throws IllegalArgumentException if the cells at {@code source} and {@code sink} are not a source and a sink.
+     */
+    public Map(@NotNull CellGrid grid, @NotNull Coordinate source, @NotNull Coordinate sink) {
+        this.grid = grid;
+
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.filledTiles = new BitGrid(rows, cols);
+
+        if (!grid.isInBounds(source.row, source.col) || grid.getKind(source.row, source.col) != CellGrid.KIND_SOURCE) {
+            throw new IllegalArgumentException("No source at " + source);
+        }
+        if (!grid.isInBounds(sink.row, sink.col) || grid.getKind(sink.row, sink.col) != CellGrid.KIND_SINK) {
+            throw new IllegalArgumentException("No sink at " + sink);
+        }
+
+        sourceCoord = source;
+        sourceDir = grid.getTerminationDirection(source.row, source.col);
+        sinkCoord = sink;
+        sinkDir = grid.getTerminationDirection(sink.row, sink.col);
+
+        connectivity = new Connectivity(grid, sourceCoord, sourceDir, sinkCoord, sinkDir);
+    }
+
+    /**
+     * Sets the storage backend of newly created maps with fewer than {@link Map#PACKED_THRESHOLD} cells.
+     *
+     * @param mode New default storage mode.
+     */
+    public static void setDefaultStorageMode(@NotNull StorageMode mode) {
+        defaultStorageMode = mode;
+    }
+
+    /**
+     * @return Current storage backend of newly created maps.
+     */
+    @NotNull
+    public static StorageMode getDefaultStorageMode() {
+        return defaultStorageMode;
+    }
+
+    /**
+     * @param rows Number of rows of a map.
+     * @param cols Number of columns of a map.
+     * @return Storage backend of a new map with the given size, which is {@link StorageMode#PACKED} for maps with at
+     * least {@link Map#PACKED_THRESHOLD} cells, and the default storage mode otherwise.
+     */
+    @NotNull
+    public static StorageMode getStorageMode(int rows, int cols) {
+        if ((long) rows * cols >= PACKED_THRESHOLD) {
+            return StorageMode.PACKED;
+        }
+        return defaultStorageMode;
     }
 
     /**
@@ -172,16 +322,16 @@ public class Map {
             return false;
         }
 
-        if (!(cells[row][col] instanceof FillableCell)) {
+        if (grid.getKind(row, col) != CellGrid.KIND_FILLABLE) {
             return false;
         }
-
-        var cell = (FillableCell) (cells[row][col]);
-        if (cell.getPipe().isPresent()) {
+        if (grid.getShape(row, col) != null) {
             return false;
         }
 
-        cells[row][col] = new FillableCell(new Coordinate(row, col), p);
+        grid.setPipe(row, col, p);
+        dirtyPipes.mark(row, col);
+        connectivity.onPlaced(row, col);
         return true;
     }
 
@@ -269,7 +419,7 @@ public class Map {
             }
 
             var adjacentCell = coord.add(direction.getOpposite().getOffset());
-            if (adjacentCell.equals(sourceCell.coord)) {
+            if (adjacentCell.equals(sourceCoord)) {
                 continue;
             }
 
@@ -303,7 +453,9 @@ public class Map {
                 System.out.print(StringUtils.createPadding(padLength, ' '));
             }
 
-            Arrays.stream(cells[i]).forEachOrdered(elem -> System.out.print(elem.toSingleChar()));
+            for (int j = 0; j < cols; ++j) {
+                System.out.print(grid.getCell(i, j).toSingleChar());
+            }
 
             if (i != 0 && i != rows - 1) {
                 System.out.print(i);
@@ -316,12 +468,27 @@ public class Map {
     }
 
     /**
-     * Renders the map onto a {@link Canvas}.
-     *
-     * @param canvas Canvas to render to.
+     * @return The grid backing this map.
      */
-    public void render(@NotNull Canvas canvas) {
-        Platform.runLater(() -> Renderer.renderMap(canvas, cells));
+    @NotNull
+    public CellGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return Cells whose pipe has been placed or removed since the map was last rendered.
+     */
+    @NotNull
+    public DirtyCells getDirtyPipes() {
+        return dirtyPipes;
+    }
+
+    /**
+     * @return Cells which have been filled or emptied since the map was last rendered.
+     */
+    @NotNull
+    public DirtyCells getDirtyWater() {
+        return dirtyWater;
     }
 
     /**
@@ -335,28 +502,34 @@ public class Map {
      * @throws IllegalArgumentException if the cell is not an instance of {@link FillableCell}.
      */
     public void undo(@NotNull final Coordinate coord) {
-        if (!(cells[coord.row][coord.col] instanceof FillableCell)) {
+        if (grid.getKind(coord.row, coord.col) != CellGrid.KIND_FILLABLE) {
             throw new IllegalArgumentException("Cannot undo on non-FillableCell types!");
         }
-        cells[coord.row][coord.col] = new FillableCell(coord);
+        grid.setPipe(coord.row, coord.col, null);
+        dirtyPipes.mark(coord.row, coord.col);
+        dirtyWater.mark(coord.row, coord.col);
+        connectivity.onRemoved(coord.row, coord.col);
     }
 
-    public void fillBeginTile() {
-        sourceCell.setFilled();
+    /**
+     * @param coord Coordinate of the pipe.
+     * @return Whether the pipe at {@code coord} is filled with water.
+     */
+    public boolean isFilled(@NotNull final Coordinate coord) {
+        return grid.isFilled(coord.row, coord.col);
     }
 
-    @NotNull
-    private List<Coordinate> getTraversedCoords() {
-        return new ArrayList<>(filledTiles);
+    public void fillBeginTile() {
+        grid.setFilled(sourceCoord.row, sourceCoord.col);
+        dirtyWater.mark(sourceCoord.row, sourceCoord.col);
     }
 
     /**
      * Fills all pipes that are within {@code distance} units from the {@code sourceCell}.
      *
      * <p>
-     * Hint: There are two ways to approach this. You can either iteratively fill the tiles by distance (i.e. filling
-     * distance=0, distance=1, etc), or you can save the tiles you have already filled, and fill all adjacent cells of
-     * the already-filled tiles. Whichever method you choose is up to you, as long as the result is the same.
+     * Each distance step only visits the tiles on the current {@link Map#frontier}, so the cost of a step is
+     * proportional to the number of open pipe ends rather than the number of tiles filled so far.
      * </p>
      *
      * @param distance Distance to fill pipes.
@@ -366,125 +539,230 @@ public class Map {
             prevFilledDistance = 0;
         }
 
-        while (prevFilledDistance != distance) {
-            var currentDistance = prevFilledDistance + 1;
+        while (prevFilledDistance < distance) {
             prevFilledTiles = 0;
 
-            if (currentDistance == 0) {
-                filledTiles.add(sourceCell.coord);
-                prevFilledTiles = 1;
-            } else if (currentDistance == 1) {
-                var coord = sourceCell.coord;
-                var newCoord = coord.add(sourceCell.pointingTo.getOffset());
+            if (!fillNextStep()) {
+                return;
+            }
+
+            ++prevFilledDistance;
+        }
+    }
+
+    /**
+     * Advances the water by one distance step.
+     *
+     * @return {@code false} if the water could not leave the source tile, in which case the step should be retried.
+     */
+    private boolean fillNextStep() {
+        if (prevFilledDistance == 0) {
+            var coord = sourceCoord.add(sourceDir.getOffset());
+            if (!canFlowInto(coord.row, coord.col, sourceDir)) {
+                return false;
+            }
+
+            fillTile(coord.row, coord.col, frontier);
+            prevFilledTiles = 1;
+            return true;
+        }
+
+        nextFrontier.clear();
+        newlyFilled.clear();
 
-                if (!(cells[newCoord.row][newCoord.col] instanceof FillableCell)) {
-                    return;
+        for (int i = 0; i < frontier.size(); ++i) {
+            final int row = PackedCoordinate.row(frontier.get(i));
+            final int col = PackedCoordinate.col(frontier.get(i));
+            var shape = grid.getShape(row, col);
+            if (shape == null) {
+                throw new IllegalStateException();
+            }
+            var isOpen = false;
+
+            for (Direction d : shape.getConnections()) {
+                int newRow = row + d.getRowOffset();
+                int newCol = col + d.getColOffset();
+                if (grid.getKind(newRow, newCol) != CellGrid.KIND_FILLABLE) {
+                    continue;
                 }
-                var cell = (FillableCell) cells[newCoord.row][newCoord.col];
-                if (cell.getPipe().isEmpty()) {
-                    return;
+                if (filledTiles.get(newRow, newCol)) {
+                    continue;
                 }
-                if (Arrays.stream(cell.getPipe().get().getConnections()).noneMatch(it -> sourceCell.pointingTo == it.getOpposite())) {
-                    return;
+
+                if (!canFlowInto(newRow, newCol, d)) {
+                    // The neighbour may still receive a connecting pipe later on.
+                    isOpen = true;
+                    continue;
                 }
 
-                cell.getPipe().get().setFilled();
-                filledTiles.add(newCoord);
-                prevFilledTiles = 1;
-            } else {
-                final var traversedTiles = getTraversedCoords();
+                fillTile(newRow, newCol, newlyFilled);
+            }
 
-                for (Coordinate c : traversedTiles) {
-                    if (!(cells[c.row][c.col] instanceof FillableCell)) {
-                        continue;
-                    }
+            if (isOpen) {
+                nextFrontier.add(frontier.get(i));
+            }
+        }
 
-                    var tile = (FillableCell) cells[c.row][c.col];
-                    if (tile.getPipe().isEmpty()) {
-                        throw new IllegalStateException();
-                    }
+        nextFrontier.addAll(newlyFilled);
 
-                    for (Direction d : tile.getPipe().get().getConnections()) {
-                        var newCoord = c.add(d.getOffset());
-
-                        if (!(cells[newCoord.row][newCoord.col] instanceof FillableCell)) {
-                            continue;
-                        }
-                        if (traversedTiles.stream().anyMatch(it -> it.equals(newCoord))) {
-                            continue;
-                        }
-                        var cell = (FillableCell) cells[newCoord.row][newCoord.col];
-                        if (cell.getPipe().isEmpty()) {
-                            continue;
-                        }
-                        if (Arrays.stream(cell.getPipe().get().getConnections()).noneMatch(it -> d == it.getOpposite())) {
-                            continue;
-                        }
-
-                        cell.getPipe().get().setFilled();
-                        filledTiles.add(newCoord);
-                    }
-                }
+        final var oldFrontier = frontier;
+        frontier = nextFrontier;
+        nextFrontier = oldFrontier;
+        prevFilledTiles = newlyFilled.size();
+        return true;
+    }
+
+    /**
+     * Retrieves the tiles which the next distance step fills, i.e. the tiles which the water is currently flowing into.
+     *
+     * <p>
+     * Like a distance step, this only visits the tiles on the current {@link Map#frontier}, so it is cheap enough to
+     * call on every frame of an animation. A tile which is entered from several sides is reported once per side.
+     * </p>
+     *
+     * @param consumer Operation to run on each tile.
+     */
+    public void forEachFlowTarget(@NotNull FlowTargetConsumer consumer) {
+        if (prevFilledDistance == null) {
+            return;
+        }
 
-                prevFilledTiles = filledTiles.size() - traversedTiles.size();
+        if (prevFilledDistance == 0) {
+            final int row = sourceCoord.row + sourceDir.getRowOffset();
+            final int col = sourceCoord.col + sourceDir.getColOffset();
+            if (canFlowInto(row, col, sourceDir)) {
+                consumer.accept(row, col, sourceDir);
+            }
+            return;
+        }
+
+        for (int i = 0; i < frontier.size(); ++i) {
+            final int row = PackedCoordinate.row(frontier.get(i));
+            final int col = PackedCoordinate.col(frontier.get(i));
+            final var shape = grid.getShape(row, col);
+            if (shape == null) {
+                continue;
             }
 
-            prevFilledDistance = currentDistance;
+            for (Direction d : shape.getConnections()) {
+                final int newRow = row + d.getRowOffset();
+                final int newCol = col + d.getColOffset();
+                if (canFlowInto(newRow, newCol, d)) {
+                    consumer.accept(newRow, newCol, d);
+                }
+            }
         }
     }
 
+    /**
+     * @param row       Row of the tile to check.
+     * @param col       Column of the tile to check.
+     * @param direction Direction which the water flows in when entering the tile.
+     * @return Whether the tile contains an unfilled pipe which accepts water flowing in {@code direction}.
+     */
+    private boolean canFlowInto(int row, int col, @NotNull Direction direction) {
+        if (grid.getKind(row, col) != CellGrid.KIND_FILLABLE) {
+            return false;
+        }
+        if (filledTiles.get(row, col)) {
+            return false;
+        }
+
+        var shape = grid.getShape(row, col);
+        return shape != null && shape.hasInput(direction.getOpposite());
+    }
+
+    /**
+     * Marks a tile as filled.
+     *
+     * @param row    Row of the tile.
+     * @param col    Column of the tile.
+     * @param filled List to record the {@link PackedCoordinate} of the newly filled tile in.
+     */
+    private void fillTile(int row, int col, @NotNull IntList filled) {
+        grid.setFilled(row, col);
+        dirtyWater.mark(row, col);
+        filledTiles.set(row, col);
+        filled.add(PackedCoordinate.pack(row, col));
+    }
+
     /**
      * Fills the source and sink tiles, as well as any tiles which can be reached from the source tile.
      */
     public void fillAll() {
-        // TODO done lol
-        sourceCell.setFilled();
-        sinkCell.setFilled();
-        fillTiles(20); //very lazy haha
+        grid.setFilled(sourceCoord.row, sourceCoord.col);
+        grid.setFilled(sinkCoord.row, sinkCoord.col);
+        dirtyWater.mark(sourceCoord.row, sourceCoord.col);
+        dirtyWater.mark(sinkCoord.row, sinkCoord.col);
+
+        if (prevFilledDistance == null) {
+            prevFilledDistance = 0;
+        }
+        while (fillNextStep() && prevFilledTiles > 0) {
+            ++prevFilledDistance;
+        }
     }
 
     /**
      * Checks whether there exists a path from {@code sourceCell} to {@code sinkCell}.
      *
      * <p>
-     * Hint: This problem is similar to finding a specific node in a graph. As stated in the README, one of the ways you
-     * could approach this is to use Breadth-First Search.
+     * Connectivity is maintained incrementally as pipes are placed and removed, so this check runs in constant time.
      * </p>
      *
      * @return {@code true} if a path exists, else {@code false}.
      */
     public boolean checkPath() {
-        // BFS woohoo!
-        var coordsTraversed = new ArrayList<Coordinate>();
+        if (Pipe.Shape.hasDirectionalShapes()) {
+            return searchPath();
+        }
+        return connectivity.isConnected();
+    }
 
-        Queue<Coordinate> coordsToCheck = new LinkedList<>();
-        coordsToCheck.add(sourceCell.coord);
+    /**
+     * Searches for a path from {@code sourceCell} to {@code sinkCell} which respects the direction of the flow.
+     *
+     * @return {@code true} if a path exists, else {@code false}.
+     */
+    private boolean searchPath() {
+        final var visited = new BitGrid(rows, cols);
+        final var toVisit = new IntList();
+
+        int firstRow = sourceCoord.row + sourceDir.getRowOffset();
+        int firstCol = sourceCoord.col + sourceDir.getColOffset();
+        var firstShape = grid.getShape(firstRow, firstCol);
+        if (firstShape != null && firstShape.hasInput(sourceDir.getOpposite())) {
+            visited.set(firstRow, firstCol);
+            toVisit.add(PackedCoordinate.pack(firstRow, firstCol));
+        }
 
-        while (!coordsToCheck.isEmpty()) {
-            var thisCoord = coordsToCheck.remove();
-            if (coordsTraversed.stream().anyMatch(it -> it.equals(thisCoord))) {
+        for (int i = 0; i < toVisit.size(); ++i) {
+            final int cRow = PackedCoordinate.row(toVisit.get(i));
+            final int cCol = PackedCoordinate.col(toVisit.get(i));
+            var shape = grid.getShape(cRow, cCol);
+            if (shape == null) {
                 continue;
             }
 
-            var thisCell = cells[thisCoord.row][thisCoord.col];
-            if (thisCell instanceof TerminationCell) {
-                var thisTermCell = (TerminationCell) thisCell;
-                if (thisTermCell.type == TerminationCell.Type.SINK) {
-                    return true;
-                } else {
-                    coordsToCheck.add(thisTermCell.coord.add(thisTermCell.pointingTo.getOffset()));
+            for (Direction d : shape.getConnections()) {
+                int row = cRow + d.getRowOffset();
+                int col = cCol + d.getColOffset();
+                if (row == sinkCoord.row && col == sinkCoord.col) {
+                    if (d == sinkDir) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (visited.get(row, col)) {
+                    continue;
                 }
-            }
 
-            if (thisCell instanceof FillableCell) {
-                ((FillableCell) thisCell).getPipe().ifPresent(pipe -> {
-                    for (Direction dir : pipe.getConnections()) {
-                        coordsToCheck.add(thisCoord.add(dir.getOffset()));
-                    }
-                });
+                var nShape = grid.getShape(row, col);
+                if (nShape != null && nShape.hasInput(d.getOpposite())) {
+                    visited.set(row, col);
+                    toVisit.add(PackedCoordinate.pack(row, col));
+                }
             }
-
-            coordsTraversed.add(thisCoord);
         }
 
         return false;
@@ -502,29 +780,24 @@ public class Map {
         return prevFilledTiles == 0;
     }
 
-    public Pipe getPipeAt(int row, int col){
-
-        Cell cell=null;
-        try{
-            cell = cells[row][col];
-        }catch (Exception e){
-            e.printStackTrace();
-        }
-        if(cell==null)
+    /**
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     * @return The pipe at (row, col), or {@code null} if the position is out of bounds or does not contain a pipe.
+     */
+    @Nullable
+    public Pipe getPipeAt(int row, int col) {
+        if (!grid.isInBounds(row, col)) {
             return null;
-
-        if(cell.getClass() == FillableCell.class){
-            if(((FillableCell) cell).getPipe().isPresent()){
-                Pipe pipe = ((FillableCell) cell).getPipe().get();
-                return pipe;
-            }
         }
 
-        return null;
-
+        return grid.getPipe(row, col);
     }
 
-    public void remove(int row, int col){
-        cells[row][col] = new FillableCell(new Coordinate(row,col));
+    public void remove(int row, int col) {
+        grid.setCell(new FillableCell(new Coordinate(row, col)));
+        dirtyPipes.mark(row, col);
+        dirtyWater.mark(row, col);
+        connectivity.onRemoved(row, col);
     }
 }
@@ -0,0 +1,155 @@
+package models.map;
+
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+
+/**
+ * {@link CellGrid} backed by a 2D array of {@link Cell} objects.
+ */
+public class ObjectCellGrid implements CellGrid {
+
+    @NotNull
+    private final Cell[][] cells;
+    private final int rows;
+    private final int cols;
+
+    /**
+     * Wraps an existing cell array. Changes to the grid are reflected in {@code cells} and vice versa.
+     *
+     * @param rows  Number of rows.
+     * @param cols  Number of columns.
+     * @param cells Cells to wrap.
+     */
+    public ObjectCellGrid(int rows, int cols, @NotNull Cell[][] cells) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+    }
+
+    /**
+     * @return The backing cell array.
+     */
+    @NotNull
+    public Cell[][] getCells() {
+        return cells;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getKind(int row, int col) {
+        var cell = cells[row][col];
+        if (cell instanceof FillableCell) {
+            return KIND_FILLABLE;
+        } else if (cell instanceof TerminationCell) {
+            return ((TerminationCell) cell).type == TerminationCell.Type.SOURCE ? KIND_SOURCE : KIND_SINK;
+        } else {
+            return KIND_WALL;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Pipe.Shape getShape(int row, int col) {
+        var pipe = getPipe(row, col);
+        return pipe != null ? pipe.getShape() : null;
+    }
+
+    @Nullable
+    @Override
+    public Direction getTerminationDirection(int row, int col) {
+        var cell = cells[row][col];
+        return cell instanceof TerminationCell ? ((TerminationCell) cell).pointingTo : null;
+    }
+
+    @Override
+    public boolean isFilled(int row, int col) {
+        var cell = cells[row][col];
+        if (cell instanceof TerminationCell) {
+            return ((TerminationCell) cell).isFilled();
+        }
+
+        var pipe = getPipe(row, col);
+        return pipe != null && pipe.getFilled();
+    }
+
+    @Override
+    public void setFilled(int row, int col) {
+        var cell = cells[row][col];
+        if (cell instanceof TerminationCell) {
+            ((TerminationCell) cell).setFilled();
+            return;
+        }
+
+        var pipe = getPipe(row, col);
+        if (pipe != null) {
+            pipe.setFilled();
+        }
+    }
+
+    @Override
+    public void setPipe(int row, int col, @Nullable Pipe pipe) {
+        if (!(cells[row][col] instanceof FillableCell)) {
+            throw new IllegalArgumentException("Cannot place pipes on non-FillableCell types!");
+        }
+        cells[row][col] = new FillableCell(cells[row][col].coord, pipe);
+    }
+
+    @Nullable
+    @Override
+    public Pipe getPipe(int row, int col) {
+        var cell = cells[row][col];
+        return cell instanceof FillableCell ? ((FillableCell) cell).getPipe().orElse(null) : null;
+    }
+
+    @NotNull
+    @Override
+    public Cell getCell(int row, int col) {
+        return cells[row][col];
+    }
+
+    @Override
+    public void setCell(@NotNull Cell cell) {
+        cells[cell.coord.row][cell.coord.col] = cell;
+    }
+
+    /**
+     * Creates a grid with walls along the edges, and empty cells everywhere else.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @return A new grid.
+     */
+    @NotNull
+    static ObjectCellGrid createEmpty(int rows, int cols) {
+        var cells = new Cell[rows][cols];
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                var coord = new Coordinate(r, c);
+
+                if (r == 0 || c == 0 || r == rows - 1 || c == cols - 1) {
+                    cells[r][c] = new Wall(coord);
+                } else {
+                    cells[r][c] = new FillableCell(coord);
+                }
+            }
+        }
+
+        return new ObjectCellGrid(rows, cols, cells);
+    }
+}
@@ -0,0 +1,351 @@
+package models.map;
+
+import models.CellImage;
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import models.map.cells.Wall;
+import models.pipes.Pipe;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+import util.Direction;
+
+/**
+ * {@link CellGrid} which packs every cell into a single byte.
+ *
+ * <p>
+ * Layout of each byte:
+ * <ul>
+ * <li>Bits 0-1: Kind of the cell, as one of the {@code KIND_*} constants.</li>
+ * <li>Bits 2-5: For {@link FillableCell}, the ID of the pipe shape plus one, or zero if the cell is empty. For
+ * {@link TerminationCell}, the ordinal of the direction it is pointing to.</li>
+ * <li>Bit 6: Whether the pipe or termination cell is filled.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * {@link Cell} and {@link Pipe} objects returned by this grid are views created on demand. The encoding is shared with
+ * {@link LazyCellGrid}.
+ * </p>
+ */
+public class PackedCellGrid implements CellGrid {
+
+    private static final int KIND_MASK = 0b11;
+    private static final int DATA_SHIFT = 2;
+    private static final int DATA_MASK = 0b1111 << DATA_SHIFT;
+    private static final int FILLED_BIT = 1 << 6;
+
+    private final int rows;
+    private final int cols;
+    @NotNull
+    private final byte[] cells;
+
+    /**
+     * Creates a grid where every cell is an empty {@link FillableCell}.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     */
+    public PackedCellGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = new byte[rows * cols];
+    }
+
+    /**
+     * Creates a packed copy of a cell array.
+     *
+     * @param rows  Number of rows.
+     * @param cols  Number of columns.
+     * @param cells Cells to copy from.
+     * @return A packed grid containing the same cells as {@code cells}.
+     */
+    @NotNull
+    public static PackedCellGrid fromCells(int rows, int cols, @NotNull Cell[][] cells) {
+        var grid = new PackedCellGrid(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                grid.cells[r * cols + c] = pack(cells[r][c]);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * @return A grid with the same cells as this grid, which can be modified independently.
+     */
+    @NotNull
+    public PackedCellGrid copy() {
+        var grid = new PackedCellGrid(rows, cols);
+        System.arraycopy(cells, 0, grid.cells, 0, cells.length);
+        return grid;
+    }
+
+    /**
+     * @return A new cell array with the state of every cell in this grid.
+     */
+    @NotNull
+    public Cell[][] toCells() {
+        var result = new Cell[rows][cols];
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                result[r][c] = toCell(cells[r * cols + c], new Coordinate(r, c));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a grid with walls along the edges, and empty cells everywhere else.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     * @return A new grid.
+     */
+    @NotNull
+    static PackedCellGrid createEmpty(int rows, int cols) {
+        var grid = new PackedCellGrid(rows, cols);
+        for (int r = 0; r < rows; ++r) {
+            for (int c = 0; c < cols; ++c) {
+                if (r == 0 || c == 0 || r == rows - 1 || c == cols - 1) {
+                    grid.cells[r * cols + c] = KIND_WALL;
+                }
+            }
+        }
+        return grid;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public int getKind(int row, int col) {
+        return kindOf(cells[row * cols + col]);
+    }
+
+    @Nullable
+    @Override
+    public Pipe.Shape getShape(int row, int col) {
+        return shapeOf(cells[row * cols + col]);
+    }
+
+    @Nullable
+    @Override
+    public Direction getTerminationDirection(int row, int col) {
+        return directionOf(cells[row * cols + col]);
+    }
+
+    @Override
+    public boolean isFilled(int row, int col) {
+        return isFilled(cells[row * cols + col]);
+    }
+
+    @Override
+    public void setFilled(int row, int col) {
+        int index = row * cols + col;
+        cells[index] = withFilled(cells[index]);
+    }
+
+    @Override
+    public void setPipe(int row, int col, @Nullable Pipe pipe) {
+        int index = row * cols + col;
+        if (kindOf(cells[index]) != KIND_FILLABLE) {
+            throw new IllegalArgumentException("Cannot place pipes on non-FillableCell types!");
+        }
+
+        cells[index] = pack(pipe);
+    }
+
+    @Nullable
+    @Override
+    public Pipe getPipe(int row, int col) {
+        return toPipe(cells[row * cols + col]);
+    }
+
+    @NotNull
+    @Override
+    public Cell getCell(int row, int col) {
+        return toCell(cells[row * cols + col], new Coordinate(row, col));
+    }
+
+    @NotNull
+    @Override
+    public CellImage getImageRep(int row, int col) {
+        return imageRepOf(cells[row * cols + col]);
+    }
+
+    @Override
+    public void setCell(@NotNull Cell cell) {
+        cells[cell.coord.row * cols + cell.coord.col] = pack(cell);
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return Shared image representation of the packed cell.
+     */
+    @NotNull
+    static CellImage imageRepOf(byte value) {
+        switch (kindOf(value)) {
+            case KIND_WALL:
+                return Wall.IMAGE_REP;
+            case KIND_SOURCE:
+                return TerminationCell.getImageRep(TerminationCell.Type.SOURCE, directionOf(value), isFilled(value));
+            case KIND_SINK:
+                return TerminationCell.getImageRep(TerminationCell.Type.SINK, directionOf(value), isFilled(value));
+            default: {
+                final var shape = shapeOf(value);
+                return shape != null ? shape.getCellImage(isFilled(value)) : FillableCell.EMPTY_IMAGE_REP;
+            }
+        }
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return One of the {@code KIND_*} constants representing the kind of the cell.
+     */
+    static int kindOf(byte value) {
+        return value & KIND_MASK;
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return Shape of the pipe in the cell, or {@code null} if the cell does not contain a pipe.
+     */
+    @Nullable
+    static Pipe.Shape shapeOf(byte value) {
+        if (kindOf(value) != KIND_FILLABLE) {
+            return null;
+        }
+
+        int shape = (value & DATA_MASK) >> DATA_SHIFT;
+        return shape != 0 ? Pipe.Shape.fromId(shape - 1) : null;
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return Direction of the termination cell, or {@code null} if the cell is not a termination cell.
+     */
+    @Nullable
+    static Direction directionOf(byte value) {
+        int kind = kindOf(value);
+        if (kind != KIND_SOURCE && kind != KIND_SINK) {
+            return null;
+        }
+
+        return Direction.fromOrdinal((value & DATA_MASK) >> DATA_SHIFT);
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return Whether the pipe or termination cell is filled with water.
+     */
+    static boolean isFilled(byte value) {
+        return (value & FILLED_BIT) != 0;
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return The packed cell marked as filled, or {@code value} if the cell cannot be filled.
+     */
+    static byte withFilled(byte value) {
+        if (kindOf(value) == KIND_WALL) {
+            return value;
+        }
+        if (kindOf(value) == KIND_FILLABLE && (value & DATA_MASK) == 0) {
+            return value;
+        }
+
+        return (byte) (value | FILLED_BIT);
+    }
+
+    /**
+     * @param value Packed cell.
+     * @return A new pipe with the state of the packed cell, or {@code null} if the cell does not contain a pipe.
+     */
+    @Nullable
+    static Pipe toPipe(byte value) {
+        var shape = shapeOf(value);
+        if (shape == null) {
+            return null;
+        }
+
+        var pipe = new Pipe(shape);
+        if (isFilled(value)) {
+            pipe.setFilled();
+        }
+        return pipe;
+    }
+
+    /**
+     * @param value Packed cell.
+     * @param coord Coordinate of the cell.
+     * @return A new cell with the state of the packed cell.
+     */
+    @NotNull
+    public static Cell toCell(byte value, @NotNull Coordinate coord) {
+        switch (kindOf(value)) {
+            case KIND_WALL:
+                return new Wall(coord);
+            case KIND_SOURCE:
+            case KIND_SINK: {
+                var type = kindOf(value) == KIND_SOURCE ? TerminationCell.Type.SOURCE : TerminationCell.Type.SINK;
+                var cell = new TerminationCell(coord, directionOf(value), type);
+                if (isFilled(value)) {
+                    cell.setFilled();
+                }
+                return cell;
+            }
+            default:
+                return new FillableCell(coord, toPipe(value));
+        }
+    }
+
+    /**
+     * @param cell Cell to pack.
+     * @return Packed representation of {@code cell}.
+     */
+    public static byte pack(@NotNull Cell cell) {
+        if (cell instanceof FillableCell) {
+            return pack(((FillableCell) cell).getPipe().orElse(null));
+        } else if (cell instanceof TerminationCell) {
+            var tCell = (TerminationCell) cell;
+            int kind = tCell.type == TerminationCell.Type.SOURCE ? KIND_SOURCE : KIND_SINK;
+            return packTermination(kind, tCell.pointingTo, tCell.isFilled());
+        } else {
+            return KIND_WALL;
+        }
+    }
+
+    /**
+     * @param kind   Either {@link CellGrid#KIND_SOURCE} or {@link CellGrid#KIND_SINK}.
+     * @param dir    Direction of the termination cell.
+     * @param filled Whether the termination cell is filled.
+     * @return Packed representation of the termination cell.
+     */
+    static byte packTermination(int kind, @NotNull Direction dir, boolean filled) {
+        return (byte) (kind | dir.ordinal() << DATA_SHIFT | (filled ? FILLED_BIT : 0));
+    }
+
+    /**
+     * @param pipe Pipe to pack, or {@code null} for an empty cell.
+     * @return Packed representation of a {@link FillableCell} containing {@code pipe}.
+     */
+    static byte pack(@Nullable Pipe pipe) {
+        if (pipe == null) {
+            return KIND_FILLABLE;
+        }
+
+        int value = KIND_FILLABLE | (pipe.getShape().getId() + 1) << DATA_SHIFT;
+        if (pipe.getFilled()) {
+            value |= FILLED_BIT;
+        }
+        return (byte) value;
+    }
+}
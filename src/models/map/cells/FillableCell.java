@@ -1,8 +1,6 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
+import models.CellImage;
 import models.MapElement;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
@@ -19,7 +17,12 @@ public class FillableCell extends Cell implements MapElement {
     /**
      * Image representing a cell.
      */
-    private static final Image IMAGE = new Image(ResourceLoader.getResource("assets/images/empty-cell.png"));
+    private static final String IMAGE = "assets/images/empty-cell.png";
+    /**
+     * Image representation shared by all empty cells.
+     */
+    @NotNull
+    public static final CellImage EMPTY_IMAGE_REP = CellImage.of(IMAGE, 0);
 
     @Nullable
     private final Pipe pipe;
@@ -68,10 +71,10 @@ public class FillableCell extends Cell implements MapElement {
      */
     @NotNull
     @Override
-    public Renderer.CellImage getImageRep() {
+    public CellImage getImageRep() {
         // TODO done
         if(pipe == null)
-            return new Renderer.CellImage(IMAGE,0);
+            return EMPTY_IMAGE_REP;
         else
             return pipe.getImageRep();
     }
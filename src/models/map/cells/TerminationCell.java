@@ -1,8 +1,6 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
+import models.CellImage;
 import org.jetbrains.annotations.NotNull;
 import util.Coordinate;
 import util.Direction;
@@ -16,11 +14,19 @@ public class TerminationCell extends Cell {
     /**
      * Image representing an unfilled termination cell.
      */
-    private static final Image UNFILLED_IMG = new Image(ResourceLoader.getResource("assets/images/dest-unfilled.png"));
+    private static final String UNFILLED_IMG = "assets/images/dest-unfilled.png";
     /**
      * Image representing a filled termination cell.
      */
-    private static final Image FILLED_IMG = new Image(ResourceLoader.getResource("assets/images/dest-filled.png"));
+    private static final String FILLED_IMG = "assets/images/dest-filled.png";
+    /**
+     * Shared image representations, indexed by type, whether the cell is filled, and the direction it points to.
+     */
+    @NotNull
+    private static final CellImage[][][] IMAGE_REPS = {
+            {createImageReps(Type.SOURCE, UNFILLED_IMG), createImageReps(Type.SOURCE, FILLED_IMG)},
+            {createImageReps(Type.SINK, UNFILLED_IMG), createImageReps(Type.SINK, FILLED_IMG)},
+    };
 
     private boolean isFilled = false;
     @NotNull
@@ -76,62 +82,60 @@ public class TerminationCell extends Cell {
 
     @NotNull
     @Override
-    public Renderer.CellImage getImageRep() {
+    public CellImage getImageRep() {
         // TODO done, need to check if accurate
-        switch(type){
-            case SOURCE:
-                switch (pointingTo) {
-                    case UP:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, 0);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,0);
-                    case DOWN:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, 180);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,180);
-                    case LEFT:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, -90);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,-90);
-                    case RIGHT:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, 90);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,90);
-                    default:
-                        throw new IllegalStateException("Unknown pointingTo value");
-                }
-            case SINK:
-                switch (pointingTo) {
-                    case UP:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, 180);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,180);
-                    case DOWN:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, 0);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,0);
-                    case LEFT:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, 90);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,90);
-                    case RIGHT:
-                        if(isFilled)
-                            return new Renderer.CellImage(FILLED_IMG, -90);
-                        else
-                            return new Renderer.CellImage(UNFILLED_IMG,-90);
-                    default:
-                        throw new IllegalStateException("Unknown pointingTo value");
-                }
-            default:
-                throw new IllegalStateException("Unknown Type value");
+        return getImageRep(type, pointingTo, isFilled);
+    }
+
+    /**
+     * Retrieves the shared image representation of a termination cell.
+     *
+     * @param type       Type of the cell.
+     * @param pointingTo Direction which the cell points to.
+     * @param filled     Whether the cell is filled.
+     * @return Image representation of the cell.
+     */
+    @NotNull
+    public static CellImage getImageRep(@NotNull Type type, @NotNull Direction pointingTo, boolean filled) {
+        return IMAGE_REPS[type.ordinal()][filled ? 1 : 0][pointingTo.ordinal()];
+    }
+
+    /**
+     * Creates the image representations of a termination cell of a type, indexed by the ordinal of the direction
+     * which the cell points to.
+     *
+     * @param type     Type of the cell.
+     * @param resource Image of the cell, pointing up for a source.
+     * @return Image representations of the cell.
+     */
+    @NotNull
+    private static CellImage[] createImageReps(@NotNull Type type, @NotNull String resource) {
+        final var reps = new CellImage[Direction.values().length];
+        for (var d : Direction.values()) {
+            float rotation;
+            switch (d) {
+                case UP:
+                    rotation = 0;
+                    break;
+                case DOWN:
+                    rotation = 180;
+                    break;
+                case LEFT:
+                    rotation = -90;
+                    break;
+                case RIGHT:
+                    rotation = 90;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown pointingTo value");
+            }
+            // the sink image is the source image turned around, since water flows into it
+            if (type == Type.SINK) {
+                rotation += 180;
+            }
+            reps[d.ordinal()] = CellImage.of(resource, rotation);
         }
+        return reps;
     }
 
     @NotNull
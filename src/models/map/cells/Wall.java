@@ -1,9 +1,7 @@
 package models.map.cells;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
 import models.map.Map;
+import models.CellImage;
 import org.jetbrains.annotations.NotNull;
 import util.Coordinate;
 import util.PipePatterns;
@@ -16,7 +14,12 @@ public class Wall extends Cell {
     /**
      * Image representing a wall.
      */
-    private static final Image IMAGE = new Image(ResourceLoader.getResource("assets/images/wall.png"));
+    private static final String IMAGE = "assets/images/wall.png";
+    /**
+     * Image representation shared by all walls.
+     */
+    @NotNull
+    public static final CellImage IMAGE_REP = CellImage.of(IMAGE, 0);
 
     public Wall(@NotNull Coordinate coord) {
         super(coord);
@@ -29,9 +32,9 @@ public class Wall extends Cell {
 
     @NotNull
     @Override
-    public Renderer.CellImage getImageRep() {
+    public CellImage getImageRep() {
         // TODO DONE!
-        return new Renderer.CellImage(IMAGE, 0);
+        return IMAGE_REP;
     }
 
     @NotNull
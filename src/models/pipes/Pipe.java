@@ -1,14 +1,14 @@
 package models.pipes;
 
-import controllers.Renderer;
-import controllers.ResourceLoader;
-import javafx.scene.image.Image;
+import models.CellImage;
 import models.MapElement;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import util.Direction;
 import util.PipePatterns;
 
 import java.util.Arrays;
+import java.util.HashMap;
 
 public class Pipe implements MapElement {
 
@@ -40,29 +40,19 @@ public class Pipe implements MapElement {
     }
 
     /**
-     * @return List of connections for this pipe.
-     * @throws IllegalStateException if {@code this} pipe cannot be identified.
+     * @return Shape of this pipe.
+     */
+    @NotNull
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * @return List of connections for this pipe. The returned array is shared and must not be modified.
      */
     @NotNull
     public Direction[] getConnections() {
-        switch (shape) {
-            case HORIZONTAL:
-                return new Direction[]{Direction.LEFT, Direction.RIGHT};
-            case VERTICAL:
-                return new Direction[]{Direction.UP, Direction.DOWN};
-            case TOP_LEFT:
-                return new Direction[]{Direction.UP, Direction.LEFT};
-            case TOP_RIGHT:
-                return new Direction[]{Direction.UP, Direction.RIGHT};
-            case BOTTOM_LEFT:
-                return new Direction[]{Direction.DOWN, Direction.LEFT};
-            case BOTTOM_RIGHT:
-                return new Direction[]{Direction.DOWN, Direction.RIGHT};
-            case CROSS:
-                return Direction.values();
-            default:
-                throw new IllegalStateException("Unknown shape");
-        }
+        return shape.getConnections();
     }
 
     /**
@@ -82,7 +72,7 @@ public class Pipe implements MapElement {
      */
     @NotNull
     @Override
-    public Renderer.CellImage getImageRep() {
+    public CellImage getImageRep() {
         return shape.getCellImage(filled);
     }
 
@@ -99,13 +89,12 @@ public class Pipe implements MapElement {
      */
     @NotNull
     public static Pipe fromString(@NotNull String rep) {
-        String actualRep = rep.trim();
+        var shape = Shape.fromRep(rep.trim());
+        if (shape == null) {
+            throw new IllegalArgumentException("Unknown shape");
+        }
 
-        return Arrays.stream(Shape.values())
-                .filter(shape -> shape.rep.equals(actualRep))
-                .findAny()
-                .map(Pipe::new)
-                .orElseThrow(() -> new IllegalArgumentException("Unknown shape"));
+        return new Pipe(shape);
     }
 
     @NotNull
@@ -115,33 +104,244 @@ public class Pipe implements MapElement {
     }
 
     /**
-     * Helper class for different pipe shapes.
+     * Registry of the different pipe shapes.
+     *
+     * <p>
+     * Each shape is described by a 4-bit mask of the sides which accept water and a 4-bit mask of the sides which
+     * water leaves from, where bit {@code n} represents the {@link Direction} with ordinal {@code n}. The character
+     * and image representations are computed once on registration, so none of the query methods allocate.
+     * </p>
+     * <p>
+     * Additional shapes can be added using {@link Shape#register}.
+     * </p>
      */
-    public enum Shape {
-        HORIZONTAL("HZ", PipePatterns.Filled.HORIZONTAL, PipePatterns.Unfilled.HORIZONTAL),
-        VERTICAL("VT", PipePatterns.Filled.VERTICAL, PipePatterns.Unfilled.VERTICAL),
-        TOP_LEFT("TL", PipePatterns.Filled.TOP_LEFT, PipePatterns.Unfilled.TOP_LEFT),
-        TOP_RIGHT("TR", PipePatterns.Filled.TOP_RIGHT, PipePatterns.Unfilled.TOP_RIGHT),
-        BOTTOM_LEFT("BL", PipePatterns.Filled.BOTTOM_LEFT, PipePatterns.Unfilled.BOTTOM_LEFT),
-        BOTTOM_RIGHT("BR", PipePatterns.Filled.BOTTOM_RIGHT, PipePatterns.Unfilled.BOTTOM_RIGHT),
-        CROSS("CR", PipePatterns.Filled.CROSS, PipePatterns.Unfilled.CROSS);
-
-        private static final Image CORNER_UNFILLED = new Image(ResourceLoader.getResource("assets/images/top-left-unfilled.png"));
-        private static final Image CORNER_FILLED = new Image(ResourceLoader.getResource("assets/images/top-left-filled.png"));
-        private static final Image CROSS_UNFILLED = new Image(ResourceLoader.getResource("assets/images/cross-unfilled.png"));
-        private static final Image CROSS_FILLED = new Image(ResourceLoader.getResource("assets/images/cross-filled.png"));
-        private static final Image STRAIGHT_UNFILLED = new Image(ResourceLoader.getResource("assets/images/vert-unfilled.png"));
-        private static final Image STRAIGHT_FILLED = new Image(ResourceLoader.getResource("assets/images/vert-filled.png"));
+    public static final class Shape {
 
+        /**
+         * Maximum number of shapes which can be registered.
+         */
+        public static final int MAX_SHAPES = 15;
+
+        private static final String CORNER_UNFILLED = "assets/images/top-left-unfilled.png";
+        private static final String CORNER_FILLED = "assets/images/top-left-filled.png";
+        private static final String CROSS_UNFILLED = "assets/images/cross-unfilled.png";
+        private static final String CROSS_FILLED = "assets/images/cross-filled.png";
+        private static final String STRAIGHT_UNFILLED = "assets/images/vert-unfilled.png";
+        private static final String STRAIGHT_FILLED = "assets/images/vert-filled.png";
+
+        /**
+         * All registered shapes, indexed by {@link Shape#getId()}. Replaced by a copy on every registration, so it can
+         * be read without holding the lock.
+         */
+        @NotNull
+        private static volatile Shape[] registry = new Shape[0];
+        @NotNull
+        private static final java.util.Map<String, Shape> BY_REP = new HashMap<>();
+        private static volatile boolean hasDirectionalShapes = false;
+
+        public static final Shape HORIZONTAL = register("HZ", mask(Direction.LEFT, Direction.RIGHT),
+                PipePatterns.Filled.HORIZONTAL, PipePatterns.Unfilled.HORIZONTAL, STRAIGHT_FILLED, STRAIGHT_UNFILLED, 90);
+        public static final Shape VERTICAL = register("VT", mask(Direction.UP, Direction.DOWN),
+                PipePatterns.Filled.VERTICAL, PipePatterns.Unfilled.VERTICAL, STRAIGHT_FILLED, STRAIGHT_UNFILLED, 0);
+        public static final Shape TOP_LEFT = register("TL", mask(Direction.UP, Direction.LEFT),
+                PipePatterns.Filled.TOP_LEFT, PipePatterns.Unfilled.TOP_LEFT, CORNER_FILLED, CORNER_UNFILLED, 0);
+        public static final Shape TOP_RIGHT = register("TR", mask(Direction.UP, Direction.RIGHT),
+                PipePatterns.Filled.TOP_RIGHT, PipePatterns.Unfilled.TOP_RIGHT, CORNER_FILLED, CORNER_UNFILLED, 90);
+        public static final Shape BOTTOM_LEFT = register("BL", mask(Direction.DOWN, Direction.LEFT),
+                PipePatterns.Filled.BOTTOM_LEFT, PipePatterns.Unfilled.BOTTOM_LEFT, CORNER_FILLED, CORNER_UNFILLED, -90);
+        public static final Shape BOTTOM_RIGHT = register("BR", mask(Direction.DOWN, Direction.RIGHT),
+                PipePatterns.Filled.BOTTOM_RIGHT, PipePatterns.Unfilled.BOTTOM_RIGHT, CORNER_FILLED, CORNER_UNFILLED, 180);
+        public static final Shape CROSS = register("CR", mask(Direction.values()),
+                PipePatterns.Filled.CROSS, PipePatterns.Unfilled.CROSS, CROSS_FILLED, CROSS_UNFILLED, 0);
+
+        private final int id;
         @NotNull
         final String rep;
+        private final int inputMask;
+        private final int outputMask;
+        @NotNull
+        private final Direction[] outputs;
         final char filledChar;
         final char unfilledChar;
+        @NotNull
+        private final CellImage filledImage;
+        @NotNull
+        private final CellImage unfilledImage;
 
-        Shape(@NotNull String rep, char filled, char unfilled) {
+        private Shape(int id, @NotNull String rep, int inputMask, int outputMask, char filled, char unfilled,
+                      @NotNull CellImage filledImage, @NotNull CellImage unfilledImage) {
+            this.id = id;
             this.rep = rep;
+            this.inputMask = inputMask;
+            this.outputMask = outputMask;
+            this.outputs = Arrays.stream(Direction.values())
+                    .filter(d -> (outputMask & d.getMask()) != 0)
+                    .toArray(Direction[]::new);
             this.filledChar = filled;
             this.unfilledChar = unfilled;
+            this.filledImage = filledImage;
+            this.unfilledImage = unfilledImage;
+        }
+
+        /**
+         * Registers a shape where water can flow both ways through every opening.
+         *
+         * @param rep            Serialized representation of the shape.
+         * @param connections    Mask of the sides which have an opening.
+         * @param filledChar     Character representation of the filled shape.
+         * @param unfilledChar   Character representation of the unfilled shape.
+         * @param filledImage    Resource path to the image of the filled shape.
+         * @param unfilledImage  Resource path to the image of the unfilled shape.
+         * @param rotation       Rotation of the images.
+         * @return The newly registered shape.
+         * @throws IllegalArgumentException if {@code rep} is already registered, or {@link Shape#MAX_SHAPES} is
+         *                                  exceeded.
+         */
+        @NotNull
+        public static Shape register(@NotNull String rep, int connections, char filledChar, char unfilledChar,
+                                     @NotNull String filledImage, @NotNull String unfilledImage, float rotation) {
+            return register(rep, connections, connections, filledChar, unfilledChar, filledImage, unfilledImage, rotation);
+        }
+
+        /**
+         * Registers a shape.
+         *
+         * <p>
+         * Shapes where {@code inputMask} differs from {@code outputMask} (e.g. one-way valves) are directional.
+         * </p>
+         *
+         * @param rep            Serialized representation of the shape.
+         * @param inputMask      Mask of the sides which water can flow in from.
+         * @param outputMask     Mask of the sides which water flows out to.
+         * @param filledChar     Character representation of the filled shape.
+         * @param unfilledChar   Character representation of the unfilled shape.
+         * @param filledImage    Resource path to the image of the filled shape.
+         * @param unfilledImage  Resource path to the image of the unfilled shape.
+         * @param rotation       Rotation of the images.
+         * @return The newly registered shape.
+         * @throws IllegalArgumentException if {@code rep} is already registered, or {@link Shape#MAX_SHAPES} is
+         *                                  exceeded.
+         */
+        @NotNull
+        public static synchronized Shape register(@NotNull String rep, int inputMask, int outputMask,
+                                                  char filledChar, char unfilledChar,
+                                                  @NotNull String filledImage, @NotNull String unfilledImage,
+                                                  float rotation) {
+            if (BY_REP.containsKey(rep)) {
+                throw new IllegalArgumentException("Shape " + rep + " is already registered");
+            }
+            if (registry.length == MAX_SHAPES) {
+                throw new IllegalArgumentException("Too many shapes registered");
+            }
+
+            var shape = new Shape(registry.length, rep, inputMask, outputMask, filledChar, unfilledChar,
+                    CellImage.of(filledImage, rotation), CellImage.of(unfilledImage, rotation));
+
+            var newRegistry = Arrays.copyOf(registry, registry.length + 1);
+            newRegistry[shape.id] = shape;
+            registry = newRegistry;
+            BY_REP.put(rep, shape);
+            hasDirectionalShapes |= inputMask != outputMask;
+
+            return shape;
+        }
+
+        /**
+         * @param directions Directions to include.
+         * @return A mask with the bits of all given directions set.
+         */
+        public static int mask(@NotNull Direction... directions) {
+            int mask = 0;
+            for (Direction d : directions) {
+                mask |= d.getMask();
+            }
+            return mask;
+        }
+
+        /**
+         * @return A copy of all registered shapes, in the order of registration.
+         */
+        @NotNull
+        public static Shape[] values() {
+            return registry.clone();
+        }
+
+        /**
+         * @param id ID of the shape.
+         * @return The shape with the given ID.
+         * @throws ArrayIndexOutOfBoundsException if no shape has the given ID.
+         */
+        @NotNull
+        public static Shape fromId(int id) {
+            return registry[id];
+        }
+
+        /**
+         * @param rep Serialized representation of the shape.
+         * @return The shape with the given representation, or {@code null} if there is none.
+         */
+        @Nullable
+        public static synchronized Shape fromRep(@NotNull String rep) {
+            return BY_REP.get(rep);
+        }
+
+        /**
+         * @return Whether any registered shape is directional.
+         */
+        public static boolean hasDirectionalShapes() {
+            return hasDirectionalShapes;
+        }
+
+        /**
+         * @return ID of this shape, which is in the range {@code [0, MAX_SHAPES)}.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return Mask of the sides which water can flow in from.
+         */
+        public int getInputMask() {
+            return inputMask;
+        }
+
+        /**
+         * @return Mask of the sides which water flows out to.
+         */
+        public int getOutputMask() {
+            return outputMask;
+        }
+
+        /**
+         * @return Mask of the sides which water can flow through in both directions.
+         */
+        public int getConnectionMask() {
+            return inputMask & outputMask;
+        }
+
+        /**
+         * @param side Side of the cell.
+         * @return Whether water can flow into this shape from {@code side}.
+         */
+        public boolean hasInput(@NotNull Direction side) {
+            return (inputMask & side.getMask()) != 0;
+        }
+
+        /**
+         * @param side Side of the cell.
+         * @return Whether water flows out of this shape to {@code side}.
+         */
+        public boolean hasOutput(@NotNull Direction side) {
+            return (outputMask & side.getMask()) != 0;
+        }
+
+        /**
+         * @return List of sides which water flows out to. The returned array is shared and must not be modified.
+         */
+        @NotNull
+        public Direction[] getConnections() {
+            return outputs;
         }
 
         char getCharByState(boolean isFilled) {
@@ -153,49 +353,15 @@ public class Pipe implements MapElement {
          *
          * @param isFilled Whether the pipe is filled.
          * @return Image representation of the pipe.
-         * @throws IllegalStateException When {@code this} is not a known pipe shape.
-         */
-        @NotNull Renderer.CellImage getCellImage(boolean isFilled) {
-            // TODO done
-            switch(rep){
-                case "HZ":
-                    if(isFilled)
-                        return new Renderer.CellImage(STRAIGHT_FILLED,90);
-                    else
-                        return new Renderer.CellImage(STRAIGHT_UNFILLED,90);
-                case "VT":
-                    if(isFilled)
-                        return new Renderer.CellImage(STRAIGHT_FILLED,0);
-                    else
-                        return new Renderer.CellImage(STRAIGHT_UNFILLED,0);
-                case "TL":
-                    if(isFilled)
-                        return new Renderer.CellImage(CORNER_FILLED,0);
-                    else
-                        return new Renderer.CellImage(CORNER_UNFILLED,0);
-                case "TR":
-                    if(isFilled)
-                        return new Renderer.CellImage(CORNER_FILLED,90);
-                    else
-                        return new Renderer.CellImage(CORNER_UNFILLED,90);
-                case "BL":
-                    if(isFilled)
-                        return new Renderer.CellImage(CORNER_FILLED,-90);
-                    else
-                        return new Renderer.CellImage(CORNER_UNFILLED,-90);
-                case "BR":
-                    if(isFilled)
-                        return new Renderer.CellImage(CORNER_FILLED,180);
-                    else
-                        return new Renderer.CellImage(CORNER_UNFILLED,180);
-                case "CR":
-                    if(isFilled)
-                        return new Renderer.CellImage(CROSS_FILLED,0);
-                    else
-                        return new Renderer.CellImage(CROSS_UNFILLED,0);
-                default:
-                    throw new IllegalStateException();
-            }
+         */
+        @NotNull
+        public CellImage getCellImage(boolean isFilled) {
+            return isFilled ? filledImage : unfilledImage;
+        }
+
+        @Override
+        public String toString() {
+            return rep;
         }
     }
 }
@@ -0,0 +1,40 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Source of time and delayed execution for game timers.
+ *
+ * <p>
+ * {@link GameLoop} implements this interface with the system clock. {@link ManualClock} implements it with virtual
+ * time which only advances when requested, so that timers can be stepped as fast as the CPU allows.
+ * </p>
+ */
+public interface Clock {
+
+    /**
+     * A task which has been scheduled on a {@link Clock}.
+     */
+    interface Task {
+
+        /**
+         * Cancels the task. Has no effect if the task has already run or has been cancelled.
+         */
+        void cancel();
+    }
+
+    /**
+     * @return Current time of this clock in nanoseconds. Only differences between two values are meaningful.
+     */
+    long nanoTime();
+
+    /**
+     * Schedules a task to run once after a delay.
+     *
+     * @param task       Task to run.
+     * @param delayNanos Delay in nanoseconds, relative to {@link Clock#nanoTime()}.
+     * @return A handle to cancel the task.
+     */
+    @NotNull
+    Task schedule(@NotNull Runnable task, long delayNanos);
+}
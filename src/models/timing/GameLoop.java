@@ -0,0 +1,139 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton {@link Clock} which follows the system clock, and runs all scheduled tasks on a single daemon thread.
+ *
+ * <p>
+ * All game timers share this clock by default, so that any number of running games only require one thread. Tasks are
+ * stored in a {@link TimingWheel} with a resolution of {@link GameLoop#RESOLUTION_NANOS}, so that scheduling and
+ * cancelling are {@code O(1)} regardless of the number of games. Cancelled tasks are removed from the wheel
+ * immediately, and the thread sleeps indefinitely while there are no tasks.
+ * </p>
+ * <p>
+ * Tasks are run one at a time, so a task should only do a small amount of work (e.g. post to another executor). An
+ * exception thrown by one task does not affect the other tasks.
+ * </p>
+ */
+public final class GameLoop implements Clock {
+
+    /**
+     * Duration of a tick of the timing wheel. Tasks may run up to this long after they are due.
+     */
+    private static final long RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @NotNull
+    private static final GameLoop INSTANCE = new GameLoop();
+
+    /**
+     * Value of {@link System#nanoTime()} at tick 0 of {@link GameLoop#wheel}.
+     */
+    private final long origin = System.nanoTime();
+    /**
+     * Scheduled tasks. All accesses are synchronized on this object.
+     */
+    @NotNull
+    private final TimingWheel wheel = new TimingWheel(0);
+
+    private GameLoop() {
+        var thread = new Thread(this::run, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The singleton instance of this class.
+     */
+    @NotNull
+    public static GameLoop getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @NotNull
+    @Override
+    public Task schedule(@NotNull Runnable task, long delayNanos) {
+        // round up, so that the task never runs before it is due
+        final long deadline = Math.floorDiv(nanoTime() + Math.max(0, delayNanos) - origin + RESOLUTION_NANOS - 1,
+                RESOLUTION_NANOS);
+
+        final TimingWheel.Entry entry;
+        synchronized (wheel) {
+            if (wheel.size() == 0) {
+                // the wheel is not advanced while idle, so catch up before adding the task
+                wheel.advanceTo(currentTick(), Collections.emptyList());
+                wheel.notifyAll();
+            }
+            entry = wheel.schedule(deadline, task);
+        }
+        return () -> {
+            synchronized (wheel) {
+                wheel.cancel(entry);
+            }
+        };
+    }
+
+    /**
+     * @return Number of tasks which are waiting to run.
+     */
+    public int getPendingTaskCount() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * @return Current tick of {@link GameLoop#wheel} according to the system clock.
+     */
+    private long currentTick() {
+        return Math.floorDiv(nanoTime() - origin, RESOLUTION_NANOS);
+    }
+
+    /**
+     * Main loop of the scheduler thread.
+     */
+    private void run() {
+        final var due = new ArrayList<Runnable>();
+
+        while (true) {
+            synchronized (wheel) {
+                try {
+                    while (true) {
+                        if (wheel.size() == 0) {
+                            wheel.wait();
+                            continue;
+                        }
+
+                        final long sleepNanos = origin + (wheel.getCurrentTick() + 1) * RESOLUTION_NANOS - nanoTime();
+                        if (sleepNanos <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(wheel, sleepNanos);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                wheel.advanceTo(currentTick(), due);
+            }
+
+            for (var task : due) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            due.clear();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.PriorityQueue;
+
+/**
+ * {@link Clock} with virtual time, which only advances when {@link ManualClock#advance(long)} is called.
+ *
+ * <p>
+ * Scheduled tasks are run on the thread which advances the clock, in order of their due time. Tasks which are due at
+ * the same time run in the order which they were scheduled. This class is not thread-safe.
+ * </p>
+ */
+public class ManualClock implements Clock {
+
+    private static class Entry implements Task, Comparable<Entry> {
+        final long dueAt;
+        final long seq;
+        @NotNull
+        final Runnable task;
+        boolean cancelled = false;
+
+        Entry(long dueAt, long seq, @NotNull Runnable task) {
+            this.dueAt = dueAt;
+            this.seq = seq;
+            this.task = task;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(@NotNull Entry o) {
+            int c = Long.compare(dueAt, o.dueAt);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    @NotNull
+    private final PriorityQueue<Entry> tasks = new PriorityQueue<>();
+    private long now = 0;
+    private long nextSeq = 0;
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @NotNull
+    @Override
+    public Task schedule(@NotNull Runnable task, long delayNanos) {
+        var entry = new Entry(now + Math.max(0, delayNanos), nextSeq++, task);
+        tasks.add(entry);
+        return entry;
+    }
+
+    /**
+     * Advances the clock, running every task which becomes due. Tasks scheduled by other tasks are also run if they
+     * become due within the same interval.
+     *
+     * @param nanos Number of nanoseconds to advance by.
+     * @throws IllegalArgumentException if {@code nanos} is negative.
+     */
+    public void advance(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Cannot advance the clock backwards");
+        }
+
+        final long target = now + nanos;
+        while (!tasks.isEmpty() && tasks.peek().dueAt <= target) {
+            var entry = tasks.poll();
+            if (entry.cancelled) {
+                continue;
+            }
+
+            now = entry.dueAt;
+            entry.task.run();
+        }
+        now = target;
+    }
+
+    /**
+     * @return Whether any task is waiting to run.
+     */
+    public boolean hasPendingTasks() {
+        tasks.removeIf(e -> e.cancelled);
+        return !tasks.isEmpty();
+    }
+}
@@ -0,0 +1,162 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A fixed-timestep timer driven by a {@link Clock}.
+ *
+ * <p>
+ * A ticker fires once per period. If the clock falls behind, the next firing reports every tick which was missed, so
+ * that no tick is lost. Stopping a ticker remembers how far it has progressed into the current period, so that starting
+ * it again resumes with the same phase instead of waiting for a full period.
+ * </p>
+ */
+public class Ticker {
+
+    @NotNull
+    private final Clock clock;
+    @NotNull
+    private final IntConsumer onTicks;
+    private long periodNanos;
+
+    /**
+     * Time into the current tick when the ticker was last stopped.
+     */
+    private long phaseNanos = 0;
+    /**
+     * Value of {@link Clock#nanoTime()} at which the next tick is due. Only meaningful while running.
+     */
+    private long nextTickAt;
+    @Nullable
+    private Clock.Task pending = null;
+
+    /**
+     * Creates a stopped ticker.
+     *
+     * @param clock       Clock which drives the ticker.
+     * @param periodNanos Duration of each tick in nanoseconds.
+     * @param onTicks     Callback which is run on the thread of the clock with the number of ticks which have elapsed
+     *                    since the last invocation. This is usually 1, but may be larger if the clock fell behind.
+     * @throws IllegalArgumentException if {@code periodNanos} is not positive.
+     */
+    public Ticker(@NotNull Clock clock, long periodNanos, @NotNull IntConsumer onTicks) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Tick period must be positive");
+        }
+
+        this.clock = clock;
+        this.periodNanos = periodNanos;
+        this.onTicks = onTicks;
+    }
+
+    /**
+     * Starts or resumes the ticker. The first tick fires after the remainder of the period which was interrupted by
+     * {@link Ticker#stop()}, or after a full period if the ticker has never run.
+     */
+    public synchronized void start() {
+        if (pending != null) {
+            return;
+        }
+
+        final long now = clock.nanoTime();
+        nextTickAt = now + periodNanos - phaseNanos;
+        scheduleNext(now);
+    }
+
+    /**
+     * Stops the ticker, remembering the progress into the current tick.
+     */
+    public synchronized void stop() {
+        if (pending == null) {
+            return;
+        }
+
+        pending.cancel();
+        pending = null;
+        phaseNanos = Math.max(0, Math.min(periodNanos - 1, periodNanos - (nextTickAt - clock.nanoTime())));
+    }
+
+    /**
+     * Stops the ticker and discards the progress into the current tick.
+     */
+    public synchronized void reset() {
+        stop();
+        phaseNanos = 0;
+    }
+
+    /**
+     * @return Whether the ticker is running.
+     */
+    public synchronized boolean isRunning() {
+        return pending != null;
+    }
+
+    /**
+     * @return Progress into the current tick as a fraction of the period, from {@code 0} inclusive to {@code 1}
+     * exclusive. This is frozen while the ticker is stopped.
+     */
+    public synchronized double getPhase() {
+        final long phase = pending != null ? periodNanos - (nextTickAt - clock.nanoTime()) : phaseNanos;
+        return Math.max(0, Math.min(periodNanos - 1, phase)) / (double) periodNanos;
+    }
+
+    /**
+     * Changes the duration of each tick. The progress into the current tick is kept as a fraction of the period.
+     *
+     * @param periodNanos New duration of each tick in nanoseconds.
+     * @throws IllegalArgumentException if {@code periodNanos} is not positive.
+     */
+    public synchronized void setPeriod(long periodNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Tick period must be positive");
+        }
+
+        final boolean wasRunning = isRunning();
+        stop();
+        phaseNanos = (long) ((double) phaseNanos / this.periodNanos * periodNanos);
+        this.periodNanos = periodNanos;
+        if (wasRunning) {
+            start();
+        }
+    }
+
+    /**
+     * @return Duration of each tick in nanoseconds.
+     */
+    public synchronized long getPeriod() {
+        return periodNanos;
+    }
+
+    private void scheduleNext(long now) {
+        pending = clock.schedule(this::fire, nextTickAt - now);
+    }
+
+    /**
+     * Reports all elapsed ticks and schedules the next firing.
+     *
+     * <p>
+     * This runs while holding the lock of the ticker, so that no ticks are reported after {@link Ticker#stop()}
+     * returns.
+     * </p>
+     */
+    private synchronized void fire() {
+        if (pending == null) {
+            return;
+        }
+
+        final long now = clock.nanoTime();
+        int ticks = 0;
+        while (nextTickAt <= now) {
+            nextTickAt += periodNanos;
+            ++ticks;
+        }
+        scheduleNext(now);
+
+        if (ticks > 0) {
+            onTicks.accept(ticks);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package models.timing;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel, which stores tasks by the tick at which they are due.
+ *
+ * <p>
+ * The wheel has {@link TimingWheel#LEVELS} levels of {@link TimingWheel#SLOTS} slots each. A task is stored at the
+ * lowest level where its deadline shares all higher bits with the current tick, in the slot given by the bits of that
+ * level. Whenever the current tick crosses into a new slot of a level, the tasks in that slot are redistributed to the
+ * lower levels. Scheduling and cancelling a task are both {@code O(1)}, as every slot is a doubly-linked list.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    /**
+     * Number of levels, enough to cover every bit of a {@code long} tick.
+     */
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+    /**
+     * A task stored in the wheel.
+     */
+    static final class Entry {
+        final long deadline;
+        @Nullable
+        final Runnable task;
+        @Nullable
+        Entry prev;
+        @Nullable
+        Entry next;
+
+        private Entry(long deadline, @Nullable Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * @return Whether this entry is still stored in a wheel.
+         */
+        boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+    /**
+     * Sentinel nodes of the circular list of each slot, indexed by {@code level * SLOTS + slot}.
+     */
+    @NotNull
+    private final Entry[] slots = new Entry[LEVELS * SLOTS];
+    private long currentTick;
+    private int size = 0;
+
+    /**
+     * @param startTick Initial value of the current tick.
+     */
+    TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        for (int i = 0; i < slots.length; ++i) {
+            var sentinel = new Entry(0, null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            slots[i] = sentinel;
+        }
+    }
+
+    /**
+     * @return The last tick which has been processed.
+     */
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * @return Number of tasks in the wheel.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds a task to the wheel.
+     *
+     * @param deadline Tick at which the task is due. Deadlines which have already passed are moved to the next tick.
+     * @param task     Task to add.
+     * @return The entry of the task, which can be passed to {@link TimingWheel#cancel(Entry)}.
+     */
+    @NotNull
+    Entry schedule(long deadline, @NotNull Runnable task) {
+        var entry = new Entry(Math.max(deadline, currentTick + 1), task);
+        insert(entry);
+        ++size;
+        return entry;
+    }
+
+    /**
+     * Removes a task from the wheel.
+     *
+     * @param entry Entry of the task.
+     * @return {@code true} if the task was removed, {@code false} if it has already been run or cancelled.
+     */
+    boolean cancel(@NotNull Entry entry) {
+        if (!entry.isScheduled()) {
+            return false;
+        }
+
+        unlink(entry);
+        --size;
+        return true;
+    }
+
+    /**
+     * Advances the current tick, collecting all tasks which become due. Collected tasks are removed from the wheel.
+     *
+     * @param tick Tick to advance to.
+     * @param due  List to append the due tasks to, in order of their deadline.
+     */
+    void advanceTo(long tick, @NotNull List<Runnable> due) {
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick;
+                return;
+            }
+
+            ++currentTick;
+            cascade();
+
+            var sentinel = slots[(int) (currentTick & SLOT_MASK)];
+            while (sentinel.next != sentinel) {
+                var entry = sentinel.next;
+                unlink(entry);
+                --size;
+                due.add(entry.task);
+            }
+        }
+    }
+
+    /**
+     * Redistributes the slots of the higher levels which the current tick has just entered, starting from the highest
+     * level so that tasks can fall through multiple levels.
+     */
+    private void cascade() {
+        int level = 0;
+        while (level + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+            ++level;
+        }
+
+        for (; level > 0; --level) {
+            var sentinel = slots[level * SLOTS + (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+            var entry = sentinel.next;
+            sentinel.next = sentinel;
+            sentinel.prev = sentinel;
+
+            while (entry != sentinel) {
+                var next = entry.next;
+                insert(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void insert(@NotNull Entry entry) {
+        int level = 0;
+        while (level + 1 < LEVELS && (entry.deadline >>> (SLOT_BITS * (level + 1))) != (currentTick >>> (SLOT_BITS * (level + 1)))) {
+            ++level;
+        }
+
+        var sentinel = slots[level * SLOTS + (int) ((entry.deadline >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        entry.prev = sentinel.prev;
+        entry.next = sentinel;
+        sentinel.prev.next = entry;
+        sentinel.prev = entry;
+    }
+
+    private static void unlink(@NotNull Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+}
@@ -0,0 +1,321 @@
+package models.validation;
+
+import io.GameProperties;
+import models.map.cells.Cell;
+import models.map.cells.FillableCell;
+import models.map.cells.TerminationCell;
+import org.jetbrains.annotations.NotNull;
+import util.BitGrid;
+import util.Coordinate;
+import util.Direction;
+import util.IntList;
+import util.PackedCoordinate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks whether a level can be loaded and played, by applying a list of {@link Rule rules} to its properties.
+ *
+ * <p>
+ * The default rules cover every requirement of the game and the level editor: the dimensions and delay of the level,
+ * that every cell is present, that there is exactly one source inside the map and one sink on its edge, that neither
+ * of them faces a wall, and that the sink can be reached from the source. Rules skip their checks when an earlier
+ * rule has found the level too broken to check, so each problem is only reported once.
+ * </p>
+ * <p>
+ * Validators are immutable and can be shared between threads.
+ * </p>
+ */
+public class LevelValidator {
+
+    /**
+     * A check applied to a level.
+     */
+    @FunctionalInterface
+    public interface Rule {
+        /**
+         * @param prop   Properties of the level.
+         * @param issues List to add the issues found in the level to.
+         */
+        void check(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues);
+    }
+
+    @NotNull
+    private static final List<Rule> DEFAULT_RULES = List.of(
+            LevelValidator::checkDimensions,
+            LevelValidator::checkDelay,
+            LevelValidator::checkCells,
+            LevelValidator::checkTerminations,
+            LevelValidator::checkBorder,
+            LevelValidator::checkReachability
+    );
+
+    @NotNull
+    private final List<Rule> rules;
+
+    /**
+     * Creates a validator which applies {@link LevelValidator#getDefaultRules()}.
+     */
+    public LevelValidator() {
+        this(DEFAULT_RULES);
+    }
+
+    /**
+     * @param rules Rules to apply, in order.
+     */
+    public LevelValidator(@NotNull List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * @return The rules which are applied by default, in order.
+     */
+    @NotNull
+    public static List<Rule> getDefaultRules() {
+        return DEFAULT_RULES;
+    }
+
+    /**
+     * Validates a level.
+     *
+     * @param prop Properties of the level.
+     * @return All issues found in the level, in the order of the rules which found them.
+     */
+    @NotNull
+    public List<ValidationIssue> validate(@NotNull GameProperties prop) {
+        final var issues = new ArrayList<ValidationIssue>();
+        for (var rule : rules) {
+            rule.check(prop, issues);
+        }
+        return Collections.unmodifiableList(issues);
+    }
+
+    /**
+     * @param issues Issues of a level.
+     * @return Whether none of the issues is an {@link ValidationIssue.Severity#ERROR}.
+     */
+    public static boolean isValid(@NotNull List<ValidationIssue> issues) {
+        return issues.stream().noneMatch(issue -> issue.getSeverity() == ValidationIssue.Severity.ERROR);
+    }
+
+    private static void checkDimensions(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues) {
+        if (prop.rows < 2 || prop.cols < 2) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.BAD_DIMENSIONS, "Map size must be at least 2x2!", null));
+            return;
+        }
+
+        if (prop.cells.length != prop.rows) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.BAD_DIMENSIONS,
+                    "Map has " + prop.cells.length + " rows, expected " + prop.rows, null));
+            return;
+        }
+        for (int r = 0; r < prop.rows; ++r) {
+            if (prop.cells[r] == null || prop.cells[r].length != prop.cols) {
+                issues.add(new ValidationIssue(ValidationIssue.Type.BAD_DIMENSIONS,
+                        "Row " + r + " of map has " + (prop.cells[r] == null ? 0 : prop.cells[r].length)
+                                + " columns, expected " + prop.cols, null));
+                return;
+            }
+        }
+    }
+
+    private static void checkDelay(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues) {
+        if (prop.delay < 1) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.BAD_DELAY, "Delay must be a positive value!", null));
+        }
+    }
+
+    private static void checkCells(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues) {
+        if (!hasValidShape(prop)) {
+            return;
+        }
+
+        for (int r = 0; r < prop.rows; ++r) {
+            for (int c = 0; c < prop.cols; ++c) {
+                final var cell = prop.cells[r][c];
+                final var coord = new Coordinate(r, c);
+                if (cell == null) {
+                    issues.add(new ValidationIssue(ValidationIssue.Type.MISSING_CELL,
+                            "Cell at " + format(coord) + " is missing", coord));
+                } else if (cell.coord == null || !cell.coord.equals(coord)) {
+                    issues.add(new ValidationIssue(ValidationIssue.Type.MISPLACED_CELL,
+                            "Cell at " + format(coord) + " has the coordinate "
+                                    + (cell.coord == null ? "null" : format(cell.coord)), coord));
+                }
+            }
+        }
+    }
+
+    private static void checkTerminations(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues) {
+        if (!hasValidShape(prop)) {
+            return;
+        }
+
+        final var sources = findTerminations(prop, TerminationCell.Type.SOURCE);
+        final var sinks = findTerminations(prop, TerminationCell.Type.SINK);
+
+        if (sources.isEmpty()) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.MISSING_SOURCE, "Source tile is missing!", null));
+        }
+        for (int i = 1; i < sources.size(); ++i) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.MULTIPLE_SOURCES,
+                    "Extra source tile at " + format(sources.get(i).coord), sources.get(i).coord));
+        }
+        if (sinks.isEmpty()) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.MISSING_SINK, "Sink tile is missing!", null));
+        }
+        for (int i = 1; i < sinks.size(); ++i) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.MULTIPLE_SINKS,
+                    "Extra sink tile at " + format(sinks.get(i).coord), sinks.get(i).coord));
+        }
+
+        for (var source : sources) {
+            if (isOnEdge(prop, source.coord)) {
+                issues.add(new ValidationIssue(ValidationIssue.Type.SOURCE_ON_EDGE,
+                        "Source tile at " + format(source.coord) + " is on the edge of the map", source.coord));
+                continue;
+            }
+
+            final var target = source.coord.add(source.pointingTo.getOffset());
+            if (!(prop.cells[target.row][target.col] instanceof FillableCell)) {
+                issues.add(new ValidationIssue(ValidationIssue.Type.SOURCE_BLOCKED,
+                        "Source tile is blocked by a wall!", source.coord));
+            }
+        }
+        for (var sink : sinks) {
+            final var outside = sink.coord.add(sink.pointingTo.getOffset());
+            if (isInBounds(prop, outside)) {
+                issues.add(new ValidationIssue(ValidationIssue.Type.SINK_NOT_ON_EDGE,
+                        "Sink tile at " + format(sink.coord) + " does not point out of the map", sink.coord));
+                continue;
+            }
+
+            final var inside = sink.coord.add(sink.pointingTo.getOpposite().getOffset());
+            if (!isInBounds(prop, inside) || !(prop.cells[inside.row][inside.col] instanceof FillableCell)) {
+                issues.add(new ValidationIssue(ValidationIssue.Type.SINK_BLOCKED,
+                        "Sink tile is blocked by a wall!", sink.coord));
+            }
+        }
+    }
+
+    private static void checkBorder(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues) {
+        if (!hasValidShape(prop)) {
+            return;
+        }
+
+        Coordinate first = null;
+        int count = 0;
+        for (int r = 0; r < prop.rows; ++r) {
+            for (int c = 0; c < prop.cols; ++c) {
+                final var coord = new Coordinate(r, c);
+                final var cell = prop.cells[r][c];
+                if (isOnEdge(prop, coord) && cell instanceof FillableCell) {
+                    if (first == null) {
+                        first = coord;
+                    }
+                    ++count;
+                }
+            }
+        }
+
+        if (first != null) {
+            issues.add(new ValidationIssue(ValidationIssue.Type.OPEN_BORDER,
+                    count + " cells on the edge of the map are not walls, starting at " + format(first), first));
+        }
+    }
+
+    private static void checkReachability(@NotNull GameProperties prop, @NotNull List<ValidationIssue> issues) {
+        if (!hasValidShape(prop)) {
+            return;
+        }
+
+        final var sources = findTerminations(prop, TerminationCell.Type.SOURCE);
+        final var sinks = findTerminations(prop, TerminationCell.Type.SINK);
+        if (sources.size() != 1 || sinks.size() != 1) {
+            return;
+        }
+
+        final var source = sources.get(0);
+        final var sink = sinks.get(0);
+        final var start = source.coord.add(source.pointingTo.getOffset());
+        final var goal = sink.coord.add(sink.pointingTo.getOpposite().getOffset());
+        if (!isInBounds(prop, start) || !isInBounds(prop, goal)
+                || !(prop.cells[start.row][start.col] instanceof FillableCell)
+                || !(prop.cells[goal.row][goal.col] instanceof FillableCell)) {
+            // already reported as blocked
+            return;
+        }
+
+        // any path through empty cells can be filled with pipes, so only walls can cut off the sink
+        final var visited = new BitGrid(prop.rows, prop.cols);
+        final var toVisit = new IntList();
+        visited.set(start.row, start.col);
+        toVisit.add(PackedCoordinate.pack(start.row, start.col));
+        for (int i = 0; i < toVisit.size(); ++i) {
+            final int row = PackedCoordinate.row(toVisit.get(i));
+            final int col = PackedCoordinate.col(toVisit.get(i));
+            if (row == goal.row && col == goal.col) {
+                return;
+            }
+
+            for (var dir : Direction.values()) {
+                final int nRow = row + dir.getRowOffset();
+                final int nCol = col + dir.getColOffset();
+                if (nRow < 0 || nRow >= prop.rows || nCol < 0 || nCol >= prop.cols || visited.get(nRow, nCol)) {
+                    continue;
+                }
+                if (prop.cells[nRow][nCol] instanceof FillableCell) {
+                    visited.set(nRow, nCol);
+                    toVisit.add(PackedCoordinate.pack(nRow, nCol));
+                }
+            }
+        }
+
+        issues.add(new ValidationIssue(ValidationIssue.Type.UNREACHABLE_SINK,
+                "Sink tile cannot be reached from the source tile", sink.coord));
+    }
+
+    /**
+     * @return Whether the cell array matches the dimensions of the level, which all other rules require.
+     */
+    private static boolean hasValidShape(@NotNull GameProperties prop) {
+        if (prop.rows < 2 || prop.cols < 2 || prop.cells.length != prop.rows) {
+            return false;
+        }
+        for (var row : prop.cells) {
+            if (row == null || row.length != prop.cols) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static List<TerminationCell> findTerminations(@NotNull GameProperties prop,
+                                                          @NotNull TerminationCell.Type type) {
+        final var cells = new ArrayList<TerminationCell>();
+        for (var row : prop.cells) {
+            for (Cell cell : row) {
+                if (cell instanceof TerminationCell && ((TerminationCell) cell).type == type) {
+                    cells.add((TerminationCell) cell);
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static boolean isInBounds(@NotNull GameProperties prop, @NotNull Coordinate coord) {
+        return coord.row >= 0 && coord.row < prop.rows && coord.col >= 0 && coord.col < prop.cols;
+    }
+
+    private static boolean isOnEdge(@NotNull GameProperties prop, @NotNull Coordinate coord) {
+        return coord.row == 0 || coord.row == prop.rows - 1 || coord.col == 0 || coord.col == prop.cols - 1;
+    }
+
+    @NotNull
+    private static String format(@NotNull Coordinate coord) {
+        return "(" + coord.row + ", " + coord.col + ")";
+    }
+}
@@ -0,0 +1,107 @@
+package models.validation;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.Coordinate;
+
+/**
+ * A problem found in a level by {@link LevelValidator}.
+ */
+public final class ValidationIssue {
+
+    /**
+     * How serious an issue is.
+     */
+    public enum Severity {
+        /**
+         * The level cannot be loaded or played.
+         */
+        ERROR,
+        /**
+         * The level can be played, but is likely to be a mistake.
+         */
+        WARNING
+    }
+
+    /**
+     * Kind of an issue.
+     */
+    public enum Type {
+        BAD_DIMENSIONS(Severity.ERROR),
+        BAD_DELAY(Severity.ERROR),
+        MISSING_CELL(Severity.ERROR),
+        MISPLACED_CELL(Severity.ERROR),
+        MISSING_SOURCE(Severity.ERROR),
+        MULTIPLE_SOURCES(Severity.ERROR),
+        MISSING_SINK(Severity.ERROR),
+        MULTIPLE_SINKS(Severity.ERROR),
+        SOURCE_ON_EDGE(Severity.ERROR),
+        SINK_NOT_ON_EDGE(Severity.ERROR),
+        SOURCE_BLOCKED(Severity.ERROR),
+        SINK_BLOCKED(Severity.ERROR),
+        UNREACHABLE_SINK(Severity.ERROR),
+        OPEN_BORDER(Severity.WARNING),
+        /**
+         * The level file cannot be read or parsed. Only reported by tools which read level files.
+         */
+        UNREADABLE(Severity.ERROR);
+
+        @NotNull
+        private final Severity severity;
+
+        Type(@NotNull Severity severity) {
+            this.severity = severity;
+        }
+
+        /**
+         * @return Severity of issues of this type.
+         */
+        @NotNull
+        public Severity getSeverity() {
+            return severity;
+        }
+    }
+
+    @NotNull
+    private final Type type;
+    @NotNull
+    private final String message;
+    @Nullable
+    private final Coordinate coord;
+
+    /**
+     * @param type    Kind of the issue.
+     * @param message Human-readable description of the issue.
+     * @param coord   Position of the cell which causes the issue, or {@code null} if the issue is not about one cell.
+     */
+    public ValidationIssue(@NotNull Type type, @NotNull String message, @Nullable Coordinate coord) {
+        this.type = type;
+        this.message = message;
+        this.coord = coord;
+    }
+
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    @NotNull
+    public Severity getSeverity() {
+        return type.getSeverity();
+    }
+
+    @NotNull
+    public String getMessage() {
+        return message;
+    }
+
+    @Nullable
+    public Coordinate getCoord() {
+        return coord;
+    }
+
+    @Override
+    public String toString() {
+        return getSeverity() + " " + type + ": " + message;
+    }
+}
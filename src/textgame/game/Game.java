@@ -1,11 +1,10 @@
 package textgame.game;
 
 import io.Deserializer;
-import models.CellStack;
-import models.PipeQueue;
+import io.GameProperties;
+import models.GameCore;
 import models.map.Map;
 import models.map.cells.Cell;
-import models.map.cells.FillableCell;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -16,15 +15,9 @@ import java.util.List;
 public class Game {
 
     @NotNull
-    private final Map map;
-    @NotNull
-    private final PipeQueue pipeQueue;
+    private final GameCore core;
     @NotNull
     private final DelayBar delayBar;
-    @NotNull
-    private final CellStack cellStack = new CellStack();
-
-    private int numOfSteps = 0;
 
     /**
      * Creates a game with a map of rows x cols.
@@ -34,9 +27,7 @@ public class Game {
      */
     public Game(int rows, int cols) {
         // adjust for the wall
-        map = new Map(rows + 2, cols + 2);
-
-        pipeQueue = new PipeQueue();
+        core = new GameCore(rows + 2, cols + 2);
         delayBar = new DelayBar(5);
     }
 
@@ -50,12 +41,19 @@ public class Game {
      * @param pipes List of pre-generated pipes, if any.
      */
     public Game(int rows, int cols, int delay, @NotNull Cell[][] cells, @Nullable List<Pipe> pipes) {
-        map = new Map(rows, cols, cells);
-
-        pipeQueue = new PipeQueue(pipes);
+        core = new GameCore(rows, cols, cells, pipes);
         delayBar = new DelayBar(delay);
     }
 
+    /**
+     * Creates a game from the properties of a game file.
+     *
+     * @param prop Properties of the game.
+     */
+    public Game(@NotNull GameProperties prop) {
+        this(prop.rows, prop.cols, prop.delay, prop.cells, prop.pipes);
+    }
+
     /**
      * Creates a game with a given map and various properties.
      *
@@ -90,16 +88,9 @@ public class Game {
      * @return {@code true} if the pipe is placed.
      */
     public boolean placePipe(int row, char col) {
-        Pipe p = pipeQueue.peek();
-
-        var coord = new Coordinate(row, col - 'A' + 1);
-        var result = map.tryPlacePipe(coord, p);
+        var result = core.placePipe(new Coordinate(row, col - 'A' + 1));
         if (result) {
-            pipeQueue.consume();
             delayBar.countdown();
-            cellStack.push(new FillableCell(coord, p));
-
-            ++numOfSteps;
         }
         return result;
     }
@@ -108,8 +99,7 @@ public class Game {
      * Directly skips the current pipe and use the next pipe.
      */
     public void skipPipe() {
-        pipeQueue.consume();
-        ++numOfSteps;
+        core.skipPipe();
     }
 
     /**
@@ -125,31 +115,17 @@ public class Game {
      * @return {@code false} if there are no steps to undo, otherwise {@code true}.
      */
     public boolean undoStep() {
-        var undoCell = cellStack.pop();
-        if (undoCell != null) {
-            if (undoCell.getPipe().map(Pipe::getFilled).orElse(false)) {
-                cellStack.push(undoCell);
-                return false;
-            }
-            pipeQueue.undo(undoCell.getPipe().orElseThrow());
-            map.undo(undoCell.coord);
-
-            ++numOfSteps;
-
-            return true;
-        } else {
-            return false;
-        }
+        return core.undoStep();
     }
 
     /**
      * Displays the current game state.
      */
     public void display() {
-        map.display();
+        core.getMap().display();
         System.out.println();
-        pipeQueue.display();
-        cellStack.display();
+        core.getPipeQueue().display();
+        core.getCellStack().display();
         System.out.println();
         delayBar.display();
     }
@@ -162,12 +138,7 @@ public class Game {
      * </p>
      */
     public void updateState() {
-        if (delayBar.distance() == 0) {
-            map.fillBeginTile();
-            map.fillTiles(delayBar.distance());
-        } else if (delayBar.distance() > 0) {
-            map.fillTiles(delayBar.distance());
-        }
+        core.updateState(delayBar.distance());
     }
 
     /**
@@ -176,7 +147,7 @@ public class Game {
      * @return {@code true} if the game is won.
      */
     public boolean hasWon() {
-        return map.checkPath();
+        return core.hasWon();
     }
 
     /**
@@ -185,17 +156,13 @@ public class Game {
      * @return {@code true} if the game is lost.
      */
     public boolean hasLost() {
-        if (delayBar.distance() <= 0) {
-            return false;
-        } else {
-            return map.hasLost();
-        }
+        return core.hasLost(delayBar.distance());
     }
 
     /**
      * @return Number of steps the player has taken.
      */
     public int getNumOfSteps() {
-        return numOfSteps;
+        return core.getNumOfSteps();
     }
 }
@@ -0,0 +1,132 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size 2D grid of bits.
+ *
+ * <p>
+ * Bits are stored in pages of {@link BitGrid#PAGE_SIZE} x {@link BitGrid#PAGE_SIZE}, with one {@code long} per row of
+ * a page. Pages are only allocated when a bit in them is first set, so the memory used by a sparse grid is bounded by
+ * the area around its set bits rather than by its size.
+ * </p>
+ */
+public class BitGrid {
+
+    private static final int PAGE_BITS = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int rows;
+    private final int cols;
+    private final int pageCols;
+    /**
+     * Pages of the grid, or {@code null} for pages which have not been allocated.
+     */
+    @NotNull
+    private final long[][] pages;
+
+    /**
+     * Creates a grid with all bits cleared.
+     *
+     * @param rows Number of rows.
+     * @param cols Number of columns.
+     */
+    public BitGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pageCols = (cols + PAGE_MASK) >>> PAGE_BITS;
+        this.pages = new long[((rows + PAGE_MASK) >>> PAGE_BITS) * pageCols][];
+    }
+
+    /**
+     * @param row Row of the bit.
+     * @param col Column of the bit.
+     * @return Whether the bit is set.
+     */
+    public boolean get(int row, int col) {
+        var page = pages[pageIndex(row, col)];
+        return page != null && (page[row & PAGE_MASK] & 1L << col) != 0;
+    }
+
+    /**
+     * Sets a bit.
+     *
+     * @param row Row of the bit.
+     * @param col Column of the bit.
+     */
+    public void set(int row, int col) {
+        getOrCreatePage(row, col)[row & PAGE_MASK] |= 1L << col;
+    }
+
+    /**
+     * Sets a bit.
+     *
+     * @param row Row of the bit.
+     * @param col Column of the bit.
+     * @return {@code true} if the bit was previously cleared.
+     */
+    public boolean add(int row, int col) {
+        var page = getOrCreatePage(row, col);
+        long word = page[row & PAGE_MASK];
+        long bit = 1L << col;
+
+        page[row & PAGE_MASK] = word | bit;
+        return (word & bit) == 0;
+    }
+
+    /**
+     * Clears a bit.
+     *
+     * @param row Row of the bit.
+     * @param col Column of the bit.
+     */
+    public void clear(int row, int col) {
+        var page = pages[pageIndex(row, col)];
+        if (page != null) {
+            page[row & PAGE_MASK] &= ~(1L << col);
+        }
+    }
+
+    /**
+     * Clears all bits. Allocated pages are kept for reuse.
+     */
+    public void clear() {
+        for (var page : pages) {
+            if (page != null) {
+                Arrays.fill(page, 0L);
+            }
+        }
+    }
+
+    /**
+     * @return Number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    private int pageIndex(int row, int col) {
+        return (row >>> PAGE_BITS) * pageCols + (col >>> PAGE_BITS);
+    }
+
+    @NotNull
+    private long[] getOrCreatePage(int row, int col) {
+        final int index = pageIndex(row, col);
+        var page = pages[index];
+        if (page == null) {
+            page = new long[PAGE_SIZE];
+            pages[index] = page;
+        }
+        return page;
+    }
+}
@@ -7,44 +7,71 @@ import org.jetbrains.annotations.NotNull;
  * Represents a direction in reference to a {@link Cell}.
  */
 public enum Direction {
-    UP, DOWN, LEFT, RIGHT;
+    UP(-1, 0), DOWN(1, 0), LEFT(0, -1), RIGHT(0, 1);
+
+    /**
+     * Cached result of {@link Direction#values()}.
+     */
+    private static final Direction[] VALUES = values();
+
+    private final int rowOffset;
+    private final int colOffset;
+    @NotNull
+    private final Coordinate offset;
+    private final int mask;
+
+    Direction(int rowOffset, int colOffset) {
+        this.rowOffset = rowOffset;
+        this.colOffset = colOffset;
+        this.offset = new Coordinate(rowOffset, colOffset);
+        this.mask = 1 << ordinal();
+    }
+
+    /**
+     * @param ordinal Ordinal of the direction.
+     * @return The direction with the given ordinal.
+     */
+    @NotNull
+    public static Direction fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
 
     /**
      * @return The opposite direction of {@code this}.
      */
     @NotNull
     public Direction getOpposite() {
-        switch (this) {
-            case UP:
-                return DOWN;
-            case DOWN:
-                return UP;
-            case LEFT:
-                return RIGHT;
-            case RIGHT:
-                return LEFT;
-            default:
-                throw new IllegalStateException("Unknown direction");
-        }
+        // Directions are declared in pairs of opposites.
+        return VALUES[ordinal() ^ 1];
     }
 
     /**
-     * @return A unit coordinate offset as expressed by {@code this} coordinate.
+     * @return A unit coordinate offset as expressed by {@code this} coordinate. The returned instance is shared.
      */
     @NotNull
     public Coordinate getOffset() {
-        switch (this) {
-            case UP:
-                return new Coordinate(-1, 0);
-            case DOWN:
-                return new Coordinate(1, 0);
-            case LEFT:
-                return new Coordinate(0, -1);
-            case RIGHT:
-                return new Coordinate(0, 1);
-            default:
-                throw new IllegalStateException("Unknown direction");
-        }
+        return offset;
+    }
+
+    /**
+     * @return Row component of {@link Direction#getOffset()}.
+     */
+    public int getRowOffset() {
+        return rowOffset;
+    }
+
+    /**
+     * @return Column component of {@link Direction#getOffset()}.
+     */
+    public int getColOffset() {
+        return colOffset;
+    }
+
+    /**
+     * @return A bit mask with only the bit representing {@code this} direction set.
+     */
+    public int getMask() {
+        return mask;
     }
 
     /**
@@ -0,0 +1,82 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Set of cells of a map which have changed since the map was last rendered.
+ *
+ * <p>
+ * A new set starts with every cell marked, so that the first render draws the whole map. This class is not
+ * thread-safe, and is meant to be used on the thread which renders the map.
+ * </p>
+ */
+public class DirtyCells {
+
+    /**
+     * {@link PackedCoordinate} of changed cells, unless {@link DirtyCells#all} is set.
+     */
+    @NotNull
+    private final IntHashSet cells = new IntHashSet();
+    private boolean all = true;
+
+    /**
+     * Marks a cell as changed.
+     *
+     * @param row Row of the cell.
+     * @param col Column of the cell.
+     */
+    public void mark(int row, int col) {
+        if (!all) {
+            cells.add(PackedCoordinate.pack(row, col));
+        }
+    }
+
+    /**
+     * Marks every cell as changed, e.g. when the whole map has been replaced.
+     */
+    public void markAll() {
+        all = true;
+        cells.clear();
+    }
+
+    /**
+     * @return Whether every cell needs to be rendered.
+     */
+    public boolean isAllDirty() {
+        return all;
+    }
+
+    /**
+     * @return Whether no cell needs to be rendered.
+     */
+    public boolean isEmpty() {
+        return !all && cells.isEmpty();
+    }
+
+    /**
+     * @return Number of marked cells. Not meaningful if {@link DirtyCells#isAllDirty()}.
+     */
+    public int size() {
+        return cells.size();
+    }
+
+    /**
+     * Runs an action for every marked cell, in no particular order. Not meaningful if
+     * {@link DirtyCells#isAllDirty()}.
+     *
+     * @param action Action to run with the {@link PackedCoordinate} of each cell.
+     */
+    public void forEach(@NotNull IntConsumer action) {
+        cells.forEach(action);
+    }
+
+    /**
+     * Unmarks all cells, after they have been rendered.
+     */
+    public void clear() {
+        all = false;
+        cells.clear();
+    }
+}
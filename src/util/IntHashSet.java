@@ -0,0 +1,232 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of primitive {@code int} values using open addressing with linear probing.
+ *
+ * <p>
+ * Lookups and insertions neither box nor allocate, apart from growing the backing table.
+ * </p>
+ */
+public class IntHashSet {
+
+    /**
+     * Marker for an empty slot. The value itself is tracked by {@link IntHashSet#hasFreeKey}.
+     */
+    private static final int FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    @NotNull
+    private int[] keys;
+    private int mask;
+    private int size = 0;
+    private boolean hasFreeKey = false;
+
+    /**
+     * Creates an empty set.
+     */
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty set.
+     *
+     * @param expectedSize Number of values the set is expected to hold.
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        keys = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param value Value to check.
+     * @return Whether the set contains {@code value}.
+     */
+    public boolean contains(int value) {
+        if (value == FREE_KEY) {
+            return hasFreeKey;
+        }
+
+        int slot = hash(value) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value Value to add.
+     * @return {@code true} if the value was not already present.
+     */
+    public boolean add(int value) {
+        if (value == FREE_KEY) {
+            if (hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = true;
+            ++size;
+            return true;
+        }
+
+        int slot = hash(value) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value Value to remove.
+     * @return {@code true} if the value was present.
+     */
+    public boolean remove(int value) {
+        if (value == FREE_KEY) {
+            if (!hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = false;
+            --size;
+            return true;
+        }
+
+        int slot = hash(value) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == value) {
+                shiftKeys(slot);
+                --size;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Runs an action for every value in the set, in no particular order.
+     *
+     * @param action Action to run.
+     */
+    public void forEach(@NotNull IntConsumer action) {
+        if (hasFreeKey) {
+            action.accept(FREE_KEY);
+        }
+        for (int key : keys) {
+            if (key != FREE_KEY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * @return Number of values in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether the set is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values without releasing the backing table.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left by a removed key, so that probing sequences of the remaining keys stay intact.
+     *
+     * @param slot Slot of the removed key.
+     */
+    private void shiftKeys(int slot) {
+        while (true) {
+            int last = slot;
+            slot = (slot + 1) & mask;
+
+            int key;
+            while (true) {
+                key = keys[slot];
+                if (key == FREE_KEY) {
+                    keys[last] = FREE_KEY;
+                    return;
+                }
+
+                int ideal = hash(key) & mask;
+                // Move the key back if its ideal slot does not lie cyclically within (last, slot].
+                if (last <= slot ? (last >= ideal || ideal > slot) : (last >= ideal && ideal > slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            keys[last] = key;
+        }
+    }
+
+    private void rehash(int capacity) {
+        final var oldKeys = keys;
+        keys = new int[capacity];
+        mask = capacity - 1;
+
+        for (int key : oldKeys) {
+            if (key != FREE_KEY) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * Scrambles the bits of a key, so that packed coordinates are spread across the table.
+     *
+     * @param key Key to hash.
+     * @return Hash of the key.
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @param expectedSize Number of values to hold.
+     * @return Power-of-two table size which can hold {@code expectedSize} values under the load factor.
+     */
+    static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,211 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive {@code int} keys to primitive {@code int} values using open addressing with linear probing.
+ *
+ * <p>
+ * Lookups and insertions neither box nor allocate, apart from growing the backing table.
+ * </p>
+ */
+public class IntIntHashMap {
+
+    private static final int FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    @NotNull
+    private int[] keys;
+    @NotNull
+    private int[] values;
+    private int mask;
+    private int size = 0;
+
+    private boolean hasFreeKey = false;
+    private int freeKeyValue;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map.
+     *
+     * @param expectedSize Number of entries the map is expected to hold.
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = IntHashSet.tableSizeFor(expectedSize);
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param key          Key to look up.
+     * @param defaultValue Value to return if the key is absent.
+     * @return The value mapped to {@code key}, or {@code defaultValue} if there is none.
+     */
+    public int get(int key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+
+        int slot = IntHashSet.hash(key) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @param key Key to check.
+     * @return Whether the map contains {@code key}.
+     */
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+
+        int slot = IntHashSet.hash(key) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Maps a key to a value, replacing any existing value.
+     *
+     * @param key   Key to map.
+     * @param value Value to map to.
+     */
+    public void put(int key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                ++size;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+
+        int slot = IntHashSet.hash(key) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key Key to remove.
+     * @return {@code true} if the key was present.
+     */
+    public boolean remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = false;
+            --size;
+            return true;
+        }
+
+        int slot = IntHashSet.hash(key) & mask;
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                shiftKeys(slot);
+                --size;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries without releasing the backing table.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left by a removed entry, so that probing sequences of the remaining keys stay intact.
+     *
+     * @param slot Slot of the removed entry.
+     */
+    private void shiftKeys(int slot) {
+        while (true) {
+            int last = slot;
+            slot = (slot + 1) & mask;
+
+            int key;
+            while (true) {
+                key = keys[slot];
+                if (key == FREE_KEY) {
+                    keys[last] = FREE_KEY;
+                    return;
+                }
+
+                int ideal = IntHashSet.hash(key) & mask;
+                if (last <= slot ? (last >= ideal || ideal > slot) : (last >= ideal && ideal > slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            keys[last] = key;
+            values[last] = values[slot];
+        }
+    }
+
+    private void rehash(int capacity) {
+        final var oldKeys = keys;
+        final var oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != FREE_KEY) {
+                int slot = IntHashSet.hash(oldKeys[i]) & mask;
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive {@code int} values.
+ */
+public class IntList {
+
+    @NotNull
+    private int[] values;
+    private int size = 0;
+
+    /**
+     * Creates an empty list.
+     */
+    public IntList() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty list.
+     *
+     * @param capacity Initial capacity.
+     */
+    public IntList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     *
+     * @param value Value to append.
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Appends all values of another list.
+     *
+     * @param other List to append.
+     */
+    public void addAll(@NotNull IntList other) {
+        if (size + other.size > values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+        }
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * @param index Index of the value.
+     * @return The value at {@code index}.
+     * @throws IndexOutOfBoundsException if {@code index} is out of range.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return Number of values in the list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Whether the list is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values without releasing the backing storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,66 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helpers for packing a (row, column) pair into a single {@code int}.
+ *
+ * <p>
+ * The row is stored in the upper 16 bits and the column in the lower 16 bits, so both components must lie within
+ * {@code [0, 65535]}. Packed coordinates can be used as keys of {@link IntHashSet} and {@link IntIntHashMap} without
+ * boxing.
+ * </p>
+ */
+public final class PackedCoordinate {
+
+    /**
+     * Maximum value of a row or column which can be packed.
+     */
+    public static final int MAX_VALUE = 0xFFFF;
+
+    private PackedCoordinate() {
+        // You don't need to instantiate this class to use it!
+    }
+
+    /**
+     * @param row Row of the coordinate.
+     * @param col Column of the coordinate.
+     * @return The packed coordinate.
+     */
+    public static int pack(int row, int col) {
+        return row << 16 | col;
+    }
+
+    /**
+     * @param coord Coordinate to pack.
+     * @return The packed coordinate.
+     */
+    public static int pack(@NotNull Coordinate coord) {
+        return pack(coord.row, coord.col);
+    }
+
+    /**
+     * @param packed Packed coordinate.
+     * @return Row of the coordinate.
+     */
+    public static int row(int packed) {
+        return packed >>> 16;
+    }
+
+    /**
+     * @param packed Packed coordinate.
+     * @return Column of the coordinate.
+     */
+    public static int col(int packed) {
+        return packed & MAX_VALUE;
+    }
+
+    /**
+     * @param packed Packed coordinate.
+     * @return The packed coordinate as a {@link Coordinate}.
+     */
+    @NotNull
+    public static Coordinate unpack(int packed) {
+        return new Coordinate(row(packed), col(packed));
+    }
+}
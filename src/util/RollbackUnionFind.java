@@ -0,0 +1,142 @@
+package util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint-set forest over the integers {@code [0, size)} which supports undoing unions in reverse order.
+ *
+ * <p>
+ * Elements can be added with {@link RollbackUnionFind#add()}, so that the forest only needs to be as large as the
+ * number of elements which are actually used.
+ * </p>
+ *
+ * <p>
+ * Sets are merged by size without path compression, so that every union only modifies a single parent link and can be
+ * reverted in constant time. {@link RollbackUnionFind#find(int)} runs in {@code O(log n)}.
+ * </p>
+ */
+public class RollbackUnionFind {
+
+    @NotNull
+    private int[] parent;
+    @NotNull
+    private int[] size;
+    private int count;
+
+    /**
+     * Roots which were attached to another root, in the order of the unions.
+     */
+    @NotNull
+    private int[] history = new int[16];
+    private int historySize = 0;
+
+    /**
+     * Creates a forest where every element is in its own set.
+     *
+     * @param size Number of elements.
+     */
+    public RollbackUnionFind(int size) {
+        this.parent = new int[Math.max(size, 1)];
+        this.size = new int[Math.max(size, 1)];
+        this.count = size;
+
+        for (int i = 0; i < size; ++i) {
+            parent[i] = i;
+        }
+        Arrays.fill(this.size, 1);
+    }
+
+    /**
+     * Adds an element in its own set. Adding elements is not affected by {@link RollbackUnionFind#rollback(int)}.
+     *
+     * @return The new element, which is equal to the number of elements before this call.
+     */
+    public int add() {
+        if (count == parent.length) {
+            parent = Arrays.copyOf(parent, count * 2);
+            size = Arrays.copyOf(size, count * 2);
+        }
+
+        parent[count] = count;
+        size[count] = 1;
+        return count++;
+    }
+
+    /**
+     * @return Number of elements in the forest.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param x Element to find.
+     * @return Representative of the set containing {@code x}.
+     */
+    public int find(int x) {
+        while (parent[x] != x) {
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Merges the sets containing {@code a} and {@code b}.
+     *
+     * @param a First element.
+     * @param b Second element.
+     * @return {@code true} if the sets were merged, {@code false} if the elements were already in the same set.
+     */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+
+        if (size[rootA] < size[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+        }
+        history[historySize++] = rootB;
+        return true;
+    }
+
+    /**
+     * @return Number of unions which can be rolled back. Pass this value to {@link RollbackUnionFind#rollback(int)} to
+     * return to the current state.
+     */
+    public int checkpoint() {
+        return historySize;
+    }
+
+    /**
+     * Reverts all unions made after the given checkpoint.
+     *
+     * @param checkpoint Value previously returned by {@link RollbackUnionFind#checkpoint()}.
+     * @throws IllegalArgumentException if the checkpoint is newer than the current state.
+     */
+    public void rollback(int checkpoint) {
+        if (checkpoint > historySize) {
+            throw new IllegalArgumentException("Cannot roll back to a future checkpoint!");
+        }
+
+        while (historySize > checkpoint) {
+            int child = history[--historySize];
+            int root = parent[child];
+
+            size[root] -= size[child];
+            parent[child] = child;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package util;
+
+/**
+ * Camera over a map of square tiles, with pan and zoom.
+ *
+ * <p>
+ * The camera shows a window of at most {@link Viewport#getMaxWidth()} by {@link Viewport#getMaxHeight()} screen
+ * pixels. Positions on the map are measured in map pixels, where a tile is {@code tileSize} map pixels wide, and are
+ * scaled by the zoom factor on screen. The origin is kept within the map, so the camera never shows space beyond its
+ * edges.
+ * </p>
+ * <p>
+ * Every change to the camera increments its {@link Viewport#getRevision() revision}, which lets views detect whether
+ * they need to redraw everything. This class is not thread-safe.
+ * </p>
+ */
+public class Viewport {
+
+    /**
+     * Smallest zoom factor, at which a tile is an eighth of its size.
+     */
+    public static final double MIN_ZOOM = 1.0 / 8;
+    /**
+     * Largest zoom factor, at which a tile is four times its size.
+     */
+    public static final double MAX_ZOOM = 4;
+
+    private final int tileSize;
+    private final double maxWidth;
+    private final double maxHeight;
+
+    private int rows = 0;
+    private int cols = 0;
+    /**
+     * Map pixel shown at the left edge of the viewport.
+     */
+    private double originX = 0;
+    /**
+     * Map pixel shown at the top edge of the viewport.
+     */
+    private double originY = 0;
+    private double zoom = 1;
+    private long revision = 0;
+
+    /**
+     * @param tileSize  Width and height of a tile at a zoom factor of 1.
+     * @param maxWidth  Largest width of the viewport in screen pixels.
+     * @param maxHeight Largest height of the viewport in screen pixels.
+     * @throws IllegalArgumentException if any argument is not positive.
+     */
+    public Viewport(int tileSize, double maxWidth, double maxHeight) {
+        if (tileSize <= 0 || maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Viewport dimensions must be positive");
+        }
+        this.tileSize = tileSize;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Sets the size of the map shown by this viewport. The camera is reset if the size differs from the previous map.
+     *
+     * @param rows Number of rows of the map.
+     * @param cols Number of columns of the map.
+     */
+    public void setMapSize(int rows, int cols) {
+        if (rows == this.rows && cols == this.cols) {
+            return;
+        }
+        this.rows = rows;
+        this.cols = cols;
+        reset();
+    }
+
+    /**
+     * Moves the camera to the top-left of the map, at a zoom factor of 1.
+     */
+    public void reset() {
+        originX = 0;
+        originY = 0;
+        zoom = 1;
+        ++revision;
+    }
+
+    /**
+     * Zooms out until the whole map fits into the viewport, or as far as {@link Viewport#MIN_ZOOM}. Maps which already
+     * fit are shown at a zoom factor of 1.
+     */
+    public void zoomToFit() {
+        final double fit = Math.min(maxWidth / ((double) cols * tileSize), maxHeight / ((double) rows * tileSize));
+        zoom = clampZoom(Math.min(1, fit));
+        originX = 0;
+        originY = 0;
+        ++revision;
+    }
+
+    /**
+     * Moves the camera.
+     *
+     * @param dx Distance to move the map to the right, in screen pixels.
+     * @param dy Distance to move the map downwards, in screen pixels.
+     */
+    public void pan(double dx, double dy) {
+        originX -= dx / zoom;
+        originY -= dy / zoom;
+        clampOrigin();
+        ++revision;
+    }
+
+    /**
+     * Changes the zoom factor, keeping the map pixel under a screen position in place.
+     *
+     * @param factor  Factor to multiply the zoom factor by.
+     * @param screenX X-coordinate relative to the viewport which stays in place.
+     * @param screenY Y-coordinate relative to the viewport which stays in place.
+     */
+    public void zoomAt(double factor, double screenX, double screenY) {
+        final double newZoom = clampZoom(zoom * factor);
+        final double mapX = originX + screenX / zoom;
+        final double mapY = originY + screenY / zoom;
+        zoom = newZoom;
+        originX = mapX - screenX / zoom;
+        originY = mapY - screenY / zoom;
+        clampOrigin();
+        ++revision;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    public double getMaxWidth() {
+        return maxWidth;
+    }
+
+    public double getMaxHeight() {
+        return maxHeight;
+    }
+
+    /**
+     * @return Width of the viewport in screen pixels, which is smaller than the maximum if the map is narrower.
+     */
+    public double getWidth() {
+        return Math.min(maxWidth, Math.ceil(cols * tileSize * zoom));
+    }
+
+    /**
+     * @return Height of the viewport in screen pixels, which is smaller than the maximum if the map is shorter.
+     */
+    public double getHeight() {
+        return Math.min(maxHeight, Math.ceil(rows * tileSize * zoom));
+    }
+
+    /**
+     * @return Counter which is incremented whenever the camera is changed.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return Width and height of a tile on screen.
+     */
+    public double getScaledTileSize() {
+        return tileSize * zoom;
+    }
+
+    /**
+     * Retrieves the column drawn at a position on screen. This is consistent with {@link Viewport#getTileX(int)}, so a
+     * click on any pixel of a tile maps to the column of that tile.
+     *
+     * @param screenX X-coordinate relative to the viewport.
+     * @return Column of the map at the coordinate. May be out of bounds of the map.
+     */
+    public int toCol(double screenX) {
+        return (int) Math.ceil((originX + (Math.floor(screenX) + 1) / zoom) / tileSize) - 1;
+    }
+
+    /**
+     * Retrieves the row drawn at a position on screen. See {@link Viewport#toCol(double)}.
+     *
+     * @param screenY Y-coordinate relative to the viewport.
+     * @return Row of the map at the coordinate. May be out of bounds of the map.
+     */
+    public int toRow(double screenY) {
+        return (int) Math.ceil((originY + (Math.floor(screenY) + 1) / zoom) / tileSize) - 1;
+    }
+
+    /**
+     * Retrieves the left edge of a column on screen. Edges are rounded to whole pixels, so adjacent tiles never overlap
+     * or leave a gap, and a tile spans from the edge of its column to the edge of the next column.
+     *
+     * @param col Column of the map.
+     * @return X-coordinate of the left edge of the column relative to the viewport.
+     */
+    public double getTileX(int col) {
+        return Math.floor((col * tileSize - originX) * zoom);
+    }
+
+    /**
+     * Retrieves the top edge of a row on screen. See {@link Viewport#getTileX(int)}.
+     *
+     * @param row Row of the map.
+     * @return Y-coordinate of the top edge of the row relative to the viewport.
+     */
+    public double getTileY(int row) {
+        return Math.floor((row * tileSize - originY) * zoom);
+    }
+
+    /**
+     * @return First row which is at least partially visible.
+     */
+    public int getFirstVisibleRow() {
+        return Math.max(0, toRow(0));
+    }
+
+    /**
+     * @return Row after the last row which is at least partially visible.
+     */
+    public int getEndVisibleRow() {
+        return Math.min(rows, toRow(Math.nextDown(getHeight())) + 1);
+    }
+
+    /**
+     * @return First column which is at least partially visible.
+     */
+    public int getFirstVisibleCol() {
+        return Math.max(0, toCol(0));
+    }
+
+    /**
+     * @return Column after the last column which is at least partially visible.
+     */
+    public int getEndVisibleCol() {
+        return Math.min(cols, toCol(Math.nextDown(getWidth())) + 1);
+    }
+
+    /**
+     * @param row Row of the map.
+     * @param col Column of the map.
+     * @return Whether the tile is at least partially visible.
+     */
+    public boolean isVisible(int row, int col) {
+        return row >= getFirstVisibleRow() && row < getEndVisibleRow()
+                && col >= getFirstVisibleCol() && col < getEndVisibleCol();
+    }
+
+    private static double clampZoom(double zoom) {
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+    }
+
+    /**
+     * Keeps the viewport within the map.
+     */
+    private void clampOrigin() {
+        final double maxX = Math.max(0, cols * tileSize - getWidth() / zoom);
+        final double maxY = Math.max(0, rows * tileSize - getHeight() / zoom);
+        originX = Math.max(0, Math.min(maxX, originX));
+        originY = Math.max(0, Math.min(maxY, originY));
+    }
+}
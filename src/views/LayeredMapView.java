@@ -0,0 +1,185 @@
+package views;
+
+import controllers.RenderScheduler;
+import controllers.Renderer;
+import javafx.geometry.Pos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import models.Config;
+import models.map.CellGrid;
+import models.map.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import util.DirtyCells;
+import util.Viewport;
+
+import static models.Config.TILE_SIZE;
+
+/**
+ * View of a map made of stacked canvases, one for each {@link Renderer.Layer}.
+ *
+ * <p>
+ * Each layer is invalidated independently. The terrain layer is only rendered when a different map is shown, placing
+ * or removing a pipe only redraws tiles of the pipe layer, and a flow step only redraws tiles of the water layer.
+ * </p>
+ * <p>
+ * A fourth canvas on top shows the water flowing into the tiles of the next flow step. It is redrawn on every frame
+ * of the animation, but only the tiles on the water front are cleared and drawn.
+ * </p>
+ * <p>
+ * The map is shown through a {@link Viewport} of at most {@link Config#MAX_VIEWPORT_WIDTH} by
+ * {@link Config#MAX_VIEWPORT_HEIGHT} pixels, which can be panned and zoomed with {@link ViewportControls}. Moving the
+ * camera redraws all layers, at most once per pulse no matter how many mouse events arrive.
+ * </p>
+ */
+public class LayeredMapView extends StackPane {
+
+    @NotNull
+    private final Canvas terrainLayer = new Canvas();
+    @NotNull
+    private final Canvas pipeLayer = new Canvas();
+    @NotNull
+    private final Canvas waterLayer = new Canvas();
+    @NotNull
+    private final Canvas flowLayer = new Canvas();
+
+    /**
+     * Cells which have changed on the terrain layer since it was last rendered.
+     */
+    @NotNull
+    private final DirtyCells dirtyTerrain = new DirtyCells();
+    /**
+     * Grid which the terrain layer was last rendered from.
+     */
+    @Nullable
+    private CellGrid terrainGrid;
+
+    @NotNull
+    private final Viewport viewport = new Viewport(TILE_SIZE, Config.MAX_VIEWPORT_WIDTH, Config.MAX_VIEWPORT_HEIGHT);
+    /**
+     * {@link Viewport#getRevision()} of the camera which the layers were last rendered through.
+     */
+    private long renderedRevision = -1;
+
+    /**
+     * Changed cells of the pipe and water layer of the map which was last rendered, for redrawing the map when the
+     * camera moves.
+     */
+    @Nullable
+    private DirtyCells lastDirtyPipes;
+    @Nullable
+    private DirtyCells lastDirtyWater;
+
+    /**
+     * Tiles which have been drawn on the flow layer by the last frame.
+     */
+    @NotNull
+    private final DirtyCells flowTiles = new DirtyCells();
+    /**
+     * {@link Viewport#getRevision()} of the camera which the flow layer was last rendered through.
+     */
+    private long flowRevision = -1;
+    /**
+     * Map and progress of the last frame of the flow layer, for redrawing it when the camera moves.
+     */
+    @Nullable
+    private Map lastFlowMap;
+    private double lastFlowProgress;
+
+    /**
+     * Scheduler which coalesces redraws after the camera has moved into at most one per pulse.
+     */
+    @NotNull
+    private final RenderScheduler renderScheduler = new RenderScheduler();
+    @NotNull
+    private final Runnable cameraTask = this::renderAfterCameraMove;
+
+    public LayeredMapView() {
+        super();
+        getChildren().addAll(terrainLayer, pipeLayer, waterLayer, flowLayer);
+        // keep the layers at the top-left, so that mouse events map to the same position on every layer
+        setAlignment(Pos.TOP_LEFT);
+        setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+
+        // the layers are invalidated by the revision of the viewport, so the callback only needs to request a redraw
+        ViewportControls.install(this, viewport, () -> renderScheduler.request(cameraTask));
+    }
+
+    /**
+     * Redraws the last rendered map through the moved camera.
+     */
+    private void renderAfterCameraMove() {
+        if (terrainGrid != null && lastDirtyPipes != null && lastDirtyWater != null) {
+            render(terrainGrid, lastDirtyPipes, lastDirtyWater);
+        }
+        if (lastFlowMap != null) {
+            renderFlow(lastFlowMap, lastFlowProgress);
+        }
+    }
+
+    /**
+     * @return Camera which the map is shown through. Mouse events on this view are relative to the viewport.
+     */
+    @NotNull
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Renders the changed cells of a map.
+     *
+     * @param grid       Grid of the map to render.
+     * @param dirtyPipes Cells whose pipe has changed since the map was last rendered.
+     * @param dirtyWater Cells which have been filled or emptied since the map was last rendered.
+     */
+    public void render(@NotNull CellGrid grid, @NotNull DirtyCells dirtyPipes, @NotNull DirtyCells dirtyWater) {
+        if (grid != terrainGrid) {
+            terrainGrid = grid;
+            viewport.setMapSize(grid.getRows(), grid.getCols());
+            viewport.reset();
+        }
+        lastDirtyPipes = dirtyPipes;
+        lastDirtyWater = dirtyWater;
+
+        if (viewport.getRevision() != renderedRevision) {
+            renderedRevision = viewport.getRevision();
+            dirtyTerrain.markAll();
+            dirtyPipes.markAll();
+            dirtyWater.markAll();
+        }
+
+        if (!dirtyTerrain.isEmpty()) {
+            Renderer.renderLayer(terrainLayer, grid, Renderer.Layer.TERRAIN, dirtyTerrain, viewport);
+        }
+        if (!dirtyPipes.isEmpty()) {
+            Renderer.renderLayer(pipeLayer, grid, Renderer.Layer.PIPES, dirtyPipes, viewport);
+        }
+        if (!dirtyWater.isEmpty()) {
+            Renderer.renderLayer(waterLayer, grid, Renderer.Layer.WATER, dirtyWater, viewport);
+        }
+    }
+
+    /**
+     * Renders a frame of the water flowing into the tiles of the next flow step.
+     *
+     * @param map      Map to render the water front of. Nothing is drawn until the map has been shown with
+     *                 {@link LayeredMapView#render(CellGrid, DirtyCells, DirtyCells)}.
+     * @param progress Progress of the current flow step, from {@code 0} to {@code 1}.
+     */
+    public void renderFlow(@NotNull Map map, double progress) {
+        if (map != lastFlowMap || viewport.getRevision() != flowRevision) {
+            flowTiles.markAll();
+        }
+        lastFlowMap = map;
+        lastFlowProgress = progress;
+        flowRevision = viewport.getRevision();
+
+        if (map.getGrid() != terrainGrid) {
+            flowLayer.getGraphicsContext2D().clearRect(0, 0, flowLayer.getWidth(), flowLayer.getHeight());
+            flowTiles.markAll();
+            return;
+        }
+        Renderer.renderFlow(flowLayer, map, progress, flowTiles, viewport);
+    }
+}
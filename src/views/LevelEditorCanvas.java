@@ -1,28 +1,36 @@
 package views;
 
+import controllers.RenderScheduler;
 import controllers.Renderer;
 import controllers.SceneManager;
-import io.Deserializer;
+import io.EditJournal;
 import io.GameProperties;
+import io.LevelCache;
 import io.Serializer;
 import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.stage.FileChooser;
+import models.Config;
 import models.exceptions.InvalidMapException;
+import models.map.ObjectCellGrid;
 import models.map.cells.Cell;
 import models.map.cells.FillableCell;
 import models.map.cells.TerminationCell;
 import models.map.cells.Wall;
+import models.validation.LevelValidator;
+import models.validation.ValidationIssue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import util.Coordinate;
 import util.Direction;
+import util.DirtyCells;
+import util.PackedCoordinate;
+import util.Viewport;
 import views.panes.LevelEditorPane;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
@@ -32,23 +40,70 @@ import static models.Config.TILE_SIZE;
 
 public class LevelEditorCanvas extends Canvas {
 
-    private static final String MSG_MISSING_SOURCE = "Source tile is missing!";
-    private static final String MSG_MISSING_SINK = "Sink tile is missing!";
-    private static final String MSG_BAD_DIMS = "Map size must be at least 2x2!";
-    private static final String MSG_BAD_DELAY = "Delay must be a positive value!";
-    private static final String MSG_SOURCE_TO_WALL = "Source tile is blocked by a wall!";
-    private static final String MSG_SINK_TO_WALL = "Sink tile is blocked by a wall!";
+    private static final LevelValidator VALIDATOR = new LevelValidator();
 
     private GameProperties gameProp;
 
+    /**
+     * Journal which every edit is recorded in, so that unsaved maps survive a crash.
+     */
+    @NotNull
+    private final EditJournal journal;
+
+    /**
+     * Cells which have changed since the map was last rendered.
+     */
+    @NotNull
+    private final DirtyCells dirtyCells = new DirtyCells();
+
+    /**
+     * Camera which the map is shown through.
+     */
+    @NotNull
+    private final Viewport viewport = new Viewport(TILE_SIZE, Config.MAX_VIEWPORT_WIDTH, Config.MAX_VIEWPORT_HEIGHT);
+    /**
+     * {@link Viewport#getRevision()} of the camera which the map was last rendered through.
+     */
+    private long renderedRevision = -1;
+
+    /**
+     * Scheduler which coalesces repaints into at most one per pulse.
+     */
+    @NotNull
+    private final RenderScheduler renderScheduler = new RenderScheduler();
+    @NotNull
+    private final Runnable renderTask = this::render;
+
     @Nullable
     private TerminationCell sourceCell;
     @Nullable
     private TerminationCell sinkCell;
 
+    /**
+     * Creates an editor, which continues editing the map in the {@link EditJournal} at
+     * {@link EditJournal#getDefaultPath()} if there is one, or a new map with the given attributes otherwise.
+     *
+     * @param rows  Number of rows of a new map.
+     * @param cols  Number of columns of a new map.
+     * @param delay Amount of delay of a new map.
+     */
     public LevelEditorCanvas(int rows, int cols, int delay) {
         super();
-        resetMap(rows, cols, delay);
+
+        GameProperties recovered = null;
+        try {
+            recovered = EditJournal.recover(EditJournal.getDefaultPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal = EditJournal.open(EditJournal.getDefaultPath());
+        ViewportControls.install(this, viewport, this::renderCanvas);
+
+        if (recovered != null) {
+            replaceMap(recovered);
+        } else {
+            resetMap(rows, cols, delay);
+        }
     }
 
     /**
@@ -84,14 +139,71 @@ public class LevelEditorCanvas extends Canvas {
         gameProp.delay = delay;
         sourceCell = null;
         sinkCell = null;
+        dirtyCells.markAll();
+        viewport.setMapSize(rows, cols);
+        viewport.reset();
+        journal.snapshot(gameProp);
         renderCanvas();
     }
 
     /**
-     * Renders the canvas.
+     * Replaces the map with a loaded one, and finds its source and sink cells.
+     *
+     * @param prop Properties of the new map.
+     */
+    private void replaceMap(@NotNull GameProperties prop) {
+        gameProp = prop;
+        sourceCell = null;
+        sinkCell = null;
+        for (var row : prop.cells) {
+            for (var cell : row) {
+                if (cell instanceof TerminationCell) {
+                    if (((TerminationCell) cell).type == TerminationCell.Type.SOURCE) {
+                        sourceCell = (TerminationCell) cell;
+                    } else {
+                        sinkCell = (TerminationCell) cell;
+                    }
+                }
+            }
+        }
+        dirtyCells.markAll();
+        viewport.setMapSize(prop.rows, prop.cols);
+        viewport.reset();
+        journal.snapshot(gameProp);
+        renderCanvas();
+    }
+
+    /**
+     * Replaces a cell of the map, and records the change in the {@link LevelEditorCanvas#journal}.
+     *
+     * @param cell The new cell.
+     */
+    private void putCell(@NotNull Cell cell) {
+        gameProp.cells[cell.coord.row][cell.coord.col] = cell;
+        dirtyCells.mark(cell.coord.row, cell.coord.col);
+        journal.setCell(cell);
+        if (journal.needsSnapshot()) {
+            journal.snapshot(gameProp);
+        }
+    }
+
+    /**
+     * Requests the cells of the canvas which have changed to be rendered on the next pulse.
      */
     private void renderCanvas() {
-        Platform.runLater(() -> Renderer.renderMap(this, gameProp.cells));
+        renderScheduler.request(renderTask);
+    }
+
+    /**
+     * Renders the cells of the canvas which have changed since the last render.
+     */
+    private void render() {
+        if (viewport.getRevision() != renderedRevision) {
+            renderedRevision = viewport.getRevision();
+            dirtyCells.markAll();
+        }
+        Renderer.renderMap(this, new ObjectCellGrid(gameProp.rows, gameProp.cols, gameProp.cells), dirtyCells,
+                viewport);
     }
 
     /**
@@ -101,40 +213,26 @@ public class LevelEditorCanvas extends Canvas {
      * You may need to check/compute some attribute in order to create the new {@link Cell} object.
      *
      * @param sel Selected {@link CellSelection}.
-     * @param x   X-coordinate relative to the canvas.
-     * @param y   Y-coordinate relative to the canvas.
+     * @param x   X-coordinate relative to the canvas, which is mapped to a tile through the current camera.
+     * @param y   Y-coordinate relative to the canvas, which is mapped to a tile through the current camera.
      */
     public void setTile(@NotNull CellSelection sel, double x, double y) {
         // TODO done
-        int j = (int) Math.floor(x/TILE_SIZE);
-        int i = (int) Math.floor(y/TILE_SIZE);
+        int j = viewport.toCol(x);
+        int i = viewport.toRow(y);
+        if (i < 0 || j < 0 || i >= gameProp.rows || j >= gameProp.cols) {
+            return;
+        }
 
+        final int key = PackedCoordinate.pack(i, j);
         switch(sel){
             case WALL:
-                gameProp.cells[i][j] = new Wall(new Coordinate(i,j));
-                if(sinkCell!=null) {
-                    if (sinkCell.coord.equals(new Coordinate(i, j))) {
-                        sinkCell = null;
-                    }
-                }
-                if(sourceCell!=null) {
-                    if (sourceCell.coord.equals(new Coordinate(i, j))) {
-                        sourceCell = null;
-                    }
-                }
+                putCell(new Wall(new Coordinate(i,j)));
+                clearTerminationAt(key);
                 break;
             case CELL:
-                gameProp.cells[i][j] = new FillableCell(new Coordinate(i,j));
-                if(sinkCell!=null) {
-                if (sinkCell.coord.equals(new Coordinate(i, j))) {
-                    sinkCell = null;
-                }
-            }
-            if(sourceCell!=null) {
-                if (sourceCell.coord.equals(new Coordinate(i, j))) {
-                    sourceCell = null;
-                }
-            }
+                putCell(new FillableCell(new Coordinate(i,j)));
+                clearTerminationAt(key);
                 break;
             case TERMINATION_CELL:
                 if(i==0||j==0||i==gameProp.cells.length-1||j==gameProp.cells[i].length-1){//we are on the edge
@@ -165,16 +263,30 @@ public class LevelEditorCanvas extends Canvas {
                     }
 
                     sinkCell = new TerminationCell(new Coordinate(i,j),direction, TerminationCell.Type.SINK);
-                    gameProp.cells[i][j] = sinkCell;
+                    putCell(sinkCell);
                 }else{ //we a source cell!
                     sourceCell = new TerminationCell(new Coordinate(i,j), Direction.UP, TerminationCell.Type.SOURCE);
-                    gameProp.cells[i][j] = sourceCell;
+                    putCell(sourceCell);
                 }
                 break;
         }
         renderCanvas();
     }
 
+    /**
+     * Forgets the source or sink cell if it is located at the given position.
+     *
+     * @param key {@link PackedCoordinate} of the overwritten cell.
+     */
+    private void clearTerminationAt(int key) {
+        if (sinkCell != null && PackedCoordinate.pack(sinkCell.coord) == key) {
+            sinkCell = null;
+        }
+        if (sourceCell != null && PackedCoordinate.pack(sourceCell.coord) == key) {
+            sourceCell = null;
+        }
+    }
+
     /**
      * Sets a tile on the map.
      * <p>
@@ -198,19 +310,19 @@ public class LevelEditorCanvas extends Canvas {
             switch (sourceCell.pointingTo){
                 case UP:
                     sourceCell = new TerminationCell(sourceCell.coord, Direction.RIGHT, TerminationCell.Type.SOURCE);
-                    gameProp.cells[sourceCell.coord.row][sourceCell.coord.col] = sourceCell;
+                    putCell(sourceCell);
                     break;
                 case DOWN:
                     sourceCell = new TerminationCell(sourceCell.coord, Direction.LEFT, TerminationCell.Type.SOURCE);
-                    gameProp.cells[sourceCell.coord.row][sourceCell.coord.col] = sourceCell;
+                    putCell(sourceCell);
                     break;
                 case LEFT:
                     sourceCell = new TerminationCell(sourceCell.coord, Direction.UP, TerminationCell.Type.SOURCE);
-                    gameProp.cells[sourceCell.coord.row][sourceCell.coord.col] = sourceCell;
+                    putCell(sourceCell);
                     break;
                 case RIGHT:
                     sourceCell = new TerminationCell(sourceCell.coord, Direction.DOWN, TerminationCell.Type.SOURCE);
-                    gameProp.cells[sourceCell.coord.row][sourceCell.coord.col] = sourceCell;
+                    putCell(sourceCell);
                     break;
             }
             renderCanvas();
@@ -272,10 +384,9 @@ public class LevelEditorCanvas extends Canvas {
     private boolean loadFromFile(@NotNull Path path) {
         // TODO
         try{
-            Deserializer d = new Deserializer(path);
-            gameProp = d.parseGameFile();
+            replaceMap(LevelCache.getInstance().get(path).toProperties());
             return true;
-        }catch(FileNotFoundException e){e.printStackTrace();}
+        }catch(IOException e){e.printStackTrace();}
 
         return false;
     }
@@ -296,11 +407,7 @@ public class LevelEditorCanvas extends Canvas {
         File file = getTargetSaveDirectory();
 
         if(file!=null){
-            try{file.createNewFile();
-            }catch (IOException e){
-                e.printStackTrace();
-            }
-                exportToFile(file.toPath());
+            exportToFile(file.toPath());
         }
 
     }
@@ -328,56 +435,44 @@ public class LevelEditorCanvas extends Canvas {
     /**
      * Exports the current map to a file.
      * <p>
-     * Hint:
-     * You should handle any exceptions which arise from saving in this method.
+     * The file is written on a background thread, and an error is shown if it cannot be written.
      *
      * @param p Path to export to.
      */
     private void exportToFile(@NotNull Path p) {
         // TODO done
-        var s = new Serializer(p);
-
-        try{s.serializeGameProp(gameProp);
-        }catch (IOException e) {
-            e.printStackTrace();
-        }
+        final long revision = journal.getRevision();
+        new Serializer(p).serializeGamePropAsync(gameProp).whenComplete((result, tr) -> {
+            if (tr == null) {
+                // the saved map no longer needs to be recovered, unless it has been edited since
+                journal.discard(revision);
+                return;
+            }
+            tr.printStackTrace();
+            Platform.runLater(() -> {
+                Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                errorAlert.setHeaderText("Cannot save map!");
+                errorAlert.setContentText(String.valueOf(tr.getMessage()));
+                errorAlert.show();
+            });
+        });
     }
 
     /**
      * Checks whether the current map and its properties are valid.
+     *
      * <p>
-     * Hint:
-     * You should check for the following conditions:
-     * <ul>
-     * <li>Source cell is present</li>
-     * <li>Sink cell is present</li>
-     * <li>Minimum map size is 2x2</li>
-     * <li>Flow delay is at least 1</li>
-     * <li>Source/Sink tiles are not blocked by walls</li>
-     * </ul>
+     * The map is checked with the same {@link LevelValidator} used by the level linter, so a map saved by the editor
+     * can always be loaded by the game. Warnings do not prevent the map from being saved.
+     * </p>
      *
      * @return {@link Optional} containing the error message, or an empty {@link Optional} if the map is valid.
      */
     private Optional<String> checkValidity() {
-        // TODO missing point to walls
-        if(sourceCell==null){
-            return Optional.of(MSG_MISSING_SOURCE);
-        }
-        if(sinkCell==null)
-            return Optional.of(MSG_MISSING_SINK);
-        if(gameProp.rows<2||gameProp.cols<2)
-            return Optional.of(MSG_BAD_DIMS);
-        if(gameProp.delay<1)
-            return Optional.of(MSG_BAD_DELAY);
-        if(gameProp.cells[sourceCell.pointingTo.getOffset().row+sourceCell.coord.row][sourceCell.pointingTo.getOffset().col+sourceCell.coord.col].getClass()==Wall.class){
-            return Optional.of(MSG_SOURCE_TO_WALL);
-        }
-        if(gameProp.cells[sinkCell.pointingTo.getOpposite().getOffset().row+sinkCell.coord.row][sinkCell.pointingTo.getOpposite().getOffset().col+sinkCell.coord.col].getClass()==Wall.class){
-            return Optional.of(MSG_SINK_TO_WALL);
-        }
-
-        return Optional.empty();
-
+        return VALIDATOR.validate(gameProp).stream()
+                .filter(issue -> issue.getSeverity() == ValidationIssue.Severity.ERROR)
+                .map(ValidationIssue::getMessage)
+                .findFirst();
     }
 
     public int getNumOfRows() {
@@ -394,6 +489,10 @@ public class LevelEditorCanvas extends Canvas {
 
     public void setAmountOfDelay(int delay) {
         gameProp.delay = delay;
+        journal.setDelay(delay);
+        if (journal.needsSnapshot()) {
+            journal.snapshot(gameProp);
+        }
     }
 
     public enum CellSelection {
@@ -0,0 +1,85 @@
+package views;
+
+import javafx.scene.Node;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import org.jetbrains.annotations.NotNull;
+import util.Viewport;
+
+/**
+ * Helper class for controlling a {@link Viewport} with the mouse.
+ *
+ * <p>
+ * Dragging with the secondary or middle button pans the viewport, and scrolling zooms in or out around the cursor.
+ * The primary button is left to the view, e.g. for placing tiles.
+ * </p>
+ */
+public class ViewportControls {
+
+    /**
+     * Factor to zoom in by for every step of the scroll wheel.
+     */
+    private static final double ZOOM_STEP = 1.25;
+
+    @NotNull
+    private final Viewport viewport;
+    @NotNull
+    private final Runnable onChange;
+
+    private double lastX;
+    private double lastY;
+
+    private ViewportControls(@NotNull Viewport viewport, @NotNull Runnable onChange) {
+        this.viewport = viewport;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Adds handlers to a node which control a viewport. Coordinates of events on the node are treated as coordinates
+     * relative to the viewport.
+     *
+     * @param node     Node to receive the mouse events from.
+     * @param viewport Viewport to control.
+     * @param onChange Action to run after the viewport has been changed, e.g. to redraw the view.
+     */
+    public static void install(@NotNull Node node, @NotNull Viewport viewport, @NotNull Runnable onChange) {
+        final var controls = new ViewportControls(viewport, onChange);
+        node.addEventHandler(MouseEvent.MOUSE_PRESSED, controls::onMousePressed);
+        node.addEventHandler(MouseEvent.MOUSE_DRAGGED, controls::onMouseDragged);
+        node.addEventHandler(ScrollEvent.SCROLL, controls::onScroll);
+    }
+
+    private static boolean isPanButton(@NotNull MouseEvent event) {
+        return event.getButton() == MouseButton.SECONDARY || event.getButton() == MouseButton.MIDDLE;
+    }
+
+    private void onMousePressed(@NotNull MouseEvent event) {
+        if (isPanButton(event)) {
+            lastX = event.getX();
+            lastY = event.getY();
+        }
+    }
+
+    private void onMouseDragged(@NotNull MouseEvent event) {
+        if (!event.isSecondaryButtonDown() && !event.isMiddleButtonDown()) {
+            return;
+        }
+
+        viewport.pan(event.getX() - lastX, event.getY() - lastY);
+        lastX = event.getX();
+        lastY = event.getY();
+        onChange.run();
+        event.consume();
+    }
+
+    private void onScroll(@NotNull ScrollEvent event) {
+        if (event.getDeltaY() == 0) {
+            return;
+        }
+
+        viewport.zoomAt(event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, event.getX(), event.getY());
+        onChange.run();
+        event.consume();
+    }
+}
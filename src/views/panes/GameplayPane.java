@@ -2,9 +2,9 @@ package views.panes;
 
 import controllers.AudioManager;
 import controllers.LevelManager;
+import controllers.RenderScheduler;
 import controllers.Renderer;
 import controllers.SceneManager;
-import io.Deserializer;
 import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
@@ -15,6 +15,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
@@ -22,14 +23,15 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import models.FXGame;
-import models.PipeQueue;
+import models.FlowTimer;
 import models.pipes.Pipe;
 import org.jetbrains.annotations.NotNull;
 import views.BigButton;
 import views.BigVBox;
 import views.GameplayInfoPane;
+import views.LayeredMapView;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -44,18 +46,45 @@ public class GameplayPane extends GamePane {
 
     private HBox topBar = new HBox(20);
     private VBox canvasContainer = new BigVBox();
-    private Canvas gameplayCanvas = new Canvas();
+    private LayeredMapView gameplayView = new LayeredMapView();
     private HBox bottomBar = new HBox(20);
     private Canvas queueCanvas = new Canvas();
     private Button quitToMenuButton = new BigButton("Quit to menu");
     private Button pauseButton = new BigButton("Pause");
+    private Button speedButton = new BigButton("Speed: 1x");
 
     private FXGame game;
+    private FlowTimer.Speed speed = FlowTimer.Speed.NORMAL;
+    private boolean paused;
+
+    /**
+     * Scheduler which coalesces repaints of the map and queue into at most one each per pulse.
+     */
+    private final RenderScheduler renderScheduler = new RenderScheduler();
+    private final Runnable renderMapTask = () -> {
+        if (game != null) {
+            game.renderMap(gameplayView);
+        }
+    };
+    private final Runnable renderQueueTask = () -> {
+        if (game != null) {
+            game.renderQueue(queueCanvas);
+        }
+    };
+    /**
+     * Animates the water flowing into the next tiles. Requests itself again, so that it runs on every pulse while the
+     * game is running.
+     */
+    private final Runnable renderFlowTask = () -> {
+        if (game != null && !paused) {
+            game.renderFlow(gameplayView);
+            requestRenderFlow();
+        }
+    };
 
     private final IntegerProperty ticksElapsed = new SimpleIntegerProperty();
     private GameplayInfoPane infoPane = null;
 
-    private boolean paused;
     private boolean L33T_H4XX0R_UNUSED = true; //have we used our sick hack?
 
     public GameplayPane() {
@@ -71,8 +100,8 @@ public class GameplayPane extends GamePane {
     void connectComponents() {
         // TODO done
         //topBar.getChildren().add(infoPane); ignore for now
-        bottomBar.getChildren().addAll(queueCanvas,quitToMenuButton,pauseButton);
-        canvasContainer.getChildren().add(gameplayCanvas);
+        bottomBar.getChildren().addAll(queueCanvas,quitToMenuButton,pauseButton,speedButton);
+        canvasContainer.getChildren().add(gameplayView);
         this.setTop(topBar);
         this.setCenter(canvasContainer);
         this.setBottom(bottomBar);
@@ -93,37 +122,51 @@ public class GameplayPane extends GamePane {
     void setCallbacks() {
         // TODO
         quitToMenuButton.setOnMouseClicked(mouseEvent -> doQuitToMenuAction());
-        gameplayCanvas.setOnMouseClicked(mouseEvent -> onCanvasClicked(mouseEvent));
+        gameplayView.setOnMouseClicked(mouseEvent -> onCanvasClicked(mouseEvent));
         this.setOnKeyPressed(keyEvent -> onKeyPressed(keyEvent));
         pauseButton.setOnMouseClicked(mouseEvent -> pauseHandler());
+        speedButton.setOnMouseClicked(mouseEvent -> speedHandler());
+    }
+
+    /**
+     * Cycles through the speeds of the flow of water.
+     */
+    private void speedHandler() {
+        speed = speed.next();
+        game.setSpeed(speed);
+        speedButton.setText("Speed: " + speed.getMultiplier() + "x");
     }
 
     private void pauseHandler(){
         if(paused){
             paused = false;
             pauseButton.setText("Pause");
-            gameplayCanvas.setOnMouseClicked(mouseEvent -> onCanvasClicked(mouseEvent));
+            gameplayView.setOnMouseClicked(mouseEvent -> onCanvasClicked(mouseEvent));
             this.setOnKeyPressed(keyEvent -> onKeyPressed(keyEvent));
             game.restartCountdown();
+            requestRenderFlow();
 
         }else{
             paused = true;
             pauseButton.setText("Resume");
-            gameplayCanvas.setOnMouseClicked(null);
+            gameplayView.setOnMouseClicked(null);
             this.setOnKeyPressed(null);
             game.stopCountdown();
         }
     }
 
     /**
-     * Handles events when somewhere on the {@link GameplayPane#gameplayCanvas} is clicked.
+     * Handles events when somewhere on the {@link GameplayPane#gameplayView} is clicked.
      *
      * @param event Event to handle.
      */
     private void onCanvasClicked(MouseEvent event) {
         // TODO
-        int j = (int) Math.floor(event.getX()/TILE_SIZE);
-        int i = (int) Math.floor(event.getY()/TILE_SIZE);
+        if (event.getButton() != MouseButton.PRIMARY) {
+            return;
+        }
+        int j = gameplayView.getViewport().toCol(event.getX());
+        int i = gameplayView.getViewport().toRow(event.getY());
 
         var pipe = game.getPipeAt(i,j);
         if(pipe!=null) {
@@ -137,16 +180,15 @@ public class GameplayPane extends GamePane {
                     List<Pipe.Shape> shapeList = Arrays.asList(Pipe.Shape.values());
                     List<Pipe> pipes = new ArrayList<Pipe>();
                     shapeList.forEach(shape -> pipes.add(new Pipe(shape)));
-                    PipeQueue pipeQueue = new PipeQueue(pipes);
                     Canvas displayCanvas = new Canvas();
-                    pipeQueue.render(displayCanvas);
+                    Renderer.renderQueue(displayCanvas, pipes);
                     dialogHbox.getChildren().add(displayCanvas);
-                    Scene dialogScene = new Scene(dialogHbox, (TILE_SIZE + 8) * 7, (TILE_SIZE + 8));
+                    Scene dialogScene = new Scene(dialogHbox, (TILE_SIZE + 8) * shapeList.size(), (TILE_SIZE + 8));
                     displayCanvas.setOnMouseClicked(mouseEvent -> {
                         int x = (int) Math.floor(mouseEvent.getX() / (TILE_SIZE + 8));
                         game.replacePipe(i, j, pipes.get(x));
                         pauseHandler();
-                        game.renderMap(gameplayCanvas);
+                        requestRenderMap();
                         dialog.close();
                     });
                     dialog.setScene(dialogScene);
@@ -159,12 +201,14 @@ public class GameplayPane extends GamePane {
         game.placePipe(i,j);
         if(game.hasWon()){
             game.fillAllPipes();
-            game.renderMap(gameplayCanvas);
-            game.renderQueue(queueCanvas);
+            requestRenderMap();
+            requestRenderQueue();
+            // show the filled map before the popup blocks
+            renderScheduler.flush();
             createWinPopup();
         }
-        game.renderMap(gameplayCanvas);
-        game.renderQueue(queueCanvas);
+        requestRenderMap();
+        requestRenderQueue();
 
     }
 
@@ -179,17 +223,38 @@ public class GameplayPane extends GamePane {
         switch (event.getText()){
             case "s":
                 game.skipPipe();
-                game.renderQueue(queueCanvas);
+                requestRenderQueue();
                 break;
             case "u":
                 game.undoStep();
-                game.renderQueue(queueCanvas);
-                game.renderMap(gameplayCanvas);
+                requestRenderQueue();
+                requestRenderMap();
                 break;
 
         }
     }
 
+    /**
+     * Requests the map to be repainted on the next pulse.
+     */
+    private void requestRenderMap() {
+        renderScheduler.request(renderMapTask);
+    }
+
+    /**
+     * Requests the pipe queue to be repainted on the next pulse.
+     */
+    private void requestRenderQueue() {
+        renderScheduler.request(renderQueueTask);
+    }
+
+    /**
+     * Requests the next frame of the water flow animation to be rendered on the next pulse.
+     */
+    private void requestRenderFlow() {
+        renderScheduler.request(renderFlowTask);
+    }
+
     /**
      * Creates a popup which tells the player they have completed the map.
      */
@@ -223,10 +288,10 @@ public class GameplayPane extends GamePane {
             SceneManager.getInstance().showPane(GameplayPane.class);
         }else{
             try{
-                Deserializer d = new Deserializer(LevelManager.getInstance().getCurrentLevelPath());
-                ((GameplayPane)SceneManager.getInstance().getPane(GameplayPane.class)).startGame(d.parseFXGame());
+                var game = LevelManager.getInstance().loadCurrentGame();
+                ((GameplayPane)SceneManager.getInstance().getPane(GameplayPane.class)).startGame(game);
                 SceneManager.getInstance().showPane(GameplayPane.class);
-            }catch (FileNotFoundException e){
+            }catch (IOException e){
                 e.printStackTrace();
             }
         }
@@ -280,8 +345,8 @@ public class GameplayPane extends GamePane {
     void startGame(@NotNull FXGame game) {
         // TODO
         this.game = game;
-        game.renderMap(gameplayCanvas);
-        game.renderQueue(queueCanvas);
+        requestRenderMap();
+        requestRenderQueue();
         infoPane = new GameplayInfoPane(LevelManager.getInstance().getCurrentLevelProperty(),
                 ticksElapsed,
                 game.getNumOfSteps(),
@@ -298,16 +363,19 @@ public class GameplayPane extends GamePane {
             @Override
             public void run() {
                 game.updateState();
-                game.renderMap(gameplayCanvas);
+                requestRenderMap();
                 if(game.hasLost()){
+                    renderScheduler.flush();
                     createLosePopup();
                     endGame();
                 }
             }
         });
+        game.setSpeed(speed);
         game.startCountdown();
         paused = false;
         L33T_H4XX0R_UNUSED = true;
+        requestRenderFlow();
     }
 
     /**
@@ -317,7 +385,12 @@ public class GameplayPane extends GamePane {
         // TODO
         try{
         ticksElapsed.setValue(0);
+        if (game != null) {
+            // release the timer, otherwise the game loop keeps the game alive
+            game.stopCountdown();
+        }
         game = null;
+        renderScheduler.cancel();
         }catch (Exception e){
             e.printStackTrace();
         }
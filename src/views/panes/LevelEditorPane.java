@@ -6,6 +6,7 @@ import javafx.collections.ObservableList;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.input.MouseButton;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import models.Config;
@@ -90,6 +91,9 @@ public class LevelEditorPane extends GamePane {
         newGridButton.setOnMouseClicked(mouseEvent ->
                 levelEditor.changeAttributes(rowField.getValue(),colField.getValue(),delayField.getValue()));
         levelEditor.setOnMouseClicked(mouseEvent -> {
+            if (mouseEvent.getButton() != MouseButton.PRIMARY) {
+                return;
+            }
             LevelEditorCanvas.CellSelection sel = selectedCell.getSelectionModel().getSelectedItem();
             levelEditor.setTile(sel, mouseEvent.getX(),mouseEvent.getY());
         });
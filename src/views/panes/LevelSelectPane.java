@@ -3,20 +3,22 @@ package views.panes;
 import controllers.LevelManager;
 import controllers.Renderer;
 import controllers.SceneManager;
-import io.Deserializer;
 import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
+import javafx.collections.transformation.FilteredList;
 import javafx.event.EventHandler;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import models.FXGame;
 import views.BigButton;
 import views.BigVBox;
 import views.SideMenuVBox;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Optional;
 
 public class LevelSelectPane extends GamePane {
@@ -26,7 +28,10 @@ public class LevelSelectPane extends GamePane {
     private BigButton playButton = new BigButton("Play");
     private BigButton playRandom = new BigButton("Generate Map and Play");
     private BigButton chooseMapDirButton = new BigButton("Choose map directory");
-    private ListView<String> levelsListView = new ListView<>(LevelManager.getInstance().getLevelNames());
+    private BigButton chooseLevelPackButton = new BigButton("Choose level pack");
+    private TextField levelFilterField = new TextField();
+    private FilteredList<String> filteredLevelNames = new FilteredList<>(LevelManager.getInstance().getLevelNames());
+    private ListView<String> levelsListView = new ListView<>(filteredLevelNames);
     private BigVBox centerContainer = new BigVBox();
     private Canvas levelPreview = new Canvas();
 
@@ -42,7 +47,7 @@ public class LevelSelectPane extends GamePane {
     @Override
     void connectComponents() {
         // TODO done
-        leftContainer.getChildren().addAll(returnButton,chooseMapDirButton,levelsListView,playButton,playRandom);
+        leftContainer.getChildren().addAll(returnButton,chooseMapDirButton,chooseLevelPackButton,levelFilterField,levelsListView,playButton,playRandom);
         centerContainer.getChildren().add(levelPreview);
         this.setLeft(leftContainer);
         this.setCenter(centerContainer); //maybe change?
@@ -55,6 +60,7 @@ public class LevelSelectPane extends GamePane {
     void styleComponents() {
         // TODO done?
         leftContainer.getStyleClass().add("side-menu");
+        levelFilterField.setPromptText("Filter, e.g. easy rows<=10 delay>5");
     }
 
     /**
@@ -67,6 +73,8 @@ public class LevelSelectPane extends GamePane {
         playButton.setOnMouseClicked(mouseEvent -> startGame(false));
         playRandom.setOnMouseClicked(mouseEvent -> startGame(true));
         chooseMapDirButton.setOnMouseClicked(mouseEvent -> promptUserForMapDirectory());
+        chooseLevelPackButton.setOnMouseClicked(mouseEvent -> promptUserForLevelPack());
+        levelFilterField.textProperty().addListener((observable, oldValue, newValue) -> applyLevelFilter());
         levelsListView.setOnMouseClicked(mouseEvent ->
                 onMapSelected(LevelManager.getInstance().getCurrentLevelProperty(),
                         "",
@@ -92,10 +100,10 @@ public class LevelSelectPane extends GamePane {
             SceneManager.getInstance().showPane(GameplayPane.class);
         }else{
             try{
-                Deserializer d = new Deserializer(LevelManager.getInstance().getCurrentLevelPath());
-                ((GameplayPane)SceneManager.getInstance().getPane(GameplayPane.class)).startGame(d.parseFXGame());
+                var game = LevelManager.getInstance().loadCurrentGame();
+                ((GameplayPane)SceneManager.getInstance().getPane(GameplayPane.class)).startGame(game);
                 SceneManager.getInstance().showPane(GameplayPane.class);
-            } catch (FileNotFoundException e){
+            } catch (IOException e){
                 e.printStackTrace();
             }
         }
@@ -123,9 +131,9 @@ public class LevelSelectPane extends GamePane {
         }else{
             LevelManager.getInstance().setLevel(newValue);
             try{
-                Deserializer d = new Deserializer(LevelManager.getInstance().getCurrentLevelPath());
-                Platform.runLater(() -> Renderer.renderMap(levelPreview, d.parseGameFile().cells));
-            }catch (FileNotFoundException e){
+                var grid = LevelManager.getInstance().loadCurrentGrid();
+                Platform.runLater(() -> Renderer.renderMap(levelPreview, grid));
+            }catch (IOException e){
                 e.printStackTrace();
             }
         }
@@ -152,6 +160,22 @@ public class LevelSelectPane extends GamePane {
         }
     }
 
+    /**
+     * Prompts the user for a level pack, or a zip or jar archive of maps.
+     */
+    private void promptUserForLevelPack() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Level packs", "*.pack"),
+                new FileChooser.ExtensionFilter("Map archives", "*.zip", "*.jar"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        File selectedFile = fileChooser.showOpenDialog(null);
+
+        if (selectedFile != null) {
+            commitMapDirectoryChange(selectedFile);
+        }
+    }
+
     /**
      * Actually changes the current map directory.
      *
@@ -159,8 +183,15 @@ public class LevelSelectPane extends GamePane {
      */
     private void commitMapDirectoryChange(File dir) {
         // TODO done? theres some weird behavior, need to look into it!
+        // the list view is backed by the level names, so it is updated by the level manager
         LevelManager.getInstance().setMapDirectory(dir.toPath());
-        LevelManager.getInstance().getLevelNames().forEach(System.out::println);
-        levelsListView.getItems().addAll(LevelManager.getInstance().getLevelNames());
+        applyLevelFilter();
+    }
+
+    /**
+     * Filters the list of levels by the query in the filter field.
+     */
+    private void applyLevelFilter() {
+        filteredLevelNames.setPredicate(LevelManager.getInstance().createLevelFilter(levelFilterField.getText()));
     }
 }
@@ -1,6 +1,7 @@
 package views.panes;
 
 import controllers.AudioManager;
+import controllers.Renderer;
 import controllers.SceneManager;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
@@ -38,6 +39,14 @@ public class SettingsPane extends GamePane {
     private final Button returnButton = new BigButton("Return");
     @NotNull
     private final Button toggleSoundButton = new BigButton("Sound FX: Enabled");
+    /**
+     * Button for switching between drawing maps directly and rasterizing them on worker threads.
+     *
+     * @see Renderer#getDefaultRenderMode()
+     * @see Renderer#setDefaultRenderMode(Renderer.RenderMode)
+     */
+    @NotNull
+    private final Button toggleRenderModeButton = new BigButton(getRenderModeText());
     /**
      * Text field for modifying the number of rows for generated maps.
      *
@@ -99,7 +108,8 @@ public class SettingsPane extends GamePane {
         colBox.setRight(colsField);
         delayBox.setRight(delayField);
         flowBox.setRight(flowField);
-        leftContainer.getChildren().addAll(returnButton,saveButton,rowBox,colBox,delayBox,flowBox,toggleSoundButton);
+        leftContainer.getChildren().addAll(returnButton,saveButton,rowBox,colBox,delayBox,flowBox,toggleSoundButton,
+                toggleRenderModeButton);
         centerContainer.getChildren().add(infoText);
         this.setLeft(leftContainer);
         this.setCenter(centerContainer);
@@ -131,6 +141,22 @@ public class SettingsPane extends GamePane {
             }else
                 toggleSoundButton.setText("Sound FX: Disabled");
         });
+        toggleRenderModeButton.setOnMouseClicked(mouseEvent -> {
+            Renderer.setDefaultRenderMode(Renderer.getDefaultRenderMode() == Renderer.RenderMode.RASTER
+                    ? Renderer.RenderMode.CANVAS
+                    : Renderer.RenderMode.RASTER);
+            toggleRenderModeButton.setText(getRenderModeText());
+        });
+    }
+
+    /**
+     * @return Text of {@link SettingsPane#toggleRenderModeButton} for the current render mode.
+     */
+    @NotNull
+    private static String getRenderModeText() {
+        return Renderer.getDefaultRenderMode() == Renderer.RenderMode.RASTER
+                ? "Rendering: Multithreaded"
+                : "Rendering: Canvas";
     }
 
     /**